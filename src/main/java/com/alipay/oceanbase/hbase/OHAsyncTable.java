@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous version of the table operations. None of the methods blocks the
+ * caller, a failed operation completes its future exceptionally with the
+ * <code>IOException</code> the blocking method would throw.
+ */
+public interface OHAsyncTable extends Closeable {
+
+    byte[] getName();
+
+    Configuration getConfiguration();
+
+    CompletableFuture<Result> get(Get get);
+
+    /**
+     * @return a future for each Get in the same order
+     */
+    List<CompletableFuture<Result>> get(List<Get> gets);
+
+    CompletableFuture<Boolean> exists(Get get);
+
+    CompletableFuture<Void> put(Put put);
+
+    /**
+     * @return a future for each Put in the same order
+     */
+    List<CompletableFuture<Void>> put(List<Put> puts);
+
+    CompletableFuture<Void> delete(Delete delete);
+
+    /**
+     * @return a future for each Delete in the same order
+     */
+    List<CompletableFuture<Void>> delete(List<Delete> deletes);
+
+    CompletableFuture<Result> append(Append append);
+
+    CompletableFuture<Result> increment(Increment increment);
+
+    CompletableFuture<Boolean> checkAndPut(byte[] row, byte[] family, byte[] qualifier,
+                                           byte[] value, Put put);
+
+    CompletableFuture<Boolean> checkAndDelete(byte[] row, byte[] family, byte[] qualifier,
+                                              byte[] value, Delete delete);
+}
@@ -0,0 +1,411 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase;
+
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.sofa.common.thread.SofaThreadPoolExecutor;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.LCD;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.TABLE_HBASE_LOGGER_SPACE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * <code>OHAsyncTable</code> on top of an <code>OHTable</code>.
+ * <p>
+ * The gets and the puts and deletes are queued and sent by at most
+ * <code>hbase.htable.async.threads</code> dispatchers. Each dispatcher takes up to
+ * <code>hbase.htable.async.batch.size</code> queued operations of one kind at a time and
+ * sends them the same way as <code>get(List)</code> and <code>batch</code>, so thousands of
+ * operations in flight only cost a batch request per family table and partition instead
+ * of a thread each. Appends, increments and check-and-mutates are atomic on the server
+ * and are executed one by one.
+ * <p>
+ * The order of the operations of different futures is not guaranteed, callers which need
+ * a put to be visible to a get should wait for the put first.
+ */
+public class OHAsyncTableImpl implements OHAsyncTable {
+
+    private static final Logger              logger = TableHBaseLoggerFactory
+                                                        .getLogger(OHAsyncTableImpl.class);
+
+    private final OHTable                    table;
+
+    private final String                     tableName;
+
+    private final int                        threads;
+
+    private final int                        batchSize;
+
+    private final ThreadPoolExecutor         executor;
+
+    private final Dispatcher<Get, Result>    getDispatcher;
+
+    private final Dispatcher<Get, Boolean>   existsDispatcher;
+
+    private final Dispatcher<Mutation, Void> mutateDispatcher;
+
+    private volatile boolean                 closed = false;
+
+    /**
+     * @param table the table to access, it is not closed by this table
+     */
+    public OHAsyncTableImpl(OHTable table) {
+        checkArgument(table != null, "table is null.");
+        this.table = table;
+        this.tableName = Bytes.toString(table.getTableName());
+        Configuration configuration = table.getConfiguration();
+        this.threads = configuration.getInt(HBASE_HTABLE_ASYNC_THREADS,
+            DEFAULT_HBASE_HTABLE_ASYNC_THREADS);
+        this.batchSize = configuration.getInt(HBASE_HTABLE_ASYNC_BATCH_SIZE,
+            DEFAULT_HBASE_HTABLE_ASYNC_BATCH_SIZE);
+        checkArgument(threads > 0, HBASE_HTABLE_ASYNC_THREADS + " is not positive.");
+        checkArgument(batchSize > 0, HBASE_HTABLE_ASYNC_BATCH_SIZE + " is not positive.");
+        this.executor = new SofaThreadPoolExecutor(threads, threads, configuration.getLong(
+            HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME, DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME),
+            SECONDS, new LinkedBlockingQueue<Runnable>(), "OHAsyncTablePool",
+            TABLE_HBASE_LOGGER_SPACE);
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.getDispatcher = new Dispatcher<Get, Result>() {
+            @Override
+            void execute(List<Call<Get, Result>> calls) throws Exception {
+                List<Get> gets = new ArrayList<Get>(calls.size());
+                for (Call<Get, Result> call : calls) {
+                    gets.add(call.operation);
+                }
+                Object[] results = new Object[gets.size()];
+                OHAsyncTableImpl.this.table.batchGet(gets, results, false);
+                for (int i = 0; i < calls.size(); i++) {
+                    if (results[i] instanceof Result) {
+                        calls.get(i).future.complete((Result) results[i]);
+                    } else {
+                        calls.get(i).future.completeExceptionally((Throwable) results[i]);
+                    }
+                }
+            }
+        };
+        this.existsDispatcher = new Dispatcher<Get, Boolean>() {
+            @Override
+            void execute(List<Call<Get, Boolean>> calls) throws Exception {
+                List<Get> gets = new ArrayList<Get>(calls.size());
+                for (Call<Get, Boolean> call : calls) {
+                    gets.add(call.operation);
+                }
+                Object[] results = new Object[gets.size()];
+                OHAsyncTableImpl.this.table.batchGet(gets, results, true);
+                for (int i = 0; i < calls.size(); i++) {
+                    if (results[i] instanceof Result) {
+                        calls.get(i).future.complete(!((Result) results[i]).isEmpty());
+                    } else {
+                        calls.get(i).future.completeExceptionally((Throwable) results[i]);
+                    }
+                }
+            }
+        };
+        this.mutateDispatcher = new Dispatcher<Mutation, Void>() {
+            @Override
+            void execute(List<Call<Mutation, Void>> calls) throws Exception {
+                List<Mutation> mutations = new ArrayList<Mutation>(calls.size());
+                for (Call<Mutation, Void> call : calls) {
+                    mutations.add(call.operation);
+                }
+                Throwable[] failures = OHAsyncTableImpl.this.table.batchMutate(mutations);
+                for (int i = 0; i < calls.size(); i++) {
+                    if (failures[i] == null) {
+                        calls.get(i).future.complete(null);
+                    } else {
+                        calls.get(i).future.completeExceptionally(failures[i]);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public byte[] getName() {
+        return table.getTableName();
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return table.getConfiguration();
+    }
+
+    @Override
+    public CompletableFuture<Result> get(Get get) {
+        return getDispatcher.submit(get);
+    }
+
+    @Override
+    public List<CompletableFuture<Result>> get(List<Get> gets) {
+        List<CompletableFuture<Result>> futures = new ArrayList<CompletableFuture<Result>>(
+            gets.size());
+        for (Get get : gets) {
+            futures.add(getDispatcher.submit(get));
+        }
+        return futures;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(Get get) {
+        return existsDispatcher.submit(get);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(Put put) {
+        return mutateDispatcher.submit(put);
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> put(List<Put> puts) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(puts.size());
+        for (Put put : puts) {
+            futures.add(mutateDispatcher.submit(put));
+        }
+        return futures;
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(Delete delete) {
+        return mutateDispatcher.submit(delete);
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> delete(List<Delete> deletes) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(
+            deletes.size());
+        for (Delete delete : deletes) {
+            futures.add(mutateDispatcher.submit(delete));
+        }
+        return futures;
+    }
+
+    @Override
+    public CompletableFuture<Result> append(final Append append) {
+        return supply(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return table.append(append);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Result> increment(final Increment increment) {
+        return supply(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return table.increment(increment);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkAndPut(final byte[] row, final byte[] family,
+                                                  final byte[] qualifier, final byte[] value,
+                                                  final Put put) {
+        return supply(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return table.checkAndPut(row, family, qualifier, value, put);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkAndDelete(final byte[] row, final byte[] family,
+                                                     final byte[] qualifier, final byte[] value,
+                                                     final Delete delete) {
+        return supply(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return table.checkAndDelete(row, family, qualifier, value, delete);
+            }
+        });
+    }
+
+    /**
+     * Wait for the operations submitted before to complete and release the threads,
+     * the operations submitted later fail. The table is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, SECONDS)) {
+                logger.info("async table {} is waiting for the operations in flight", tableName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("close async table " + tableName + " interrupted");
+        }
+        // the calls whose dispatchers were rejected by the shutdown
+        getDispatcher.drain();
+        existsDispatcher.drain();
+        mutateDispatcher.drain();
+    }
+
+    private <R> CompletableFuture<R> supply(final Callable<R> callable) {
+        final CompletableFuture<R> future = new CompletableFuture<R>();
+        if (closed) {
+            future.completeExceptionally(closedException());
+            return future;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(callable.call());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(closedException());
+        }
+        return future;
+    }
+
+    private IOException closedException() {
+        return new IOException("async table " + tableName + " is closed");
+    }
+
+    private static class Call<T, R> {
+        private final T                    operation;
+        private final CompletableFuture<R> future = new CompletableFuture<R>();
+
+        Call(T operation) {
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Queues the operations of one kind and runs at most <code>threads</code> drain tasks
+     * which send the queued operations in batches.
+     */
+    private abstract class Dispatcher<T, R> {
+
+        private final ConcurrentLinkedQueue<Call<T, R>> queue   = new ConcurrentLinkedQueue<Call<T, R>>();
+
+        private final AtomicInteger                     running = new AtomicInteger();
+
+        private final Runnable                          task    = new Runnable() {
+                                                                    @Override
+                                                                    public void run() {
+                                                                        try {
+                                                                            drain();
+                                                                        } finally {
+                                                                            running
+                                                                                .decrementAndGet();
+                                                                            // calls queued after the last poll
+                                                                            schedule();
+                                                                        }
+                                                                    }
+                                                                };
+
+        CompletableFuture<R> submit(T operation) {
+            Call<T, R> call = new Call<T, R>(operation);
+            if (closed) {
+                call.future.completeExceptionally(closedException());
+                return call.future;
+            }
+            queue.add(call);
+            if (closed && queue.remove(call)) {
+                call.future.completeExceptionally(closedException());
+                return call.future;
+            }
+            schedule();
+            return call.future;
+        }
+
+        private void schedule() {
+            while (!queue.isEmpty()) {
+                int current = running.get();
+                if (current >= threads) {
+                    return;
+                }
+                if (running.compareAndSet(current, current + 1)) {
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        // closing, the caller of close drains the queue
+                        running.decrementAndGet();
+                    }
+                    return;
+                }
+            }
+        }
+
+        void drain() {
+            List<Call<T, R>> calls = new ArrayList<Call<T, R>>();
+            while (true) {
+                calls.clear();
+                Call<T, R> call;
+                while (calls.size() < batchSize && (call = queue.poll()) != null) {
+                    calls.add(call);
+                }
+                if (calls.isEmpty()) {
+                    return;
+                }
+                try {
+                    execute(calls);
+                } catch (Throwable t) {
+                    logger.error(LCD.convert("01-00012"), tableName, calls.size(), t);
+                    for (Call<T, R> failed : calls) {
+                        failed.future.completeExceptionally(t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * send the operations and complete the futures of the calls
+         */
+        abstract void execute(List<Call<T, R>> calls) throws Exception;
+    }
+}
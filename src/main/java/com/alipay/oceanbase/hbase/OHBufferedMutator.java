@@ -0,0 +1,404 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase;
+
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.sofa.common.thread.SofaThreadPoolExecutor;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.io.HeapSize;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.LCD;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.TABLE_HBASE_LOGGER_SPACE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Buffers puts and deletes of a table and flushes them from background threads.
+ * <p>
+ * A flush is started once the buffered mutations reach the write buffer size of the
+ * table, and at most <code>hbase.htable.mutator.max.inflight</code> flushes run at the
+ * same time. A flush which touches a row of an earlier flush still in flight waits for it
+ * before sending, so the mutations of the same row reach the server in the order of the
+ * <code>mutate</code> calls. Writers are blocked when the mutations buffered or being flushed reach
+ * <code>hbase.htable.mutator.max.buffer.size</code>.
+ * <p>
+ * The mutations which failed are reported to the <code>ExceptionListener</code>. Without
+ * a listener they are thrown by the next <code>mutate</code> or <code>flush</code>.
+ * <p>
+ * The mutator is thread safe.
+ */
+public class OHBufferedMutator implements Closeable {
+
+    private static final Logger logger = TableHBaseLoggerFactory.getLogger(OHBufferedMutator.class);
+
+    /**
+     * Listens for the mutations which failed in background flushes.
+     */
+    public interface ExceptionListener {
+        void onException(RetriesExhaustedWithDetailsException exception, OHBufferedMutator mutator)
+                                                                                                   throws RetriesExhaustedWithDetailsException;
+    }
+
+    private final OHTable            table;
+
+    private final String             tableName;
+
+    private final ExceptionListener  listener;
+
+    /**
+     * a flush is started once the buffered mutations reach this size
+     */
+    private final long               writeBufferSize;
+
+    /**
+     * the max size of the mutations buffered or being flushed
+     */
+    private final long               maxBufferSize;
+
+    private final ThreadPoolExecutor flushPool;
+
+    private final ReentrantLock      lock             = new ReentrantLock();
+
+    private final Condition          bufferNotFull    = lock.newCondition();
+
+    private final Condition          flushFinished    = lock.newCondition();
+
+    private List<Mutation>           buffer           = new ArrayList<Mutation>();
+
+    /**
+     * size of the mutations in the buffer
+     */
+    private long                     currentBufferSize;
+
+    /**
+     * size of the mutations in the buffer or being flushed
+     */
+    private long                     totalBufferSize;
+
+    private int                      inFlight;
+
+    private long                     flushSequence;
+
+    /**
+     * sequences of the flushes started and not finished yet
+     */
+    private final Set<Long>          runningFlushes   = new HashSet<Long>();
+
+    /**
+     * the sequence of the latest flush still in flight of each row
+     */
+    private final Map<byte[], Long>  inFlightRows     = new TreeMap<byte[], Long>(
+                                                          Bytes.BYTES_COMPARATOR);
+
+    /**
+     * failures kept for the caller if there is no listener
+     */
+    private final List<Throwable>    failedExceptions = new ArrayList<Throwable>();
+
+    private final List<Row>          failedRows       = new ArrayList<Row>();
+
+    private final List<String>       failedHosts      = new ArrayList<String>();
+
+    private volatile boolean         closed           = false;
+
+    /**
+     * Creates a mutator of the table, failures are thrown by the next <code>mutate</code> or
+     * <code>flush</code>.
+     *
+     * @param table the table to write
+     */
+    public OHBufferedMutator(OHTable table) {
+        this(table, null);
+    }
+
+    /**
+     * Creates a mutator of the table.
+     *
+     * @param table    the table to write
+     * @param listener the listener of the failed mutations, may be null
+     */
+    public OHBufferedMutator(OHTable table, ExceptionListener listener) {
+        checkArgument(table != null, "table is null.");
+        this.table = table;
+        this.tableName = Bytes.toString(table.getTableName());
+        this.listener = listener;
+        Configuration configuration = table.getConfiguration();
+        this.writeBufferSize = table.getWriteBufferSize();
+        this.maxBufferSize = configuration.getLong(HBASE_HTABLE_MUTATOR_MAX_BUFFER_SIZE,
+            DEFAULT_HBASE_HTABLE_MUTATOR_MAX_BUFFER_SIZE);
+        int maxInFlight = configuration.getInt(HBASE_HTABLE_MUTATOR_MAX_IN_FLIGHT,
+            DEFAULT_HBASE_HTABLE_MUTATOR_MAX_IN_FLIGHT);
+        checkArgument(maxInFlight > 0, HBASE_HTABLE_MUTATOR_MAX_IN_FLIGHT + " is not positive.");
+        checkArgument(maxBufferSize >= writeBufferSize, HBASE_HTABLE_MUTATOR_MAX_BUFFER_SIZE
+                                                        + " is smaller than write buffer size.");
+        this.flushPool = new SofaThreadPoolExecutor(maxInFlight, maxInFlight,
+            configuration.getLong(HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME,
+                DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME), SECONDS,
+            new LinkedBlockingQueue<Runnable>(), "OHBufferedMutatorFlushPool",
+            TABLE_HBASE_LOGGER_SPACE);
+        this.flushPool.allowCoreThreadTimeOut(true);
+    }
+
+    public byte[] getName() {
+        return table.getTableName();
+    }
+
+    public Configuration getConfiguration() {
+        return table.getConfiguration();
+    }
+
+    public long getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void mutate(Mutation mutation) throws IOException {
+        mutate(Collections.singletonList(mutation));
+    }
+
+    /**
+     * Buffer the mutations, blocks if the buffer is full.
+     *
+     * @param mutations puts and deletes
+     * @throws IOException if the mutator is closed, interrupted or some previous mutations failed
+     */
+    public void mutate(List<? extends Mutation> mutations) throws IOException {
+        checkStatus();
+        for (Mutation mutation : mutations) {
+            table.validateMutation(mutation);
+        }
+        throwFailures();
+
+        try {
+            lock.lockInterruptibly();
+            try {
+                for (Mutation mutation : mutations) {
+                    long size = heapSize(mutation);
+                    while (totalBufferSize > 0 && totalBufferSize + size > maxBufferSize) {
+                        if (!buffer.isEmpty()) {
+                            // let the buffered mutations release memory as soon as possible
+                            startFlush();
+                        }
+                        bufferNotFull.await();
+                    }
+                    buffer.add(mutation);
+                    currentBufferSize += size;
+                    totalBufferSize += size;
+                    if (currentBufferSize >= writeBufferSize) {
+                        startFlush();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("mutate table " + tableName + " interrupted");
+        }
+    }
+
+    /**
+     * Flush the buffered mutations and wait for all the flushes to finish.
+     *
+     * @throws IOException if interrupted or some mutations failed without a listener
+     */
+    public void flush() throws IOException {
+        try {
+            lock.lockInterruptibly();
+            try {
+                if (!buffer.isEmpty()) {
+                    startFlush();
+                }
+                while (inFlight > 0) {
+                    flushFinished.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("flush table " + tableName + " interrupted");
+        }
+        throwFailures();
+    }
+
+    /**
+     * Flush the buffered mutations and release the flush threads, the table is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            flushPool.shutdown();
+        }
+    }
+
+    /**
+     * must hold the lock
+     */
+    private void startFlush() {
+        final List<Mutation> mutations = buffer;
+        final long size = currentBufferSize;
+        buffer = new ArrayList<Mutation>();
+        currentBufferSize = 0;
+        inFlight++;
+        final long sequence = ++flushSequence;
+        final Set<Long> dependencies = new HashSet<Long>();
+        for (Mutation mutation : mutations) {
+            Long previous = inFlightRows.put(mutation.getRow(), sequence);
+            if (previous != null && previous != sequence) {
+                dependencies.add(previous);
+            }
+        }
+        runningFlushes.add(sequence);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                doFlush(mutations, size, sequence, dependencies);
+            }
+        };
+        try {
+            flushPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * @param dependencies the earlier flushes in flight which touch the same rows
+     */
+    private void doFlush(List<Mutation> mutations, long size, long sequence,
+                         Set<Long> dependencies) {
+        lock.lock();
+        try {
+            // the earlier flushes were started before this one, so they never wait for it
+            while (!Collections.disjoint(runningFlushes, dependencies)) {
+                flushFinished.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Object[] results;
+        try {
+            results = table.batchMutate(mutations);
+        } catch (Throwable t) {
+            results = new Object[mutations.size()];
+            Arrays.fill(results, t);
+        }
+        RetriesExhaustedWithDetailsException exception = OHTable.buildRetriesExhaustedException(
+            tableName, mutations, results);
+
+        lock.lock();
+        try {
+            totalBufferSize -= size;
+            inFlight--;
+            runningFlushes.remove(sequence);
+            for (Mutation mutation : mutations) {
+                Long latest = inFlightRows.get(mutation.getRow());
+                if (latest != null && latest == sequence) {
+                    inFlightRows.remove(mutation.getRow());
+                }
+            }
+            if (exception != null && listener == null) {
+                for (int i = 0; i < exception.getNumExceptions(); i++) {
+                    failedExceptions.add(exception.getCause(i));
+                    failedRows.add(exception.getRow(i));
+                    failedHosts.add(exception.getHostnamePort(i));
+                }
+            }
+            bufferNotFull.signalAll();
+            flushFinished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (exception != null && listener != null) {
+            try {
+                listener.onException(exception, this);
+            } catch (Exception e) {
+                logger.error(LCD.convert("01-00011"), tableName, exception.getNumExceptions(), e);
+            }
+        }
+    }
+
+    private void throwFailures() throws RetriesExhaustedWithDetailsException {
+        lock.lock();
+        try {
+            if (failedExceptions.isEmpty()) {
+                return;
+            }
+            RetriesExhaustedWithDetailsException exception = new RetriesExhaustedWithDetailsException(
+                new ArrayList<Throwable>(failedExceptions), new ArrayList<Row>(failedRows),
+                new ArrayList<String>(failedHosts));
+            failedExceptions.clear();
+            failedRows.clear();
+            failedHosts.clear();
+            throw exception;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long heapSize(Mutation mutation) {
+        if (mutation instanceof HeapSize) {
+            return ((HeapSize) mutation).heapSize();
+        }
+        long size = mutation.getRow().length;
+        for (List<KeyValue> keyValues : mutation.getFamilyMap().values()) {
+            for (KeyValue kv : keyValues) {
+                size += kv.heapSize();
+            }
+        }
+        return size;
+    }
+
+    private void checkStatus() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("buffered mutator of table " + tableName + " is closed");
+        }
+    }
+}
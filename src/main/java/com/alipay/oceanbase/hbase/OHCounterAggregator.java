@@ -0,0 +1,431 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase;
+
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.sofa.common.thread.SofaScheduledThreadPoolExecutor;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.LCD;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.TABLE_HBASE_LOGGER_SPACE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Adds up the increments of counters in memory and sends the sums to the table from a
+ * background thread, so that a counter incremented many times between two flushes costs
+ * one increment on the server.
+ * <p>
+ * The deltas are spread over <code>hbase.htable.counter.stripes</code> stripes by cell. They
+ * are flushed every <code>hbase.htable.counter.flush.interval</code> milliseconds, once
+ * <code>hbase.htable.counter.max.pending</code> cells are pending, or by <code>flush</code>.
+ * A flush sends one <code>Increment</code> for each row and family.
+ * <p>
+ * The increments which failed are reported to the <code>ExceptionListener</code>. Without
+ * a listener they are thrown by the next <code>increment</code> or <code>flush</code>. They
+ * are not retried, the server may have applied them.
+ * <p>
+ * The aggregator is thread safe.
+ */
+public class OHCounterAggregator implements Closeable {
+
+    private static final Logger logger = TableHBaseLoggerFactory
+                                           .getLogger(OHCounterAggregator.class);
+
+    /**
+     * Listens for the increments which failed in background flushes.
+     */
+    public interface ExceptionListener {
+        void onException(RetriesExhaustedWithDetailsException exception,
+                         OHCounterAggregator aggregator)
+                                                        throws RetriesExhaustedWithDetailsException;
+    }
+
+    private final OHTable                     table;
+
+    private final String                      tableName;
+
+    private final ExceptionListener           listener;
+
+    private final Stripe[]                    stripes;
+
+    /**
+     * a flush is started once this number of cells are pending
+     */
+    private final int                         maxPending;
+
+    private final AtomicInteger               pendingCells     = new AtomicInteger();
+
+    private final AtomicBoolean               flushRequested   = new AtomicBoolean();
+
+    /**
+     * a single thread, so that the flushes never overlap
+     */
+    private final ScheduledThreadPoolExecutor flushPool;
+
+    /**
+     * failures kept for the caller if there is no listener
+     */
+    private final List<Throwable>             failedExceptions = new ArrayList<Throwable>();
+
+    private final List<Row>                   failedRows       = new ArrayList<Row>();
+
+    private final List<String>                failedHosts      = new ArrayList<String>();
+
+    /**
+     * increments add their deltas under the read lock, close marks the aggregator closed
+     * under the write lock, so no delta is added after the final flush takes its stripe
+     */
+    private final ReentrantReadWriteLock      closeLock        = new ReentrantReadWriteLock();
+
+    private volatile boolean                  closed           = false;
+
+    /**
+     * Creates an aggregator of the table, failures are thrown by the next
+     * <code>increment</code> or <code>flush</code>.
+     *
+     * @param table the table to increment
+     */
+    public OHCounterAggregator(OHTable table) {
+        this(table, null);
+    }
+
+    /**
+     * Creates an aggregator of the table.
+     *
+     * @param table    the table to increment
+     * @param listener the listener of the failed increments, may be null
+     */
+    public OHCounterAggregator(OHTable table, ExceptionListener listener) {
+        checkArgument(table != null, "table is null.");
+        this.table = table;
+        this.tableName = Bytes.toString(table.getTableName());
+        this.listener = listener;
+        Configuration configuration = table.getConfiguration();
+        long flushInterval = configuration.getLong(HBASE_HTABLE_COUNTER_FLUSH_INTERVAL,
+            DEFAULT_HBASE_HTABLE_COUNTER_FLUSH_INTERVAL);
+        this.maxPending = configuration.getInt(HBASE_HTABLE_COUNTER_MAX_PENDING,
+            DEFAULT_HBASE_HTABLE_COUNTER_MAX_PENDING);
+        int stripeCount = configuration.getInt(HBASE_HTABLE_COUNTER_STRIPES,
+            DEFAULT_HBASE_HTABLE_COUNTER_STRIPES);
+        checkArgument(flushInterval >= 0, HBASE_HTABLE_COUNTER_FLUSH_INTERVAL + " is negative.");
+        checkArgument(maxPending > 0, HBASE_HTABLE_COUNTER_MAX_PENDING + " is not positive.");
+        checkArgument(stripeCount > 0, HBASE_HTABLE_COUNTER_STRIPES + " is not positive.");
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.flushPool = new SofaScheduledThreadPoolExecutor(1, "OHCounterAggregatorFlushPool",
+            TABLE_HBASE_LOGGER_SPACE);
+        if (flushInterval > 0) {
+            flushPool.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    doFlush();
+                }
+            }, flushInterval, flushInterval, MILLISECONDS);
+        }
+    }
+
+    public byte[] getName() {
+        return table.getTableName();
+    }
+
+    public Configuration getConfiguration() {
+        return table.getConfiguration();
+    }
+
+    /**
+     * @return the number of cells whose deltas are not sent yet
+     */
+    public int getPendingCount() {
+        return pendingCells.get();
+    }
+
+    /**
+     * Add the amount to the counter, returns without waiting for the server.
+     *
+     * @throws IllegalStateException if the aggregator is closed
+     * @throws IOException if some previous increments failed without a listener
+     */
+    public void increment(byte[] row, byte[] family, byte[] qualifier, long amount)
+                                                                                   throws IOException {
+        checkArgument(row != null && row.length > 0, "row is empty.");
+        checkArgument(family != null, "family is null.");
+        checkArgument(qualifier != null, "qualifier is null.");
+        checkStatus();
+        throwFailures();
+
+        CounterKey key = new CounterKey(row, family, qualifier);
+        Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+        boolean newCell;
+        closeLock.readLock().lock();
+        try {
+            checkStatus();
+            synchronized (stripe) {
+                long[] delta = stripe.deltas.get(key);
+                newCell = delta == null;
+                if (newCell) {
+                    stripe.deltas.put(key, new long[] { amount });
+                } else {
+                    delta[0] += amount;
+                }
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (newCell && pendingCells.incrementAndGet() >= maxPending) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Send the deltas added before and wait for them to be applied.
+     *
+     * @throws IllegalStateException if the aggregator is closed
+     * @throws IOException if interrupted or some increments failed without a listener
+     */
+    public void flush() throws IOException {
+        checkStatus();
+        flushAndWait();
+        throwFailures();
+    }
+
+    /**
+     * Send the pending deltas and release the flush thread, the table is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flushAndWait();
+        } finally {
+            flushPool.shutdown();
+        }
+        throwFailures();
+    }
+
+    private void requestFlush() {
+        if (!flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushRequested.set(false);
+                    doFlush();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed, the pending deltas are sent by close
+            flushRequested.set(false);
+        }
+    }
+
+    private void flushAndWait() throws IOException {
+        Future<?> future;
+        try {
+            future = flushPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    doFlush();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IOException("flush counters of table " + tableName + " error.", e);
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("flush counters of table " + tableName
+                                             + " interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("flush counters of table " + tableName + " error.", e.getCause());
+        }
+    }
+
+    /**
+     * only runs in the flush thread
+     */
+    private void doFlush() {
+        Map<CounterKey, Increment> incrementMap = new LinkedHashMap<CounterKey, Increment>();
+        for (Stripe stripe : stripes) {
+            Map<CounterKey, long[]> deltas;
+            synchronized (stripe) {
+                if (stripe.deltas.isEmpty()) {
+                    continue;
+                }
+                deltas = stripe.deltas;
+                stripe.deltas = new HashMap<CounterKey, long[]>();
+            }
+            pendingCells.addAndGet(-deltas.size());
+            for (Map.Entry<CounterKey, long[]> entry : deltas.entrySet()) {
+                CounterKey key = entry.getKey();
+                long amount = entry.getValue()[0];
+                if (amount == 0) {
+                    continue;
+                }
+                // one increment of a row and family is sent in one request
+                CounterKey rowKey = new CounterKey(key.row, key.family, HConstants.EMPTY_BYTE_ARRAY);
+                Increment increment = incrementMap.get(rowKey);
+                if (increment == null) {
+                    increment = new Increment(key.row);
+                    incrementMap.put(rowKey, increment);
+                }
+                increment.addColumn(key.family, key.qualifier, amount);
+            }
+        }
+        if (incrementMap.isEmpty()) {
+            return;
+        }
+
+        List<Increment> increments = new ArrayList<Increment>(incrementMap.values());
+        Object[] results = new Object[increments.size()];
+        try {
+            table.batch(increments, results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Arrays.fill(results, e);
+        } catch (Throwable t) {
+            Arrays.fill(results, t);
+        }
+        RetriesExhaustedWithDetailsException exception = OHTable.buildRetriesExhaustedException(
+            tableName, increments, results);
+        if (exception == null) {
+            return;
+        }
+
+        if (listener == null) {
+            synchronized (failedExceptions) {
+                for (int i = 0; i < exception.getNumExceptions(); i++) {
+                    failedExceptions.add(exception.getCause(i));
+                    failedRows.add(exception.getRow(i));
+                    failedHosts.add(exception.getHostnamePort(i));
+                }
+            }
+        } else {
+            try {
+                listener.onException(exception, this);
+            } catch (Exception e) {
+                logger.error(LCD.convert("01-00013"), tableName, exception.getNumExceptions(), e);
+            }
+        }
+    }
+
+    private void throwFailures() throws RetriesExhaustedWithDetailsException {
+        synchronized (failedExceptions) {
+            if (failedExceptions.isEmpty()) {
+                return;
+            }
+            RetriesExhaustedWithDetailsException exception = new RetriesExhaustedWithDetailsException(
+                new ArrayList<Throwable>(failedExceptions), new ArrayList<Row>(failedRows),
+                new ArrayList<String>(failedHosts));
+            failedExceptions.clear();
+            failedRows.clear();
+            failedHosts.clear();
+            throw exception;
+        }
+    }
+
+    private void checkStatus() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("counter aggregator of table " + tableName
+                                            + " is closed");
+        }
+    }
+
+    /**
+     * the pending deltas of a part of the cells, guarded by itself
+     */
+    private static final class Stripe {
+
+        private Map<CounterKey, long[]> deltas = new HashMap<CounterKey, long[]>();
+    }
+
+    private static final class CounterKey {
+
+        private final byte[] row;
+
+        private final byte[] family;
+
+        private final byte[] qualifier;
+
+        private final int    hashCode;
+
+        CounterKey(byte[] row, byte[] family, byte[] qualifier) {
+            this.row = row;
+            this.family = family;
+            this.qualifier = qualifier;
+            int h = Bytes.hashCode(row);
+            h = 31 * h + Bytes.hashCode(family);
+            this.hashCode = 31 * h + Bytes.hashCode(qualifier);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey other = (CounterKey) o;
+            return Bytes.equals(row, other.row) && Bytes.equals(family, other.family)
+                   && Bytes.equals(qualifier, other.qualifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -17,15 +17,38 @@
 
 package com.alipay.oceanbase.hbase;
 
+import com.alipay.oceanbase.hbase.cache.GetCoalescer;
+import com.alipay.oceanbase.hbase.cache.RowCache;
+import com.alipay.oceanbase.hbase.cache.RowCacheManager;
 import com.alipay.oceanbase.hbase.constants.OHConstants;
+import com.alipay.oceanbase.hbase.exception.CircuitBreakerOpenException;
 import com.alipay.oceanbase.hbase.exception.FeatureNotSupportedException;
+import com.alipay.oceanbase.hbase.exception.RequestThrottledException;
+import com.alipay.oceanbase.hbase.execute.CircuitBreaker;
+import com.alipay.oceanbase.hbase.execute.CircuitBreakerManager;
+import com.alipay.oceanbase.hbase.execute.ExecuteLanes;
+import com.alipay.oceanbase.hbase.execute.ObRetryPolicy;
+import com.alipay.oceanbase.hbase.execute.OperationThrottle;
+import com.alipay.oceanbase.hbase.execute.ReadHedger;
+import com.alipay.oceanbase.hbase.execute.RetryBudget;
+import com.alipay.oceanbase.hbase.execute.RetryPolicy;
 import com.alipay.oceanbase.hbase.execute.ServerCallable;
+import com.alipay.oceanbase.hbase.execute.ThrottleManager;
 import com.alipay.oceanbase.hbase.filter.HBaseFilterUtils;
+import com.alipay.oceanbase.hbase.filter.HBaseFilterRangeAnalyzer;
+import com.alipay.oceanbase.hbase.filter.KeyOnlyProjection;
 import com.alipay.oceanbase.hbase.result.ClientStreamScanner;
+import com.alipay.oceanbase.hbase.result.ParallelClientScanner;
+import com.alipay.oceanbase.hbase.util.AdaptiveBatchSizer;
+import com.alipay.oceanbase.hbase.util.GetKey;
 import com.alipay.oceanbase.hbase.util.ObTableClientManager;
 import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.oceanbase.hbase.util.WriteCoalescer;
 import com.alipay.oceanbase.rpc.ObTableClient;
 import com.alipay.oceanbase.rpc.exception.ExceptionUtil;
+import com.alipay.oceanbase.rpc.exception.ObTableException;
+import com.alipay.oceanbase.rpc.location.model.partition.ObPair;
+import com.alipay.oceanbase.rpc.protocol.payload.ResultCodes;
 import com.alipay.oceanbase.rpc.protocol.payload.impl.ObObj;
 import com.alipay.oceanbase.rpc.protocol.payload.impl.ObRowKey;
 import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.*;
@@ -34,6 +57,7 @@ import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.mutate.ObTableQuer
 import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.mutate.ObTableQueryAndMutateResult;
 import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.query.*;
 import com.alipay.oceanbase.rpc.stream.ObTableClientQueryStreamResult;
+import com.alipay.oceanbase.rpc.table.ObTable;
 import com.alipay.sofa.common.thread.SofaThreadPoolExecutor;
 import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
 import org.apache.hadoop.conf.Configuration;
@@ -49,21 +73,29 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
 import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.RowLock;
 import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.coprocessor.Batch;
+import org.apache.hadoop.hbase.filter.ColumnCountGetFilter;
 import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
 import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.ipc.CoprocessorProtocol;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
 import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
@@ -79,6 +111,12 @@ public class OHTable implements HTableInterface {
 
     private static final Logger   logger                 = TableHBaseLoggerFactory
                                                              .getLogger(OHTable.class);
+
+    /**
+     * taken by a hedged read abandoned, so that the attempts succeeded later close their results
+     */
+    private static final Object   HEDGE_ABANDONED        = new Object();
+
     /**
      * the table client for oceanbase
      */
@@ -114,11 +152,26 @@ public class OHTable implements HTableInterface {
     private boolean               closeClientOnClose     = true;
 
     /**
-     * when the operationExecuteInPool is true the <code>Get</code>
-     * will be executed in the pool.
+     * the pool of the batch Gets, and of the <code>Get</code> when the
+     * operationExecuteInPool is true.
      */
     private final ExecutorService executePool;
 
+    /**
+     * the pool of the scans and their prefetch
+     */
+    private final ExecutorService scanPool;
+
+    /**
+     * the pool of the mutations of different families, increments and appends
+     */
+    private final ExecutorService writePool;
+
+    /**
+     * the lanes of the pools above
+     */
+    private final ExecuteLanes    lanes;
+
     /**
      * the maximum number of threads to allow in the
      * <code>Get</code> executing pool
@@ -135,7 +188,10 @@ public class OHTable implements HTableInterface {
 
     /**
      * decide whether the <code>Get</code> request will be executed
-     * in the pool.
+     * in the pool, otherwise its timeout is passed to the requests
+     * as a deadline and checked between the retries in the caller thread.
+     * Opening a scanner with a timeout always waits for the pool, as the
+     * stream can not take the deadline of its opening.
      */
     private boolean               operationExecuteInPool = false;
 
@@ -176,6 +232,111 @@ public class OHTable implements HTableInterface {
 
     // i.e., doPut checks the writebuffer every X Puts.
 
+    /**
+     * max number of results the scanner fetches ahead, 0 means disable prefetch
+     */
+    private int                   scannerPrefetchDepth;
+
+    /**
+     * max number of rows per scan round trip if the scan does not set its caching
+     */
+    private int                   scannerCaching;
+
+    /**
+     * max bytes per scan round trip if the scan does not set its max result size
+     */
+    private long                  scannerMaxResultSize;
+
+    /**
+     * whether drop the buffered cells which later cells of the same flush overwrite
+     */
+    private boolean               writeCoalesce;
+
+    /**
+     * times to resend the Puts which failed with a retryable error in flushCommits
+     */
+    private int                   flushRetries;
+
+    /**
+     * base pause in milliseconds between the retries of flushCommits
+     */
+    private long                  flushRetryPause;
+
+    /**
+     * sizes the write buffer flushes toward a target latency, null if the size is fixed
+     */
+    private AdaptiveBatchSizer    batchSizer;
+
+    /**
+     * limits Gets and scans, null if unlimited
+     */
+    private OperationThrottle     readThrottle;
+
+    /**
+     * limits flushCommits, null if unlimited
+     */
+    private OperationThrottle     writeThrottle;
+
+    /**
+     * decides which failures of the Gets, scans and flushes are retried and how long after
+     */
+    private RetryPolicy           retryPolicy;
+
+    /**
+     * the retries of the table taken from, null if unlimited
+     */
+    private RetryBudget           retryBudget;
+
+    /**
+     * whether the requests go through the circuit breakers of the target tables and servers
+     */
+    private boolean               circuitBreakerEnabled;
+
+    private int                   circuitBreakerFailureThreshold;
+
+    private long                  circuitBreakerOpenTime;
+
+    private int                   circuitBreakerHalfOpenProbes;
+
+    /**
+     * decide when a Get or a short scan is hedged, null if hedging is disabled
+     */
+    private ReadHedger            getHedger;
+
+    private ReadHedger            scanHedger;
+
+    /**
+     * whether the hedged reads may be served by a weak read replica
+     */
+    private boolean               hedgeWeakRead;
+
+    private int                   hedgeScanMaxCaching;
+
+    /**
+     * whether scan the partitions in parallel
+     */
+    private boolean               parallelScan;
+
+    /**
+     * whether the parallel scan returns rows in row key order
+     */
+    private boolean               parallelScanOrdered;
+
+    /**
+     * max number of partitions scanned at the same time by the unordered parallel scan
+     */
+    private int                   parallelScanMax;
+
+    /**
+     * cache of the results of <code>get(Get)</code>, null if disabled
+     */
+    private RowCache              rowCache;
+
+    /**
+     * shares one read among the identical Gets in flight, null if disabled
+     */
+    private GetCoalescer          getCoalescer;
+
     /**
      * <code>Configuration</code> extends from hbase configuration
      */
@@ -203,7 +364,10 @@ public class OHTable implements HTableInterface {
             DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX);
         this.keepAliveTime = configuration.getLong(HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME,
             DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME);
-        this.executePool = createDefaultThreadPoolExecutor(1, maxThreads, keepAliveTime);
+        this.lanes = ExecuteLanes.create(configuration);
+        this.executePool = lanes.get(ExecuteLanes.Lane.GET);
+        this.scanPool = lanes.get(ExecuteLanes.Lane.SCAN);
+        this.writePool = lanes.get(ExecuteLanes.Lane.WRITE);
         this.obTableClient = ObTableClientManager.getOrCreateObTableClient(configuration);
 
         finishSetUp();
@@ -246,7 +410,45 @@ public class OHTable implements HTableInterface {
         checkArgument(executePool != null && !executePool.isShutdown(),
             "executePool is null or executePool is shutdown");
         this.configuration = configuration;
+        this.lanes = ExecuteLanes.of(executePool);
         this.executePool = executePool;
+        this.scanPool = executePool;
+        this.writePool = executePool;
+        this.tableName = tableName;
+        this.tableNameString = Bytes.toString(tableName);
+        this.cleanupPoolOnClose = false;
+        this.maxThreads = configuration.getInt(HBASE_HTABLE_PRIVATE_THREADS_MAX,
+            DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX);
+        this.keepAliveTime = configuration.getLong(HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME,
+            DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME);
+        this.obTableClient = ObTableClientManager.getOrCreateObTableClient(configuration);
+
+        finishSetUp();
+    }
+
+    /**
+     * Creates an object to access a HBase table.
+     * Shares oceanbase table obTableClient and other resources with other OHTable instances
+     * created with the same <code>configuration</code> instance.
+     * Use this constructor when the execute lanes are externally managed, such as shared by
+     * the tables of a pool.
+     *
+     * @param configuration Configuration object to use.
+     * @param tableName     Name of the table.
+     * @param lanes         the execute lanes to be used.
+     * @throws IOException              if a remote or network exception occurs
+     * @throws IllegalArgumentException if the param error
+     */
+    public OHTable(Configuration configuration, final byte[] tableName, final ExecuteLanes lanes)
+                                                                                                 throws IOException {
+        checkArgument(configuration != null, "configuration is null.");
+        checkArgument(tableName != null, "tableNameString is blank.");
+        checkArgument(lanes != null, "lanes is null");
+        this.configuration = configuration;
+        this.lanes = lanes;
+        this.executePool = lanes.get(ExecuteLanes.Lane.GET);
+        this.scanPool = lanes.get(ExecuteLanes.Lane.SCAN);
+        this.writePool = lanes.get(ExecuteLanes.Lane.WRITE);
         this.tableName = tableName;
         this.tableNameString = Bytes.toString(tableName);
         this.cleanupPoolOnClose = false;
@@ -282,7 +484,10 @@ public class OHTable implements HTableInterface {
         this.closeClientOnClose = false;
         this.maxThreads = DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX;
         this.keepAliveTime = DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME;
+        this.lanes = ExecuteLanes.of(executePool);
         this.executePool = executePool;
+        this.scanPool = executePool;
+        this.writePool = executePool;
         this.obTableClient = obTableClient;
         this.configuration = new Configuration();
         finishSetUp();
@@ -319,20 +524,168 @@ public class OHTable implements HTableInterface {
             HConstants.HBASE_CLIENT_OPERATION_TIMEOUT,
             HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT);
         this.operationExecuteInPool = this.configuration.getBoolean(
-            HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL,
-            (this.operationTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT));
+            HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL, DEFAULT_HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL);
         this.maxKeyValueSize = this.configuration.getInt(HBASE_CLIENT_KEYVALUE_MAXSIZE,
             OHConstants.DEFAULT_HBASE_CLIENT_KEYVALUE_MAXSIZE);
         this.putWriteBufferCheck = this.configuration.getInt(HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK,
             DEFAULT_HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK);
         this.writeBufferSize = this.configuration.getLong(HBASE_HTABLE_CLIENT_WRITE_BUFFER,
             DEFAULT_HBASE_HTABLE_CLIENT_WRITE_BUFFER);
+        this.scannerPrefetchDepth = this.configuration.getInt(HBASE_HTABLE_SCANNER_PREFETCH_DEPTH,
+            DEFAULT_HBASE_HTABLE_SCANNER_PREFETCH_DEPTH);
+        this.scannerCaching = this.configuration.getInt(HBASE_HTABLE_SCANNER_CACHING,
+            DEFAULT_HBASE_HTABLE_SCANNER_CACHING);
+        this.scannerMaxResultSize = this.configuration.getLong(
+            HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY, -1);
+        this.writeCoalesce = this.configuration.getBoolean(HBASE_HTABLE_WRITE_COALESCE,
+            DEFAULT_HBASE_HTABLE_WRITE_COALESCE);
+        this.flushRetries = this.configuration.getInt(HBASE_HTABLE_FLUSH_RETRIES,
+            DEFAULT_HBASE_HTABLE_FLUSH_RETRIES);
+        this.flushRetryPause = this.configuration.getLong(HBASE_HTABLE_FLUSH_RETRY_PAUSE,
+            DEFAULT_HBASE_HTABLE_FLUSH_RETRY_PAUSE);
+        long batchTargetLatency = this.configuration.getLong(
+            HBASE_HTABLE_ADAPTIVE_BATCH_TARGET_LATENCY,
+            DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_TARGET_LATENCY);
+        if (batchTargetLatency > 0) {
+            this.batchSizer = new AdaptiveBatchSizer(batchTargetLatency,
+                this.configuration.getLong(HBASE_HTABLE_ADAPTIVE_BATCH_MIN_SIZE,
+                    DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MIN_SIZE), this.configuration.getLong(
+                    HBASE_HTABLE_ADAPTIVE_BATCH_MAX_SIZE,
+                    DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MAX_SIZE), this.configuration.getInt(
+                    HBASE_HTABLE_ADAPTIVE_BATCH_MIN_OPS,
+                    DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MIN_OPS), this.configuration.getInt(
+                    HBASE_HTABLE_ADAPTIVE_BATCH_MAX_OPS,
+                    DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MAX_OPS), this.writeBufferSize,
+                this.configuration.getInt(HBASE_HTABLE_ADAPTIVE_BATCH_WINDOW,
+                    DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_WINDOW));
+        }
+        this.parallelScan = this.configuration.getBoolean(HBASE_HTABLE_SCANNER_PARALLEL,
+            DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL);
+        this.parallelScanOrdered = this.configuration.getBoolean(
+            HBASE_HTABLE_SCANNER_PARALLEL_ORDERED, DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_ORDERED);
+        this.parallelScanMax = this.configuration.getInt(HBASE_HTABLE_SCANNER_PARALLEL_MAX,
+            DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_MAX);
+        checkArgument(parallelScanMax > 0, HBASE_HTABLE_SCANNER_PARALLEL_MAX + " is not positive.");
+        long rowCacheMaxSize = this.configuration.getLong(HBASE_HTABLE_ROW_CACHE_MAX_SIZE,
+            DEFAULT_HBASE_HTABLE_ROW_CACHE_MAX_SIZE);
+        if (rowCacheMaxSize > 0) {
+            this.rowCache = RowCacheManager.getOrCreateRowCache(obTableClient, tableNameString,
+                rowCacheMaxSize, this.configuration.getLong(HBASE_HTABLE_ROW_CACHE_TTL,
+                    DEFAULT_HBASE_HTABLE_ROW_CACHE_TTL));
+        }
+        if (this.configuration.getBoolean(HBASE_HTABLE_GET_COALESCE_ENABLE,
+            DEFAULT_HBASE_HTABLE_GET_COALESCE_ENABLE)) {
+            this.getCoalescer = RowCacheManager.getOrCreateGetCoalescer(obTableClient,
+                tableNameString);
+        }
+        this.readThrottle = getThrottle(OperationThrottle.Type.READ,
+            HBASE_HTABLE_THROTTLE_READ_OPS, HBASE_HTABLE_THROTTLE_READ_BYTES,
+            HBASE_HTABLE_THROTTLE_READ_IN_FLIGHT);
+        this.writeThrottle = getThrottle(OperationThrottle.Type.WRITE,
+            HBASE_HTABLE_THROTTLE_WRITE_OPS, HBASE_HTABLE_THROTTLE_WRITE_BYTES,
+            HBASE_HTABLE_THROTTLE_WRITE_IN_FLIGHT);
+        setUpRetryPolicy();
+        this.circuitBreakerEnabled = configuration.getBoolean(HBASE_HTABLE_CIRCUIT_BREAKER_ENABLE,
+            DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_ENABLE);
+        this.circuitBreakerFailureThreshold = configuration.getInt(
+            HBASE_HTABLE_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+            DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        this.circuitBreakerOpenTime = configuration.getLong(HBASE_HTABLE_CIRCUIT_BREAKER_OPEN_TIME,
+            DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_OPEN_TIME);
+        this.circuitBreakerHalfOpenProbes = configuration.getInt(
+            HBASE_HTABLE_CIRCUIT_BREAKER_HALF_OPEN_PROBES,
+            DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_HALF_OPEN_PROBES);
+        setUpHedging();
+    }
+
+    private void setUpHedging() {
+        if (!configuration.getBoolean(HBASE_HTABLE_HEDGE_ENABLE, DEFAULT_HBASE_HTABLE_HEDGE_ENABLE)) {
+            return;
+        }
+        double percentile = configuration.getFloat(HBASE_HTABLE_HEDGE_PERCENTILE,
+            DEFAULT_HBASE_HTABLE_HEDGE_PERCENTILE);
+        long minDelay = configuration.getLong(HBASE_HTABLE_HEDGE_MIN_DELAY,
+            DEFAULT_HBASE_HTABLE_HEDGE_MIN_DELAY);
+        int window = configuration.getInt(HBASE_HTABLE_HEDGE_WINDOW,
+            DEFAULT_HBASE_HTABLE_HEDGE_WINDOW);
+        // the Gets and scans are hedged after their own latencies, but from one budget
+        RetryBudget budget = new RetryBudget(configuration.getFloat(
+            HBASE_HTABLE_HEDGE_BUDGET_RATIO, DEFAULT_HBASE_HTABLE_HEDGE_BUDGET_RATIO), 0);
+        this.getHedger = new ReadHedger(percentile, minDelay, window, budget);
+        this.scanHedger = new ReadHedger(percentile, minDelay, window, budget);
+        this.hedgeWeakRead = configuration.getBoolean(HBASE_HTABLE_HEDGE_WEAK_READ,
+            DEFAULT_HBASE_HTABLE_HEDGE_WEAK_READ);
+        this.hedgeScanMaxCaching = configuration.getInt(HBASE_HTABLE_HEDGE_SCAN_MAX_CACHING,
+            DEFAULT_HBASE_HTABLE_HEDGE_SCAN_MAX_CACHING);
+    }
+
+    private void setUpRetryPolicy() {
+        this.retryPolicy = ReflectionUtils.newInstance(configuration.getClass(
+            HBASE_HTABLE_RETRY_POLICY_CLASS, ObRetryPolicy.class, RetryPolicy.class),
+            configuration);
+        float ratio = configuration.getFloat(HBASE_HTABLE_RETRY_BUDGET_RATIO,
+            DEFAULT_HBASE_HTABLE_RETRY_BUDGET_RATIO);
+        this.retryBudget = ratio <= 0 ? null : ThrottleManager.getOrCreateRetryBudget(
+            obTableClient, tableNameString, ratio, configuration.getLong(
+                HBASE_HTABLE_RETRY_BUDGET_MIN_PER_SECOND,
+                DEFAULT_HBASE_HTABLE_RETRY_BUDGET_MIN_PER_SECOND));
+    }
+
+    /**
+     * @return the throttle shared by the tables of the client, null if unlimited
+     */
+    private OperationThrottle getThrottle(OperationThrottle.Type type, String opsKey,
+                                          String bytesKey, String inFlightKey) {
+        long ops = getTableLimit(opsKey);
+        long bytes = getTableLimit(bytesKey);
+        long inFlight = getTableLimit(inFlightKey);
+        if (ops <= 0 && bytes <= 0 && inFlight <= 0) {
+            return null;
+        }
+        return ThrottleManager.getOrCreateThrottle(obTableClient, tableNameString, type, ops,
+            bytes, (int) Math.min(inFlight, Integer.MAX_VALUE), configuration.getBoolean(
+                HBASE_HTABLE_THROTTLE_FAIL_FAST, DEFAULT_HBASE_HTABLE_THROTTLE_FAIL_FAST));
+    }
+
+    private long getTableLimit(String key) {
+        return configuration.getLong(key + "." + tableNameString, configuration.getLong(key, 0));
     }
 
     public byte[] getTableName() {
         return tableName;
     }
 
+    /**
+     * @return the throttle of Gets and scans shared by the tables of the client, null if
+     * unlimited
+     */
+    public OperationThrottle getReadThrottle() {
+        return readThrottle;
+    }
+
+    /**
+     * @return the hedger of the Gets, null if hedging is disabled
+     */
+    public ReadHedger getGetHedger() {
+        return getHedger;
+    }
+
+    /**
+     * @return the throttle of Puts and Deletes shared by the tables of the client, null if
+     * unlimited
+     */
+    public OperationThrottle getWriteThrottle() {
+        return writeThrottle;
+    }
+
+    /**
+     * @return the cache of <code>get(Get)</code> shared by the tables of the same client,
+     * null if <code>hbase.htable.row.cache.max.size</code> is not set
+     */
+    public RowCache getRowCache() {
+        return rowCache;
+    }
+
     public Configuration getConfiguration() {
         return configuration;
     }
@@ -346,45 +699,244 @@ public class OHTable implements HTableInterface {
      *
      * This will return true if the Get matches one or more keys, false if not.
      *
-     * Be carefully ,this is not a server-side call in real. May be optimized later
+     * Only K, Q and T are selected unless the filter of the Get reads the values.
      *
      * @param get the Get
      * @return true if the specified Get matches one or more keys, false if not
      * @throws IOException e
      */
     public boolean exists(Get get) throws IOException {
-        Result r = get(get);
+        checkFamilyViolation(get.getFamilyMap().keySet(), true);
+        Result r = innerGet(get, true);
         return !r.isEmpty();
     }
 
-    public void batch(List<? extends Row> actions, Object[] results) {
-        throw new FeatureNotSupportedException("not supported yet.");
+    /**
+     * Gets are grouped the same way as <code>get(List)</code> and run by the caller thread,
+     * puts and deletes are sent as one batch operation per family table by the write pool
+     * meanwhile. Appends and increments are executed one by one on the write pool.
+     * <code>RowMutations</code> is not supported.
+     * <p>
+     * The results are a <code>Result</code> for each successful action, empty for puts and
+     * deletes, or the <code>Throwable</code> which fails the action.
+     *
+     * @param actions the Gets, Puts, Deletes, Appends and Increments
+     * @param results the result of each action
+     * @throws IOException if some actions failed
+     * @throws InterruptedException if interrupted
+     */
+    public void batch(final List<? extends Row> actions, final Object[] results)
+                                                                                throws IOException,
+                                                                                InterruptedException {
+        checkArgument(results.length == actions.size(),
+            "results size " + results.length + " mismatch actions size " + actions.size());
+        final List<Get> gets = new ArrayList<Get>();
+        final List<Integer> getIndexes = new ArrayList<Integer>();
+        List<Mutation> mutations = new ArrayList<Mutation>();
+        List<Integer> mutationIndexes = new ArrayList<Integer>();
+        List<Pair<List<Integer>, Future<?>>> futures = new ArrayList<Pair<List<Integer>, Future<?>>>();
+        for (int i = 0; i < actions.size(); i++) {
+            final Row action = actions.get(i);
+            if (action instanceof Get) {
+                gets.add((Get) action);
+                getIndexes.add(i);
+            } else if (action instanceof Put || action instanceof Delete) {
+                mutations.add((Mutation) action);
+                mutationIndexes.add(i);
+            } else if (action instanceof Append || action instanceof Increment) {
+                final int index = i;
+                futures.add(new Pair<List<Integer>, Future<?>>(Collections.singletonList(index),
+                    submitOrRun(writePool, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            try {
+                                results[index] = action instanceof Append ? append((Append) action)
+                                    : increment((Increment) action);
+                            } catch (Exception e) {
+                                results[index] = e;
+                            }
+                            return null;
+                        }
+                    })));
+            } else {
+                results[i] = new FeatureNotSupportedException("not supported action type "
+                                                              + action.getClass().getSimpleName());
+            }
+        }
+
+        // the Gets run in the caller thread, so their groups run in parallel as in get(List)
+        CallerWork getWork = gets.isEmpty() ? null : new CallerWork() {
+            @Override
+            public void run() throws IOException {
+                Object[] getResults = new Object[gets.size()];
+                batchGet(gets, getResults, false);
+                for (int i = 0; i < getResults.length; i++) {
+                    results[getIndexes.get(i)] = getResults[i];
+                }
+            }
+        };
+
+        if (!mutations.isEmpty()) {
+            Throwable[] failures = batchMutate(mutations, getWork);
+            for (int i = 0; i < failures.length; i++) {
+                results[mutationIndexes.get(i)] = failures[i] == null ? new Result() : failures[i];
+            }
+        } else if (getWork != null) {
+            getWork.run();
+        }
+
+        for (Pair<List<Integer>, Future<?>> pair : futures) {
+            try {
+                pair.getSecond().get();
+            } catch (ExecutionException e) {
+                for (Integer index : pair.getFirst()) {
+                    results[index] = e.getCause();
+                }
+            }
+        }
+
+        RetriesExhaustedWithDetailsException exception = buildRetriesExhaustedException(
+            tableNameString, actions, results);
+        if (exception != null) {
+            throw exception;
+        }
     }
 
-    public Object[] batch(List<? extends Row> actions) {
-        throw new FeatureNotSupportedException("not supported yet.");
+    /**
+     * @see #batch(List, Object[])
+     */
+    public Object[] batch(List<? extends Row> actions) throws IOException, InterruptedException {
+        Object[] results = new Object[actions.size()];
+        batch(actions, results);
+        return results;
     }
 
+    /**
+     * Submit the task to the pool, run it in the caller thread if the pool is busy or the
+     * caller is a thread of the pool.
+     */
+    private <T> Future<T> submitOrRun(ExecutorService pool, Callable<T> task) {
+        if (ExecuteLanes.inLane(pool)) {
+            FutureTask<T> futureTask = new FutureTask<T>(task);
+            futureTask.run();
+            return futureTask;
+        }
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> futureTask = new FutureTask<T>(task);
+            futureTask.run();
+            return futureTask;
+        }
+    }
+
+    /**
+     * If the row cache is enabled, the result is served from the cache when the same Get
+     * was read before and the row has not been written by this client since.
+     * <p>
+     * If get coalescing is enabled, the Gets identical to a Get in flight share its read,
+     * unless the row has been written by this client since the read started.
+     */
     public Result get(final Get get) throws IOException {
 
-        checkFamilyViolation(get.getFamilyMap().keySet());
+        checkFamilyViolation(get.getFamilyMap().keySet(), true);
+
+        if (rowCache == null && getCoalescer == null) {
+            return innerGet(get, false);
+        }
+        GetKey key;
+        try {
+            key = new GetKey(get);
+        } catch (IllegalArgumentException e) {
+            // the filter can not be identified, skip the cache
+            return innerGet(get, false);
+        }
+        if (rowCache == null) {
+            return coalescedGet(key, get);
+        }
+        Result result = rowCache.get(key);
+        if (result != null) {
+            return result;
+        }
+        long stamp = rowCache.stamp(get.getRow());
+        result = coalescedGet(key, get);
+        rowCache.put(key, result, stamp);
+        return result;
+    }
+
+    private Result coalescedGet(GetKey key, final Get get) throws IOException {
+        if (getCoalescer == null) {
+            return innerGet(get, false);
+        }
+        return getCoalescer.get(key, new GetCoalescer.Loader() {
+            @Override
+            public Result load() throws IOException {
+                return innerGet(get, false);
+            }
+        }, operationTimeout);
+    }
+
+    private Result innerGet(final Get get, boolean keysOnlyRequest) throws IOException {
+        if (get.getFamilyMap().size() > 1) {
+            // the family tables are queried concurrently
+            Object[] results = new Object[1];
+            batchGet(Collections.singletonList(get), results, keysOnlyRequest);
+            if (results[0] instanceof Result) {
+                return (Result) results[0];
+            }
+            if (results[0] instanceof IOException) {
+                throw (IOException) results[0];
+            }
+            throw new IOException("query table:" + tableNameString + " error.",
+                (Throwable) results[0]);
+        }
+        KeyOnlyProjection projection = KeyOnlyProjection.of(get.getFilter(), keysOnlyRequest,
+            true);
+        ServerCallable<Result> serverCallable = buildGetCallable(get, projection, false);
+        if (getHedger == null) {
+            return executeServerCallable(serverCallable);
+        }
+        return executeHedged(serverCallable, buildGetCallable(get, projection, hedgeWeakRead),
+            getHedger, ExecuteLanes.Lane.GET);
+    }
+
+    /**
+     * @param weakRead whether the Get may be served by a weak read replica
+     */
+    private ServerCallable<Result> buildGetCallable(final Get get,
+                                                    final KeyOnlyProjection projection,
+                                                    final boolean weakRead) {
+        return new ServerCallable<Result>(configuration, obTableClient, tableNameString,
+            get.getRow(), get.getRow(), operationTimeout) {
+            @Override
+            protected void refreshTableEntry() {
+                refreshTableEntries(get.getFamilyMap().keySet());
+            }
 
-        ServerCallable<Result> serverCallable = new ServerCallable<Result>(configuration,
-            obTableClient, tableNameString, get.getRow(), get.getRow(), operationTimeout) {
             public Result call() throws IOException {
                 List<KeyValue> keyValueList = new ArrayList<KeyValue>();
                 for (Map.Entry<byte[], NavigableSet<byte[]>> entry : get.getFamilyMap().entrySet()) {
 
                     byte[] family = entry.getKey();
+                    String targetTableName = getTargetTableName(tableNameString,
+                        Bytes.toString(family));
+                    // a weak read may not be served by the leader
+                    CircuitBreaker[] breakers = acquireCircuitBreakers(targetTableName,
+                        weakRead ? null : getServer(targetTableName, get.getRow()));
+                    Throwable failure = null;
                     try {
-                        ObHTableFilter filter = buildObHTableFilter(get.getFilter(),
+                        ObHTableFilter filter = buildObHTableFilter(projection.getPushDownFilter(),
                             get.getTimeRange(), get.getMaxVersions(), entry.getValue());
 
-                        ObTableQuery obTableQuery = buildObTableQuery(filter, get.getRow(), true,
-                            get.getRow(), true, -1);
+                        ObTableQuery obTableQuery = buildObTableQuery(filter,
+                            buildObNewRange(get.getRow(), true, get.getRow(), true), -1,
+                            projection.isKeysOnly());
 
-                        ObTableQueryRequest request = buildObTableQueryRequest(obTableQuery,
-                            getTargetTableName(tableNameString, Bytes.toString(family)));
+                        ObTableQueryRequest request = withDeadline(buildObTableQueryRequest(
+                            obTableQuery, targetTableName));
+                        if (weakRead) {
+                            request.setConsistencyLevel(ObTableConsistencyLevel.EVENTUAL);
+                        }
 
                         ObTableClientQueryStreamResult clientQueryStreamResult = (ObTableClientQueryStreamResult) obTableClient
                             .execute(request);
@@ -393,29 +945,364 @@ public class OHTable implements HTableInterface {
                                 family,//family
                                 (byte[]) row.get(1).getValue(),//Q
                                 (Long) row.get(2).getValue(),//T
-                                (byte[]) row.get(3).getValue()//V
+                                row.size() > 3 ? (byte[]) row.get(3).getValue()
+                                    : HConstants.EMPTY_BYTE_ARRAY//V
                             );
                             keyValueList.add(kv);
                         }
                     } catch (Exception e) {
+                        failure = e;
                         logger.error(LCD.convert("01-00002"), tableNameString,
                             Bytes.toString(family), e);
                         throw new IOException("query table:" + tableNameString + " family "
                                               + Bytes.toString(family) + " error.", e);
+                    } finally {
+                        completeCircuitBreakers(breakers, failure);
                     }
                 }
-                return new Result(keyValueList);
+                return new Result(projection.apply(keyValueList));
             }
         };
-        return executeServerCallable(serverCallable);
     }
 
+    /**
+     * Gets are grouped by target table, partition and read options, each group is
+     * sent as one query with a key range per row and the groups run in parallel.
+     * <p>
+     * A Get that fails leaves a null in its slot instead of failing the whole call.
+     *
+     * @param gets the Gets to fetch
+     * @return results in the same order as the Gets, null for the failed ones
+     * @throws IOException if a remote or network exception occurs
+     */
     public Result[] get(List<Get> gets) throws IOException {
-        Result[] results = new Result[gets.size()];
+        Object[] results = new Object[gets.size()];
+        batchGet(gets, results, false);
+        Result[] ret = new Result[gets.size()];
+        int failed = 0;
+        Throwable lastFailure = null;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof Result) {
+                ret[i] = (Result) results[i];
+            } else {
+                failed++;
+                lastFailure = (Throwable) results[i];
+            }
+        }
+        if (failed > 0) {
+            logger
+                .error(LCD.convert("01-00009"), tableNameString, failed, gets.size(), lastFailure);
+        }
+        return ret;
+    }
+
+    /**
+     * Fill <code>results</code> with a <code>Result</code> or the <code>Throwable</code>
+     * which fails the Get in the same slot.
+     *
+     * @param keysOnlyRequest whether only the keys of the cells are needed
+     */
+    void batchGet(final List<Get> gets, final Object[] results, boolean keysOnlyRequest)
+                                                                                        throws IOException {
+        final List<List<KeyValue>> keyValuesList = new ArrayList<List<KeyValue>>(gets.size());
+        KeyOnlyProjection[] projections = new KeyOnlyProjection[gets.size()];
+        Map<String, MultiGetGroup> groups = new LinkedHashMap<String, MultiGetGroup>();
         for (int i = 0; i < gets.size(); i++) {
-            results[i] = get(gets.get(i));
+            Get get = gets.get(i);
+            keyValuesList.add(new ArrayList<KeyValue>());
+            try {
+                checkFamilyViolation(get.getFamilyMap().keySet(), true);
+                KeyOnlyProjection projection = KeyOnlyProjection.of(get.getFilter(),
+                    keysOnlyRequest, true);
+                projections[i] = projection;
+                for (Map.Entry<byte[], NavigableSet<byte[]>> entry : get.getFamilyMap().entrySet()) {
+                    String targetTableName = getTargetTableName(tableNameString,
+                        Bytes.toString(entry.getKey()));
+                    long partitionId = getPartitionId(targetTableName, get.getRow());
+                    String groupKey = buildMultiGetGroupKey(targetTableName, partitionId, get,
+                        projection, entry.getValue(), i);
+                    MultiGetGroup group = groups.get(groupKey);
+                    if (group == null) {
+                        group = new MultiGetGroup(targetTableName, entry.getKey(),
+                            buildObHTableFilter(projection.getPushDownFilter(), get.getTimeRange(),
+                                get.getMaxVersions(), entry.getValue()), projection.isKeysOnly());
+                        groups.put(groupKey, group);
+                    }
+                    group.add(get.getRow(), i);
+                }
+            } catch (Exception e) {
+                results[i] = e;
+            }
+        }
+
+        // the groups share one operation timeout, counted from before any of them starts
+        long startTime = System.currentTimeMillis();
+        List<Pair<MultiGetGroup, Future<List<KeyValue>>>> futures = new ArrayList<Pair<MultiGetGroup, Future<List<KeyValue>>>>();
+        MultiGetGroup inlineGroup = null;
+        for (final MultiGetGroup group : groups.values()) {
+            if (inlineGroup == null) {
+                // the caller thread runs the first group itself
+                inlineGroup = group;
+                continue;
+            }
+            Callable<List<KeyValue>> task = new Callable<List<KeyValue>>() {
+                @Override
+                public List<KeyValue> call() throws Exception {
+                    return executeMultiGetGroup(group);
+                }
+            };
+            futures.add(new Pair<MultiGetGroup, Future<List<KeyValue>>>(group, submitOrRun(
+                executePool, task)));
+        }
+
+        if (inlineGroup != null) {
+            try {
+                fillMultiGetGroup(inlineGroup, executeMultiGetGroup(inlineGroup), keyValuesList,
+                    results);
+            } catch (Exception e) {
+                failMultiGetGroup(inlineGroup, e, results);
+            }
+        }
+
+        for (Pair<MultiGetGroup, Future<List<KeyValue>>> pair : futures) {
+            MultiGetGroup group = pair.getFirst();
+            Future<List<KeyValue>> future = pair.getSecond();
+            try {
+                List<KeyValue> keyValues;
+                if (operationExecuteInPool) {
+                    long waitTime = operationTimeout - (System.currentTimeMillis() - startTime);
+                    keyValues = future.get(Math.max(waitTime, 0), TimeUnit.MILLISECONDS);
+                } else {
+                    keyValues = future.get();
+                }
+                fillMultiGetGroup(group, keyValues, keyValuesList, results);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            } catch (ExecutionException e) {
+                failMultiGetGroup(group, e.getCause() == null ? e : e.getCause(), results);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failMultiGetGroup(group, new OperationTimeoutException("multi get table "
+                                                                       + tableNameString
+                                                                       + " target "
+                                                                       + group.targetTableName
+                                                                       + " operationTimeout="
+                                                                       + operationTimeout), results);
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                // the groups of a Get are filled in the order of the groups, not of the families
+                List<KeyValue> keyValues = keyValuesList.get(i);
+                Collections.sort(keyValues, KeyValue.COMPARATOR);
+                results[i] = new Result(projections[i].apply(keyValues));
+            }
+        }
+    }
+
+    private List<KeyValue> executeMultiGetGroup(final MultiGetGroup group) throws IOException {
+        ServerCallable<List<KeyValue>> serverCallable = new ServerCallable<List<KeyValue>>(
+            configuration, obTableClient, tableNameString, group.rows.firstKey(),
+            group.rows.lastKey(), operationTimeout) {
+            @Override
+            protected void refreshTableEntry() {
+                refreshTableEntries(Collections.singletonList(group.family));
+            }
+
+            public List<KeyValue> call() throws IOException {
+                List<KeyValue> keyValues = new ArrayList<KeyValue>();
+                ObTableClientQueryStreamResult clientQueryStreamResult = null;
+                CircuitBreaker[] breakers = acquireCircuitBreakers(group.targetTableName, null);
+                Throwable failure = null;
+                try {
+                    ObTableQuery obTableQuery = buildObTableQuery(group.filter, null, -1,
+                        group.keysOnly);
+                    for (byte[] row : group.rows.keySet()) {
+                        obTableQuery.addKeyRange(buildObNewRange(row, true, row, true));
+                    }
+                    ObTableQueryRequest request = withDeadline(buildObTableQueryRequest(
+                        obTableQuery, group.targetTableName));
+                    clientQueryStreamResult = (ObTableClientQueryStreamResult) obTableClient
+                        .execute(request);
+                    while (clientQueryStreamResult.next()) {
+                        List<ObObj> row = clientQueryStreamResult.getRow();
+                        keyValues.add(new KeyValue((byte[]) row.get(0).getValue(),//K
+                            group.family,//family
+                            (byte[]) row.get(1).getValue(),//Q
+                            (Long) row.get(2).getValue(),//T
+                            row.size() > 3 ? (byte[]) row.get(3).getValue()
+                                : HConstants.EMPTY_BYTE_ARRAY//V
+                            ));
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                    logger.error(LCD.convert("01-00002"), tableNameString,
+                        Bytes.toString(group.family), e);
+                    throw new IOException("query table:" + tableNameString + " family "
+                                          + Bytes.toString(group.family) + " error.", e);
+                } finally {
+                    completeCircuitBreakers(breakers, failure);
+                    if (clientQueryStreamResult != null) {
+                        try {
+                            clientQueryStreamResult.close();
+                        } catch (Exception e) {
+                            logger.error(LCD.convert("01-00001"), group.targetTableName, e);
+                        }
+                    }
+                }
+                return keyValues;
+            }
+        };
+        serverCallable.setRetryPolicy(retryPolicy, retryBudget);
+        if (readThrottle == null) {
+            return serverCallable.withRetries();
+        }
+        long requestSize = 0;
+        for (byte[] row : group.rows.keySet()) {
+            requestSize += row.length;
+        }
+        readThrottle.acquire(group.rows.size(), requestSize);
+        try {
+            List<KeyValue> keyValues = serverCallable.withRetries();
+            long resultSize = 0;
+            for (KeyValue kv : keyValues) {
+                resultSize += kv.getLength();
+            }
+            readThrottle.charge(resultSize);
+            return keyValues;
+        } finally {
+            readThrottle.release();
+        }
+    }
+
+    private void fillMultiGetGroup(MultiGetGroup group, List<KeyValue> keyValues,
+                                   List<List<KeyValue>> keyValuesList, Object[] results) {
+        for (KeyValue kv : keyValues) {
+            List<Integer> indexes = group.rows.get(kv.getRow());
+            if (indexes == null) {
+                continue;
+            }
+            for (Integer index : indexes) {
+                if (results[index] == null) {
+                    keyValuesList.get(index).add(kv);
+                }
+            }
+        }
+    }
+
+    private void failMultiGetGroup(MultiGetGroup group, Throwable t, Object[] results) {
+        for (List<Integer> indexes : group.rows.values()) {
+            for (Integer index : indexes) {
+                results[index] = t;
+            }
+        }
+    }
+
+    /**
+     * Gets in the same group share the target table, the partition and the
+     * filter, so they can be sent as one query with multi key ranges.
+     */
+    private String buildMultiGetGroupKey(String targetTableName, long partitionId, Get get,
+                                         KeyOnlyProjection projection,
+                                         NavigableSet<byte[]> qualifiers, int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(targetTableName).append('#').append(partitionId).append('#')
+            .append(get.getMaxVersions()).append('#').append(get.getTimeRange().getMin())
+            .append('#').append(get.getTimeRange().getMax()).append('#')
+            .append(projection.isKeysOnly()).append('#');
+        Filter filter = projection.getPushDownFilter();
+        if (filter != null) {
+            sb.append(HBaseFilterUtils.toParseableString(filter));
+            if (spansRows(filter)) {
+                // the filter state is shared by all rows of a query
+                sb.append('#').append(index);
+            }
+        }
+        sb.append('#');
+        if (qualifiers != null) {
+            for (byte[] qualifier : qualifiers) {
+                sb.append(qualifier == null ? "" : Bytes.toStringBinary(qualifier)).append(',');
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean spansRows(Filter filter) {
+        if (filter instanceof PageFilter || filter instanceof WhileMatchFilter
+            || filter instanceof ColumnCountGetFilter) {
+            return true;
+        }
+        if (filter instanceof FilterList) {
+            for (Filter f : ((FilterList) filter).getFilters()) {
+                if (spansRows(f)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the partition which the row belongs to, -1 if the partition can not be
+     * located and then the rows are only grouped by target table.
+     */
+    private long getPartitionId(String targetTableName, byte[] row) {
+        try {
+            List<ObPair<Long, ObTable>> tables = getPartitions(targetTableName,
+                buildObNewRange(row, true, row, true));
+            if (tables.size() == 1) {
+                return tables.get(0).getLeft();
+            }
+        } catch (Exception e) {
+            logger.warn("locate partition of table {} failed", targetTableName, e);
+        }
+        return -1;
+    }
+
+    /**
+     * the partitions of the target table which the range covers
+     */
+    private List<ObPair<Long, ObTable>> getPartitions(String targetTableName, ObNewRange range)
+                                                                                               throws Exception {
+        // the min and max objects of the range already tell whether the bounds are inclusive
+        return obTableClient.getTables(targetTableName, toRowKeyValues(range.getStartKey()), true,
+            toRowKeyValues(range.getEndKey()), true, false, false);
+    }
+
+    private Object[] toRowKeyValues(ObRowKey rowKey) {
+        Object[] values = new Object[rowKey.getObjs().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rowKey.getObj(i).getValue();
+        }
+        return values;
+    }
+
+    private static class MultiGetGroup {
+        private final String                         targetTableName;
+        private final byte[]                         family;
+        private final ObHTableFilter                 filter;
+        private final boolean                        keysOnly;
+        private final TreeMap<byte[], List<Integer>> rows = new TreeMap<byte[], List<Integer>>(
+                                                              Bytes.BYTES_COMPARATOR);
+
+        MultiGetGroup(String targetTableName, byte[] family, ObHTableFilter filter, boolean keysOnly) {
+            this.targetTableName = targetTableName;
+            this.family = family;
+            this.filter = filter;
+            this.keysOnly = keysOnly;
+        }
+
+        void add(byte[] row, int index) {
+            List<Integer> indexes = rows.get(row);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>(1);
+                rows.put(row, indexes);
+            }
+            indexes.add(index);
         }
-        return results;
     }
 
     /**
@@ -428,62 +1315,269 @@ public class OHTable implements HTableInterface {
         throw new FeatureNotSupportedException("not supported yet.");
     }
 
+    /**
+     * The family tables of a multi family scan are scanned concurrently and their rows are
+     * merged in row key order.
+     * <p>
+     * With hedging enabled, opening a short scan is hedged like a Get.
+     */
     public ResultScanner getScanner(final Scan scan) throws IOException {
 
-        checkFamilyViolation(scan.getFamilyMap().keySet());
+        checkFamilyViolation(scan.getFamilyMap().keySet(), true);
+
+        ServerCallable<ResultScanner> serverCallable = buildScannerCallable(scan, false);
+        if (scanHedger == null || !isShortScan(scan)) {
+            return executeServerCallable(serverCallable, ExecuteLanes.Lane.SCAN);
+        }
+        return executeHedged(serverCallable, buildScannerCallable(scan, hedgeWeakRead),
+            scanHedger, ExecuteLanes.Lane.SCAN);
+    }
+
+    /**
+     * A short scan reads one family in one stream, with few rows per round trip.
+     */
+    private boolean isShortScan(Scan scan) {
+        int caching = getScannerCaching(scan);
+        return scan.getFamilyMap().size() == 1
+               && !getScanAttribute(scan, HBASE_HTABLE_SCANNER_PARALLEL, parallelScan)
+               && caching > 0 && caching <= hedgeScanMaxCaching;
+    }
 
+    /**
+     * @param weakRead whether a scan of one family in one stream may be served by a weak
+     *                 read replica
+     */
+    private ServerCallable<ResultScanner> buildScannerCallable(final Scan scan,
+                                                               final boolean weakRead) {
         //be careful about the packet size ,may the packet exceed the max result size ,leading to error
-        ServerCallable<ResultScanner> serverCallable = new ServerCallable<ResultScanner>(
-            configuration, obTableClient, tableNameString, scan.getStartRow(), scan.getStopRow(),
-            operationTimeout) {
+        return new ServerCallable<ResultScanner>(configuration, obTableClient, tableNameString,
+            scan.getStartRow(), scan.getStopRow(), operationTimeout) {
+            @Override
+            protected void refreshTableEntry() {
+                refreshTableEntries(scan.getFamilyMap().keySet());
+            }
+
             public ResultScanner call() throws IOException {
+                final boolean reversed = getScanAttribute(scan, HBASE_HTABLE_SCANNER_REVERSED,
+                    false);
+                // 由于 HBase 接口与 OB 接口表达范围的差异，reverse scan 的 startRow 是上界，stopRow 是下界
+                final HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(
+                    scan.getStartRow(), scan.getStopRow(), scan.getFilter(), reversed);
+                final KeyOnlyProjection projection = KeyOnlyProjection.of(
+                    range.getPushDownFilter(),
+                    getScanAttribute(scan, HBASE_HTABLE_SCANNER_KEYS_ONLY, false));
+                boolean parallel = getScanAttribute(scan, HBASE_HTABLE_SCANNER_PARALLEL,
+                    parallelScan);
+                boolean multiFamily = scan.getFamilyMap().size() > 1;
+                int depth = getScannerPrefetchDepth(scan);
+
+                if (!parallel && !multiFamily) {
+                    Map.Entry<byte[], NavigableSet<byte[]>> entry = scan.getFamilyMap().entrySet()
+                        .iterator().next();
+                    return openScanner(scan, range, reversed, projection, entry.getKey(),
+                        entry.getValue(), scanPool, depth, weakRead);
+                }
 
-                for (Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
-                    byte[] f = entry.getKey();
-                    try {
-                        ObHTableFilter filter = buildObHTableFilter(scan.getFilter(),
-                            scan.getTimeRange(), scan.getMaxVersions(), entry.getValue());
-                        ObTableQuery obTableQuery;
-                        if (Arrays.equals(scan.getStartRow(), HConstants.EMPTY_START_ROW)
-                            && Arrays.equals(scan.getStopRow(), HConstants.EMPTY_START_ROW)) {
-                            obTableQuery = buildObTableQuery(filter, null, scan.getBatch());
-                        } else {
-                            // not support reverse scan.
-                            // 由于 HBase 接口与 OB 接口表达范围的差异，reverse scan 需要交换 startRow 和 stopRow
-                            // if (scan.getReversed()) {
-                            //     obTableQuery = buildObTableQuery(filter, scan.getStopRow(), false,
-                            //         scan.getStartRow(), true, scan.getBatch());
-                            // } else {
-                            obTableQuery = buildObTableQuery(filter, scan.getStartRow(), true,
-                                scan.getStopRow(), false, scan.getBatch());
-                            // }
+                // the cells of a row from different families can only be merged in order
+                final boolean ordered = multiFamily
+                                        || getScanAttribute(scan,
+                                            HBASE_HTABLE_SCANNER_PARALLEL_ORDERED,
+                                            parallelScanOrdered);
+                final int prefetchDepth = depth > 0 ? depth
+                    : DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_PREFETCH_DEPTH;
+                List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+                for (final Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap()
+                    .entrySet()) {
+                    if (parallel) {
+                        sources.addAll(getPartitionSources(scan, range, reversed, projection,
+                            entry.getKey(), entry.getValue(), ordered ? scanPool : null,
+                            prefetchDepth));
+                    } else {
+                        sources.add(new Callable<ResultScanner>() {
+                            @Override
+                            public ResultScanner call() throws Exception {
+                                // the ordered merge relies on each family fetching ahead by itself
+                                return openScanner(scan, range, reversed, projection,
+                                    entry.getKey(), entry.getValue(), scanPool, prefetchDepth,
+                                    false);
+                            }
+                        });
+                    }
+                }
+                return new ParallelClientScanner(tableNameString, sources, scanPool, ordered,
+                    reversed, parallelScanMax, prefetchDepth);
+            }
+        };
+    }
+
+    /**
+     * Open one stream on the table of the family.
+     *
+     * @param weakRead whether the stream may be served by a weak read replica
+     */
+    private ResultScanner openScanner(Scan scan, HBaseFilterRangeAnalyzer range, boolean reversed,
+                                      KeyOnlyProjection projection, byte[] family,
+                                      NavigableSet<byte[]> qualifiers,
+                                      ExecutorService prefetchExecutor, int prefetchDepth,
+                                      boolean weakRead) throws IOException {
+        String targetTableName = getTargetTableName(tableNameString, Bytes.toString(family));
+        CircuitBreaker[] breakers = acquireCircuitBreakers(targetTableName, null);
+        Throwable failure = null;
+        try {
+            ObTableQuery obTableQuery = buildScanQuery(scan, range.isUnbounded() ? null
+                : buildObNewRange(range.getStartRow(), true, range.getStopRow(), false), reversed,
+                projection, qualifiers);
+            ObTableQueryRequest request = buildObTableQueryRequest(obTableQuery, targetTableName);
+            if (weakRead) {
+                request.setConsistencyLevel(ObTableConsistencyLevel.EVENTUAL);
+            }
+            ObTableClientQueryStreamResult clientQueryStreamResult = (ObTableClientQueryStreamResult) obTableClient
+                .execute(request);
+            return new ClientStreamScanner(clientQueryStreamResult, tableNameString, family,
+                projection, reversed, prefetchExecutor, prefetchDepth,
+                getScannerMaxResultSize(scan), readThrottle);
+        } catch (Exception e) {
+            failure = e;
+            logger.error(LCD.convert("01-00003"), tableNameString, Bytes.toString(family), e);
+            throw new IOException("scan table:" + tableNameString + " family "
+                                  + Bytes.toString(family) + " error.", e);
+        } finally {
+            completeCircuitBreakers(breakers, failure);
+        }
+    }
+
+    /**
+     * Every partition of the family table which the scan range covers is scanned by its
+     * own stream.
+     */
+    private List<Callable<ResultScanner>> getPartitionSources(Scan scan,
+                                                              HBaseFilterRangeAnalyzer scanRange,
+                                                              final boolean reversed,
+                                                              final KeyOnlyProjection projection,
+                                                              final byte[] family,
+                                                              NavigableSet<byte[]> qualifiers,
+                                                              final ExecutorService prefetchExecutor,
+                                                              final int prefetchDepth)
+                                                                                      throws IOException {
+        final String targetTableName = getTargetTableName(tableNameString, Bytes.toString(family));
+        final long maxResultSize = getScannerMaxResultSize(scan);
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        try {
+            ObNewRange range = buildObNewRange(scanRange.getStartRow(), true,
+                scanRange.getStopRow(), false);
+            final ObTableQuery obTableQuery = buildScanQuery(scan, range, reversed, projection,
+                qualifiers);
+            for (final ObPair<Long, ObTable> partition : getPartitions(targetTableName, range)) {
+                sources.add(new Callable<ResultScanner>() {
+                    @Override
+                    public ResultScanner call() throws Exception {
+                        Map<Long, ObPair<Long, ObTable>> expectant = new HashMap<Long, ObPair<Long, ObTable>>();
+                        expectant.put(partition.getLeft(), partition);
+                        ObTableClientQueryStreamResult streamResult = new ObTableClientQueryStreamResult();
+                        streamResult.setTableQuery(obTableQuery);
+                        streamResult.setEntityType(ObTableEntityType.HKV);
+                        streamResult.setTableName(targetTableName);
+                        streamResult.setExpectant(expectant);
+                        streamResult.setClient(obTableClient);
+                        streamResult.setOperationTimeout(-1);
+                        streamResult.setReadConsistency(obTableClient.getReadConsistency());
+                        CircuitBreaker[] breakers = acquireCircuitBreakers(targetTableName,
+                            partition.getRight());
+                        Throwable failure = null;
+                        try {
+                            streamResult.init();
+                        } catch (Exception e) {
+                            failure = e;
+                            throw e;
+                        } finally {
+                            completeCircuitBreakers(breakers, failure);
                         }
+                        // the ordered merge relies on each partition fetching ahead by itself
+                        return new ClientStreamScanner(streamResult, tableNameString, family,
+                            projection, reversed, prefetchExecutor, prefetchDepth, maxResultSize,
+                            readThrottle);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.error(LCD.convert("01-00003"), tableNameString, Bytes.toString(family), e);
+            throw new IOException("scan table:" + tableNameString + " family "
+                                  + Bytes.toString(family) + " error.", e);
+        }
+        return sources;
+    }
 
-                        // not support reverse scan.
-                        // if (scan.getReversed()) { // reverse scan 时设置为逆序
-                        //     obTableQuery.setScanOrder(ObScanOrder.Reverse);
-                        // }
+    private ObTableQuery buildScanQuery(Scan scan, ObNewRange range, boolean reversed,
+                                        KeyOnlyProjection projection,
+                                        NavigableSet<byte[]> qualifiers) {
+        ObHTableFilter filter = buildObHTableFilter(projection.getPushDownFilter(),
+            scan.getTimeRange(), scan.getMaxVersions(), qualifiers);
+        ObTableQuery obTableQuery = buildObTableQuery(filter, range,
+            getScannerBatchSize(scan, qualifiers), projection.isKeysOnly());
+        if (reversed) { // reverse scan 时设置为逆序
+            obTableQuery.setScanOrder(ObScanOrder.Reverse);
+        }
+        long maxResultSize = getScannerMaxResultSize(scan);
+        if (maxResultSize > 0) {
+            obTableQuery.setMaxResultSize(maxResultSize);
+        }
+        return obTableQuery;
+    }
 
-                        // no support set maxResultSize.
-                        // obTableQuery.setMaxResultSize(scan.getMaxResultSize());
+    private boolean getScanAttribute(Scan scan, String name, boolean defaultValue) {
+        byte[] value = scan.getAttribute(name);
+        if (value != null && value.length == Bytes.SIZEOF_BOOLEAN) {
+            return Bytes.toBoolean(value);
+        }
+        return defaultValue;
+    }
 
-                        ObTableQueryRequest request = buildObTableQueryRequest(obTableQuery,
-                            getTargetTableName(tableNameString, Bytes.toString(f)));
-                        ObTableClientQueryStreamResult clientQueryStreamResult = (ObTableClientQueryStreamResult) obTableClient
-                            .execute(request);
-                        return new ClientStreamScanner(clientQueryStreamResult, tableNameString, f);
-                    } catch (Exception e) {
-                        logger
-                            .error(LCD.convert("01-00003"), tableNameString, Bytes.toString(f), e);
-                        throw new IOException("scan table:" + tableNameString + " family "
-                                              + Bytes.toString(f) + " error.", e);
-                    }
-                }
+    /**
+     * @return the rows per round trip of the scan, not positive if not set
+     */
+    private int getScannerCaching(Scan scan) {
+        if (scan.getCaching() > 0) {
+            return scan.getCaching();
+        }
+        return scannerCaching;
+    }
 
-                throw new IOException("scan table:" + tableNameString + "has no family");
+    /**
+     * The server counts the cells of a round trip, not the rows. The caching is turned into
+     * cells if the scan selects its qualifiers, then a round trip holds at most the cells of
+     * that many full rows. Otherwise the width of a row is unknown, the caching is not
+     * applied and the batch of the scan is passed as before.
+     *
+     * @return the max number of cells per round trip, not positive if unlimited
+     */
+    private int getScannerBatchSize(Scan scan, NavigableSet<byte[]> qualifiers) {
+        int caching = getScannerCaching(scan);
+        if (caching > 0 && qualifiers != null && !qualifiers.isEmpty()) {
+            long cells = (long) caching * qualifiers.size() * Math.max(scan.getMaxVersions(), 1);
+            if (cells <= Integer.MAX_VALUE) {
+                return (int) cells;
             }
-        };
-        return executeServerCallable(serverCallable);
+        }
+        return scan.getBatch();
+    }
+
+    /**
+     * Scan of hbase 0.94 has no max result size, it is set as a scan attribute.
+     */
+    private long getScannerMaxResultSize(Scan scan) {
+        byte[] size = scan.getAttribute(HBASE_HTABLE_SCANNER_MAX_RESULT_SIZE);
+        if (size != null && size.length == Bytes.SIZEOF_LONG) {
+            return Bytes.toLong(size);
+        }
+        return scannerMaxResultSize;
+    }
+
+    private int getScannerPrefetchDepth(Scan scan) {
+        byte[] depth = scan.getAttribute(HBASE_HTABLE_SCANNER_PREFETCH_DEPTH);
+        if (depth != null && depth.length == Bytes.SIZEOF_INT) {
+            return Bytes.toInt(depth);
+        }
+        return scannerPrefetchDepth;
     }
 
     public ResultScanner getScanner(final byte[] family) throws IOException {
@@ -516,15 +1610,23 @@ public class OHTable implements HTableInterface {
 
             // we need to periodically see if the writebuffer is full instead of waiting until the end of the List
             n++;
-            if (n % putWriteBufferCheck == 0 && currentWriteBufferSize > writeBufferSize) {
+            if ((batchSizer != null || n % putWriteBufferCheck == 0) && isWriteBufferFull()) {
                 flushCommits();
             }
         }
-        if (autoFlush || currentWriteBufferSize > writeBufferSize) {
+        if (autoFlush || isWriteBufferFull()) {
             flushCommits();
         }
     }
 
+    private boolean isWriteBufferFull() {
+        if (batchSizer == null) {
+            return currentWriteBufferSize > writeBufferSize;
+        }
+        return currentWriteBufferSize > batchSizer.getBatchSize()
+               || writeBuffer.size() >= batchSizer.getBatchOps();
+    }
+
     /**
      * 校验 put 里的参数是否合法，需要传入 family ，并且 keyvalue 的 size 不能太大
      * @param put the put
@@ -596,6 +1698,8 @@ public class OHTable implements HTableInterface {
             logger.error(LCD.convert("01-00004"), tableNameString, errorCodeList, e);
             throw new IOException("delete  table " + tableNameString + " error codes "
                                   + errorCodeList, e);
+        } finally {
+            invalidateRowCache(delete.getRow());
         }
     }
 
@@ -604,10 +1708,34 @@ public class OHTable implements HTableInterface {
         innerDelete(delete);
     }
 
+    /**
+     * The deletes are sent as one batch operation per family table.
+     * <p>
+     * If some deletes failed, the successful ones are removed from the list so that it
+     * only contains the failed ones, and a <code>RetriesExhaustedWithDetailsException</code>
+     * reports the failure of each of them.
+     *
+     * @param deletes the deletes
+     * @throws IOException if some deletes failed
+     */
     public void delete(List<Delete> deletes) throws IOException {
-        for (Delete delete : deletes) {
-            innerDelete(delete);
+        Throwable[] failures = batchMutate(deletes);
+        RetriesExhaustedWithDetailsException exception = buildRetriesExhaustedException(
+            tableNameString, deletes, failures);
+        if (exception == null) {
+            return;
+        }
+        List<Integer> errorCodeList = new ArrayList<Integer>();
+        for (int i = failures.length - 1; i >= 0; i--) {
+            if (failures[i] == null) {
+                deletes.remove(i);
+            } else if (failures[i] instanceof ObTableException) {
+                errorCodeList.add(((ObTableException) failures[i]).getErrorCode());
+            }
         }
+        Collections.reverse(errorCodeList);
+        logger.error(LCD.convert("01-00004"), tableNameString, errorCodeList, exception);
+        throw exception;
     }
 
     /**
@@ -661,6 +1789,8 @@ public class OHTable implements HTableInterface {
                 tableNameString, e);
             throw new IOException("checkAndMutation type " + mutation.getClass().getSimpleName()
                                   + " table " + tableNameString + " error.", e);
+        } finally {
+            invalidateRowCache(row);
         }
     }
 
@@ -712,6 +1842,8 @@ public class OHTable implements HTableInterface {
         } catch (Exception e) {
             logger.error(LCD.convert("01-00006"), tableNameString, e);
             throw new IOException("append table " + tableNameString + " error.", e);
+        } finally {
+            invalidateRowCache(append.getRow());
         }
     }
 
@@ -772,6 +1904,8 @@ public class OHTable implements HTableInterface {
         } catch (Exception e) {
             logger.error(LCD.convert("01-00007"), tableNameString, e);
             throw new IOException("increment table " + tableNameString + " error.", e);
+        } finally {
+            invalidateRowCache(increment.getRow());
         }
     }
 
@@ -815,6 +1949,8 @@ public class OHTable implements HTableInterface {
         } catch (Exception e) {
             logger.error(LCD.convert("01-00007"), tableNameString, e);
             throw new IOException("increment table " + tableNameString + " error.", e);
+        } finally {
+            invalidateRowCache(row);
         }
     }
 
@@ -828,86 +1964,100 @@ public class OHTable implements HTableInterface {
         return autoFlush;
     }
 
+    /**
+     * Every Put is tracked by the results of its own cells, only the Puts which failed with a
+     * retryable error are sent again, up to <code>hbase.htable.flush.retries</code> times with
+     * backoff. The Puts which still fail are reported by a
+     * <code>RetriesExhaustedWithDetailsException</code>, and kept in the write buffer unless
+     * <code>clearBufferOnFail</code>.
+     */
     public void flushCommits() throws IOException {
 
+        // the rows are invalidated after they are written, successful or not
+        List<Put> flushing = rowCache == null && getCoalescer == null ? Collections
+            .<Put> emptyList() : new ArrayList<Put>(writeBuffer);
+        long flushSize = currentWriteBufferSize;
+        int flushOps = writeBuffer.size();
+        long startTime = System.currentTimeMillis();
         try {
-            boolean[] resultSuccess = new boolean[writeBuffer.size()];
+            if (retryBudget != null && flushOps > 0) {
+                retryBudget.onRequest();
+            }
+            List<Put> pending = new ArrayList<Put>(writeBuffer);
+            List<Put> failedPuts = new ArrayList<Put>();
+            List<Throwable> failedCauses = new ArrayList<Throwable>();
+            long pauseTime = 0;
             try {
-                Map<String, Pair<List<Integer>, List<KeyValue>>> familyMap = new HashMap<String, Pair<List<Integer>, List<KeyValue>>>();
-                for (int i = 0; i < writeBuffer.size(); i++) {
-                    Put aPut = writeBuffer.get(i);
-                    Map<byte[], List<KeyValue>> innerFamilyMap = aPut.getFamilyMap();
-                    // multi family can not ensure automatic
-                    for (Map.Entry<byte[], List<KeyValue>> entry : innerFamilyMap.entrySet()) {
-                        String family = Bytes.toString(entry.getKey());
-                        Pair<List<Integer>, List<KeyValue>> keyValueWithIndex = familyMap
-                            .get(family);
-                        if (keyValueWithIndex == null) {
-                            keyValueWithIndex = new Pair<List<Integer>, List<KeyValue>>(
-                                new ArrayList<Integer>(), new ArrayList<KeyValue>());
-                            familyMap.put(family, keyValueWithIndex);
+                for (int tries = 0; !pending.isEmpty(); tries++) {
+                    if (tries > 0) {
+                        pauseTime = retryPolicy.getPauseTime(flushRetryPause, tries - 1,
+                            pauseTime);
+                        try {
+                            Thread.sleep(pauseTime);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("flush table " + tableNameString
+                                                             + " interrupted");
                         }
-                        keyValueWithIndex.getFirst().add(i);
-                        keyValueWithIndex.getSecond().addAll(entry.getValue());
                     }
-                }
-                for (Map.Entry<String, Pair<List<Integer>, List<KeyValue>>> entry : familyMap
-                    .entrySet()) {
-                    List<Integer> errorCodeList = new ArrayList<Integer>(entry.getValue()
-                        .getSecond().size());
-                    try {
-                        String targetTableName = getTargetTableName(this.tableNameString,
-                            entry.getKey());
-                        ObTableBatchOperation batch = buildObTableBatchOperation(entry.getValue()
-                            .getSecond(), false, null);
-                        ObTableBatchOperationRequest request = buildObTableBatchOperationRequest(
-                            batch, targetTableName);
-
-                        ObTableBatchOperationResult result = (ObTableBatchOperationResult) obTableClient
-                            .execute(request);
-                        List<ObTableOperationResult> obTableOperationResults = result.getResults();
-
-                        ObTableOperationResult throwResult = null;
-
-                        for (ObTableOperationResult obTableOperationResult : obTableOperationResults) {
-                            int errorCode = obTableOperationResult.getHeader().getErrno();
-                            errorCodeList.add(errorCode);
-                            if (errorCode != 0) {
-                                throwResult = obTableOperationResult;
-                            }
-                        }
-
-                        for (Integer index : entry.getValue().getFirst()) {
-                            resultSuccess[index] = throwResult == null;
+                    // every try is throttled by its family batches
+                    Throwable[] failures = innerBatchMutate(pending);
+                    List<Put> retrying = new ArrayList<Put>();
+                    List<Throwable> retryingCauses = new ArrayList<Throwable>();
+                    Set<byte[]> refreshFamilies = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+                    for (int i = 0; i < failures.length; i++) {
+                        if (failures[i] == null) {
+                            continue;
                         }
-
-                        if (throwResult != null) {
-                            ExceptionUtil.throwObTableException(throwResult.getExecuteHost(),
-                                throwResult.getExecutePort(), throwResult.getSequence(),
-                                throwResult.getUniqueId(), throwResult.getHeader().getErrno());
+                        RetryPolicy.Action action = retryPolicy.classify(failures[i]);
+                        if (tries < flushRetries && action != RetryPolicy.Action.FAIL) {
+                            retrying.add(pending.get(i));
+                            retryingCauses.add(failures[i]);
+                            if (action == RetryPolicy.Action.REFRESH_ROUTE) {
+                                refreshFamilies.addAll(pending.get(i).getFamilyMap().keySet());
+                            }
+                        } else {
+                            failedPuts.add(pending.get(i));
+                            failedCauses.add(failures[i]);
                         }
-                    } catch (Exception e) {
-                        logger.error(LCD.convert("01-00008"), tableNameString, errorCodeList,
-                            autoFlush, writeBuffer.size(), e);
-                        throw new IOException("put table " + tableNameString + " error codes "
-                                              + errorCodeList + "auto flush " + autoFlush
-                                              + " current buffer size " + writeBuffer.size(), e);
                     }
-
+                    if (!retrying.isEmpty() && retryBudget != null && !retryBudget.tryRetry()) {
+                        // the retry budget of the table is exhausted
+                        failedPuts.addAll(retrying);
+                        failedCauses.addAll(retryingCauses);
+                        retrying.clear();
+                    }
+                    if (!retrying.isEmpty()) {
+                        refreshTableEntries(refreshFamilies);
+                    }
+                    pending = retrying;
                 }
-
             } finally {
-                // mutate list so that it is empty for complete success, or contains
-                // only failed records results are returned in the same order as the
-                // requests in list walk the list backwards, so we can remove from list
-                // without impacting the indexes of earlier members
-                for (int i = resultSuccess.length - 1; i >= 0; i--) {
-                    if (resultSuccess[i]) {
-                        // successful Puts are removed from the list here.
+                // the write buffer keeps only the failed Puts and the ones not sent, in order
+                Set<Put> remains = Collections.newSetFromMap(new IdentityHashMap<Put, Boolean>());
+                remains.addAll(failedPuts);
+                remains.addAll(pending);
+                for (int i = writeBuffer.size() - 1; i >= 0; i--) {
+                    if (!remains.contains(writeBuffer.get(i))) {
                         writeBuffer.remove(i);
                     }
                 }
             }
+
+            if (!failedPuts.isEmpty()) {
+                List<Integer> errorCodeList = new ArrayList<Integer>(failedCauses.size());
+                for (Throwable t : failedCauses) {
+                    ObTableException obTableException = findCause(t, ObTableException.class);
+                    errorCodeList.add(obTableException == null ? -1 : obTableException
+                        .getErrorCode());
+                }
+                RetriesExhaustedWithDetailsException exception = buildRetriesExhaustedException(
+                    tableNameString, failedPuts, failedCauses.toArray());
+                exception.initCause(failedCauses.get(0));
+                logger.error(LCD.convert("01-00008"), tableNameString, errorCodeList, autoFlush,
+                    writeBuffer.size(), exception);
+                throw exception;
+            }
         } finally {
             if (clearBufferOnFail) {
                 writeBuffer.clear();
@@ -919,12 +2069,445 @@ public class OHTable implements HTableInterface {
                     currentWriteBufferSize += aPut.heapSize();
                 }
             }
+            invalidateRowCache(flushing);
+            if (batchSizer != null && flushOps > 0) {
+                batchSizer.record(System.currentTimeMillis() - startTime, flushSize, flushOps);
+            }
+        }
+    }
+
+    /**
+     * Refresh the routes of the family tables, before retrying the requests failed by a
+     * route error.
+     */
+    private void refreshTableEntries(Collection<byte[]> families) {
+        for (byte[] family : families) {
+            String targetTableName = getTargetTableName(tableNameString, Bytes.toString(family));
+            try {
+                obTableClient.getOrRefreshTableEntry(targetTableName, true, true);
+            } catch (Exception e) {
+                logger.warn("refresh table entry of table {} failed", targetTableName, e);
+            }
+        }
+    }
+
+    private static <T extends Throwable> T findCause(Throwable t, Class<T> clazz) {
+        while (t != null) {
+            if (clazz.isInstance(t)) {
+                return clazz.cast(t);
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * Invalidate the row in the row cache and in the get coalescer, once it is written.
+     */
+    private void invalidateRowCache(byte[] row) {
+        if (row == null) {
+            return;
+        }
+        if (rowCache != null) {
+            rowCache.invalidate(row);
+        }
+        if (getCoalescer != null) {
+            getCoalescer.invalidate(row);
+        }
+    }
+
+    private void invalidateRowCache(List<? extends Row> rows) {
+        if (rowCache != null || getCoalescer != null) {
+            for (Row row : rows) {
+                invalidateRowCache(row.getRow());
+            }
+        }
+    }
+
+    /**
+     * Check the mutation before it is buffered or sent.
+     * @param mutation the put or delete
+     */
+    void validateMutation(Mutation mutation) {
+        if (mutation instanceof Put) {
+            validatePut((Put) mutation);
+        } else if (mutation instanceof Delete) {
+            checkArgument(mutation.getRow() != null, "row is null");
+            checkArgument(!mutation.isEmpty(), "delete is empty");
+        } else {
+            throw new FeatureNotSupportedException("not supported mutation type "
+                                                   + mutation.getClass().getSimpleName());
+        }
+        checkFamilyViolation(mutation.getFamilyMap().keySet());
+    }
+
+    /**
+     * Send puts and deletes as one batch operation per family table, or per family table
+     * and server with the circuit breakers enabled, the batches run in parallel. Unlike the write buffer this method keeps no
+     * state, so it can be called by several threads at the same time.
+     *
+     * @param mutations puts and deletes
+     * @return the failure of each mutation in the same order, null if the mutation succeeded
+     * @throws IOException if interrupted
+     */
+    Throwable[] batchMutate(List<? extends Mutation> mutations) throws IOException {
+        return batchMutate(mutations, null);
+    }
+
+    /**
+     * @param callerWork the work the caller thread does while the batches are sent, instead
+     *                   of sending one of them, null if none
+     */
+    private Throwable[] batchMutate(List<? extends Mutation> mutations, CallerWork callerWork)
+                                                                                              throws IOException {
+        try {
+            return innerBatchMutate(mutations, callerWork);
+        } finally {
+            invalidateRowCache(mutations);
+        }
+    }
+
+    private Throwable[] innerBatchMutate(List<? extends Mutation> mutations) throws IOException {
+        return innerBatchMutate(mutations, null);
+    }
+
+    private Throwable[] innerBatchMutate(List<? extends Mutation> mutations,
+                                         CallerWork callerWork) throws IOException {
+        final Throwable[] failures = new Throwable[mutations.size()];
+        Map<String, MutateGroup> groups = new LinkedHashMap<String, MutateGroup>();
+        for (int i = 0; i < mutations.size(); i++) {
+            Mutation mutation = mutations.get(i);
+            try {
+                validateMutation(mutation);
+                for (Map.Entry<byte[], List<KeyValue>> entry : mutation.getFamilyMap().entrySet()) {
+                    String family = Bytes.toString(entry.getKey());
+                    // with the circuit breakers each group goes to one server, so an open
+                    // breaker of a server only rejects the cells sent to it
+                    ObTable server = getServer(getTargetTableName(tableNameString, family),
+                        mutation.getRow());
+                    String groupKey = server == null ? family : family + "#" + server.getIp()
+                                                                + ":" + server.getPort();
+                    MutateGroup group = groups.get(groupKey);
+                    if (group == null) {
+                        group = new MutateGroup(family, server);
+                        groups.put(groupKey, group);
+                    }
+                    for (KeyValue kv : entry.getValue()) {
+                        group.keyValues.add(kv);
+                        group.owners.add(i);
+                    }
+                }
+            } catch (Exception e) {
+                failures[i] = e;
+            }
+        }
+
+        List<Pair<MutateGroup, Future<?>>> futures = new ArrayList<Pair<MutateGroup, Future<?>>>();
+        MutateGroup inlineGroup = null;
+        for (final MutateGroup group : groups.values()) {
+            if (inlineGroup == null && callerWork == null) {
+                // the caller thread runs the first group itself
+                inlineGroup = group;
+                continue;
+            }
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    executeMutateGroup(group, failures);
+                }
+            };
+            if (ExecuteLanes.inLane(writePool)) {
+                task.run();
+                continue;
+            }
+            try {
+                futures.add(new Pair<MutateGroup, Future<?>>(group, writePool.submit(task)));
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        if (inlineGroup != null) {
+            executeMutateGroup(inlineGroup, failures);
+        }
+        IOException callerFailure = null;
+        if (callerWork != null) {
+            try {
+                callerWork.run();
+            } catch (IOException e) {
+                // wait for the batches sent before giving up
+                callerFailure = e;
+            }
+        }
+        for (Pair<MutateGroup, Future<?>> pair : futures) {
+            try {
+                pair.getSecond().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            } catch (ExecutionException e) {
+                failMutateGroup(pair.getFirst(), e.getCause(), failures);
+            }
+        }
+        if (callerFailure != null) {
+            throw callerFailure;
+        }
+        return failures;
+    }
+
+    /**
+     * Work done by the caller thread of a batch while the other parts are sent.
+     */
+    private interface CallerWork {
+        void run() throws IOException;
+    }
+
+    private void executeMutateGroup(MutateGroup group, Throwable[] failures) {
+        List<Integer> errorCodeList = new ArrayList<Integer>(group.keyValues.size());
+        CircuitBreaker[] breakers = null;
+        Throwable failure = null;
+        boolean throttled = false;
+        try {
+            String targetTableName = getTargetTableName(tableNameString, group.family);
+            breakers = acquireCircuitBreakers(targetTableName, group.server);
+            List<KeyValue> keyValues = group.keyValues;
+            // owners of the cells sent, with the owners of the cells each one supersedes
+            List<List<Integer>> sentOwners = new ArrayList<List<Integer>>(keyValues.size());
+            if (writeCoalesce) {
+                int[] supersededBy = WriteCoalescer.coalesce(keyValues);
+                Map<Integer, List<Integer>> owners = new LinkedHashMap<Integer, List<Integer>>();
+                for (int i = 0; i < supersededBy.length; i++) {
+                    if (supersededBy[i] == i) {
+                        owners.put(i, new ArrayList<Integer>());
+                    }
+                }
+                keyValues = new ArrayList<KeyValue>(owners.size());
+                for (Map.Entry<Integer, List<Integer>> entry : owners.entrySet()) {
+                    keyValues.add(group.keyValues.get(entry.getKey()));
+                    sentOwners.add(entry.getValue());
+                }
+                for (int i = 0; i < supersededBy.length; i++) {
+                    owners.get(supersededBy[i]).add(group.owners.get(i));
+                }
+            } else {
+                for (Integer owner : group.owners) {
+                    sentOwners.add(Collections.singletonList(owner));
+                }
+            }
+            if (writeThrottle != null) {
+                long requestSize = 0;
+                for (KeyValue kv : keyValues) {
+                    requestSize += kv.getLength();
+                }
+                writeThrottle.acquire(keyValues.size(), requestSize);
+                throttled = true;
+            }
+            ObTableBatchOperation batch = buildObTableBatchOperation(keyValues, false, null);
+            boolean samePut = true;
+            boolean sameDelete = true;
+            for (KeyValue kv : keyValues) {
+                boolean isPut = KeyValue.Type.codeToType(kv.getType()) == KeyValue.Type.Put;
+                samePut &= isPut;
+                sameDelete &= !isPut;
+            }
+            batch.setSameType(samePut || sameDelete);
+            batch.setSamePropertiesNames(samePut || sameDelete);
+            ObTableBatchOperationRequest request = buildObTableBatchOperationRequest(batch,
+                targetTableName);
+            ObTableBatchOperationResult result = (ObTableBatchOperationResult) obTableClient
+                .execute(request);
+            List<ObTableOperationResult> results = result.getResults();
+            if (results.size() != keyValues.size()) {
+                throw new IOException("batch result size " + results.size()
+                                      + " mismatch operation size " + keyValues.size());
+            }
+            for (int i = 0; i < results.size(); i++) {
+                ObTableOperationResult operationResult = results.get(i);
+                int errorCode = operationResult.getHeader().getErrno();
+                errorCodeList.add(errorCode);
+                ObTableException exception = errorCode != 0 ? buildObTableException(operationResult)
+                    : null;
+                if (exception != null) {
+                    // the cells superseded by a failed one fail too
+                    for (Integer owner : sentOwners.get(i)) {
+                        if (failures[owner] == null) {
+                            failures[owner] = exception;
+                        }
+                    }
+                }
+                if (failure == null && exception != null && isServerFailure(exception)) {
+                    // the breakers count the group as failed by the server
+                    failure = exception;
+                }
+            }
+        } catch (Exception e) {
+            failure = e;
+            logger.error(LCD.convert("01-00010"), tableNameString, group.family, errorCodeList, e);
+            failMutateGroup(group, new IOException(
+                "mutate table " + tableNameString + " family " + group.family + " error codes "
+                        + errorCodeList, e), failures);
+        } finally {
+            completeCircuitBreakers(breakers, failure);
+            if (throttled) {
+                writeThrottle.release();
+            }
+        }
+    }
+
+    private void failMutateGroup(MutateGroup group, Throwable t, Object[] failures) {
+        for (Integer owner : group.owners) {
+            if (failures[owner] == null) {
+                failures[owner] = t;
+            }
+        }
+    }
+
+    private ObTableException buildObTableException(ObTableOperationResult result) {
+        int errorCode = result.getHeader().getErrno();
+        ResultCodes resultCode = ResultCodes.valueOf(errorCode);
+        if (resultCode == null) {
+            return new ObTableException("execute host " + result.getExecuteHost() + ":"
+                                        + result.getExecutePort() + " error code " + errorCode,
+                errorCode);
+        }
+        return ExceptionUtil.convertToObTableException(result.getExecuteHost(),
+            result.getExecutePort(), result.getSequence(), result.getUniqueId(), resultCode);
+    }
+
+    private CircuitBreaker getCircuitBreaker(String name) {
+        return CircuitBreakerManager.getOrCreateCircuitBreaker(obTableClient, name,
+            circuitBreakerFailureThreshold, circuitBreakerOpenTime, circuitBreakerHalfOpenProbes);
+    }
+
+    /**
+     * the server of the partition which the row belongs to, null if the circuit breakers are
+     * disabled or the partition can not be located
+     */
+    private ObTable getServer(String targetTableName, byte[] row) {
+        if (!circuitBreakerEnabled) {
+            return null;
+        }
+        try {
+            List<ObPair<Long, ObTable>> tables = getPartitions(targetTableName,
+                buildObNewRange(row, true, row, true));
+            if (tables.size() == 1) {
+                return tables.get(0).getRight();
+            }
+        } catch (Exception e) {
+            logger.warn("locate partition of table {} failed", targetTableName, e);
+        }
+        return null;
+    }
+
+    /**
+     * Acquire the circuit breakers of the target table and of the server, the acquired ones
+     * must be completed by <code>completeCircuitBreakers</code>.
+     *
+     * @param server the server the request is sent to, null if unknown
+     * @return the acquired breakers, null if the circuit breakers are disabled
+     * @throws CircuitBreakerOpenException if either breaker is open
+     */
+    private CircuitBreaker[] acquireCircuitBreakers(String targetTableName, ObTable server)
+                                                                                         throws CircuitBreakerOpenException {
+        if (!circuitBreakerEnabled) {
+            return null;
+        }
+        CircuitBreaker[] breakers = server == null ? new CircuitBreaker[1] : new CircuitBreaker[2];
+        breakers[0] = getCircuitBreaker("table " + targetTableName);
+        if (server != null) {
+            breakers[1] = getCircuitBreaker("server " + server.getIp() + ":" + server.getPort());
+        }
+        for (int i = 0; i < breakers.length; i++) {
+            try {
+                breakers[i].acquire();
+            } catch (CircuitBreakerOpenException e) {
+                for (int j = 0; j < i; j++) {
+                    breakers[j].onIgnored();
+                }
+                throw e;
+            }
+        }
+        return breakers;
+    }
+
+    /**
+     * @param failure the failure of the request, null if it succeeded
+     */
+    private void completeCircuitBreakers(CircuitBreaker[] breakers, Throwable failure) {
+        if (breakers == null) {
+            return;
+        }
+        for (CircuitBreaker breaker : breakers) {
+            if (failure == null) {
+                breaker.onSuccess();
+            } else if (findCause(failure, CircuitBreakerOpenException.class) != null
+                       || findCause(failure, RequestThrottledException.class) != null
+                       || findCause(failure, InterruptedIOException.class) != null) {
+                breaker.onIgnored();
+            } else if (isServerFailure(failure)) {
+                breaker.onFailure();
+            } else {
+                // the server answered, though the request is wrong
+                breaker.onSuccess();
+            }
+        }
+    }
+
+    /**
+     * Whether the failure tells the server is unhealthy, such as a timeout or a busy server,
+     * rather than the request is wrong.
+     */
+    private boolean isServerFailure(Throwable failure) {
+        return findCause(failure, OperationTimeoutException.class) != null
+               || findCause(failure, TimeoutException.class) != null
+               || retryPolicy.classify(failure) != RetryPolicy.Action.FAIL;
+    }
+
+    /**
+     * Build the exception which reports every failed row, null if all the rows succeeded.
+     */
+    static RetriesExhaustedWithDetailsException buildRetriesExhaustedException(String tableName,
+                                                                               List<? extends Row> rows,
+                                                                               Object[] results) {
+        List<Throwable> exceptions = new ArrayList<Throwable>();
+        List<Row> actions = new ArrayList<Row>();
+        List<String> hostnameAndPorts = new ArrayList<String>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof Throwable) {
+                exceptions.add((Throwable) results[i]);
+                actions.add(rows.get(i));
+                hostnameAndPorts.add(tableName);
+            }
+        }
+        if (exceptions.isEmpty()) {
+            return null;
+        }
+        return new RetriesExhaustedWithDetailsException(exceptions, actions, hostnameAndPorts);
+    }
+
+    private static class MutateGroup {
+        private final String         family;
+        /**
+         * the server all the cells are sent to, null if unknown
+         */
+        private final ObTable        server;
+        private final List<KeyValue> keyValues = new ArrayList<KeyValue>();
+        /**
+         * index of the mutation which each key value belongs to
+         */
+        private final List<Integer>  owners    = new ArrayList<Integer>();
+
+        MutateGroup(String family, ObTable server) {
+            this.family = family;
+            this.server = server;
         }
     }
 
     public void close() throws IOException {
         if (cleanupPoolOnClose) {
-            executePool.shutdown();
+            lanes.shutdown();
         }
     }
 
@@ -967,8 +2550,8 @@ public class OHTable implements HTableInterface {
      * Turns 'auto-flush' on or off.
      * <p>
      * When enabled (default), {@link Put} operations don't get buffered/delayed
-     * and are immediately executed. Failed operations are not retried. This is
-     * slower but safer.
+     * and are immediately executed. Failed operations are retried up to
+     * <code>hbase.htable.flush.retries</code> times. This is slower but safer.
      * <p>
      * Turning off {@link #autoFlush} means that multiple {@link Put}s will be
      * accepted before any RPC is actually sent to do the write operations. If the
@@ -1024,8 +2607,7 @@ public class OHTable implements HTableInterface {
     public void setOperationTimeout(int operationTimeout) {
         this.operationTimeout = operationTimeout;
         this.operationExecuteInPool = this.configuration.getBoolean(
-            HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL,
-            (this.operationTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT));
+            HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL, DEFAULT_HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL);
     }
 
     public void setRuntimeBatchExecutor(ExecutorService runtimeBatchExecutor) {
@@ -1033,13 +2615,60 @@ public class OHTable implements HTableInterface {
     }
 
     <T> T executeServerCallable(final ServerCallable<T> serverCallable) throws IOException {
+        return executeServerCallable(serverCallable, ExecuteLanes.Lane.GET);
+    }
+
+    <T> T executeServerCallable(final ServerCallable<T> serverCallable, ExecuteLanes.Lane lane)
+                                                                                               throws IOException {
+        serverCallable.setRetryPolicy(retryPolicy, retryBudget);
+        if (readThrottle == null) {
+            return innerExecuteServerCallable(serverCallable, lane);
+        }
+        readThrottle.acquire(1, 0);
+        try {
+            T result = innerExecuteServerCallable(serverCallable, lane);
+            if (result instanceof Result) {
+                readThrottle.charge(resultSize((Result) result));
+            }
+            return result;
+        } finally {
+            readThrottle.release();
+        }
+    }
+
+    private static long resultSize(Result result) {
+        long size = 0;
+        if (!result.isEmpty()) {
+            for (KeyValue kv : result.raw()) {
+                size += kv.getLength();
+            }
+        }
+        return size;
+    }
+
+    private <T> T innerExecuteServerCallable(final ServerCallable<T> serverCallable,
+                                             ExecuteLanes.Lane lane) throws IOException {
 
-        if (!this.operationExecuteInPool) {
+        ExecutorService pool = lanes.get(lane);
+        // the stream of a scanner can not take the deadline of its opening
+        boolean executeInPool = this.operationExecuteInPool
+                                || (lane == ExecuteLanes.Lane.SCAN
+                                    && this.operationTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT);
+        if (!executeInPool || ExecuteLanes.inLane(pool)) {
             return serverCallable.withRetries();
         }
 
         long startTime = System.currentTimeMillis();
-        Future<T> future = this.executePool.submit(serverCallable);
+        Future<T> future;
+        try {
+            future = pool.submit(serverCallable);
+        } catch (RejectedExecutionException e) {
+            if (lanes.isCallerRuns(lane)) {
+                return serverCallable.withRetries();
+            }
+            throw new IOException("the " + lane.name().toLowerCase() + " lane of table "
+                                  + tableNameString + " is full", e);
+        }
         try {
             return future.get(this.operationTimeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
@@ -1059,14 +2688,120 @@ public class OHTable implements HTableInterface {
             throw new IOException(e);
         } catch (TimeoutException e) {
             future.cancel(true);
-            String hostPort = "unknown";
-            String regionEncodedName = "unknown";
-            throw new OperationTimeoutException("Failed executing operation for table '"
-                                                + Bytes.toString(this.tableName) + "' on server "
-                                                + hostPort + ",region=" + regionEncodedName
-                                                + ",operationTimeout=" + this.operationTimeout
-                                                + ",waitTime="
-                                                + (System.currentTimeMillis() - startTime));
+            throw buildOperationTimeoutException(startTime);
+        }
+    }
+
+    private OperationTimeoutException buildOperationTimeoutException(long startTime) {
+        String hostPort = "unknown";
+        String regionEncodedName = "unknown";
+        return new OperationTimeoutException("Failed executing operation for table '"
+                                             + Bytes.toString(this.tableName) + "' on server "
+                                             + hostPort + ",region=" + regionEncodedName
+                                             + ",operationTimeout=" + this.operationTimeout
+                                             + ",waitTime="
+                                             + (System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * Run the callable, and run the hedge as well if the callable does not answer within the
+     * hedge delay. Whichever succeeds first is taken, the other is cancelled and its result,
+     * if any, is closed.
+     */
+    private <T> T executeHedged(ServerCallable<T> serverCallable, ServerCallable<T> hedge,
+                                ReadHedger hedger, ExecuteLanes.Lane lane) throws IOException {
+        long delay = hedger.getDelay();
+        hedger.onRequest();
+        ExecutorService pool = lanes.get(lane);
+        long startTime = System.currentTimeMillis();
+        if (delay < 0 || ExecuteLanes.inLane(pool)) {
+            // no latency to hedge after yet, or already in a lane thread which can not wait
+            // for the other ones
+            T result = executeServerCallable(serverCallable, lane);
+            hedger.record(System.currentTimeMillis() - startTime, false);
+            return result;
+        }
+
+        // the first attempt succeeded takes the result, the later ones close their own
+        final AtomicReference<Object> taken = new AtomicReference<Object>();
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(pool);
+        List<Future<T>> futures = new ArrayList<Future<T>>(2);
+        boolean returned = false;
+        try {
+            futures.add(completionService.submit(buildHedgeAttempt(serverCallable, lane, taken)));
+        } catch (RejectedExecutionException e) {
+            // the lane is full, leave it to decide whether the caller runs the callable
+            return executeServerCallable(serverCallable, lane);
+        }
+        try {
+            Future<T> done = completionService.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null && hedger.tryHedge()) {
+                try {
+                    futures.add(completionService.submit(buildHedgeAttempt(hedge, lane, taken)));
+                } catch (RejectedExecutionException e) {
+                    // the lane is full, wait for the first attempt only
+                }
+            }
+            Throwable lastFailure = null;
+            for (int pending = futures.size(); pending > 0; pending--) {
+                if (done == null) {
+                    long remainingTime = operationTimeout
+                                         - (System.currentTimeMillis() - startTime);
+                    done = remainingTime > 0 ? completionService.poll(remainingTime,
+                        TimeUnit.MILLISECONDS) : null;
+                    if (done == null) {
+                        throw buildOperationTimeoutException(startTime);
+                    }
+                }
+                try {
+                    done.get();
+                    hedger.record(System.currentTimeMillis() - startTime,
+                        done != futures.get(0));
+                    @SuppressWarnings("unchecked")
+                    T result = (T) taken.get();
+                    returned = true;
+                    return result;
+                } catch (ExecutionException e) {
+                    lastFailure = e.getCause();
+                    done = null;
+                }
+            }
+            if (lastFailure instanceof IOException) {
+                throw (IOException) lastFailure;
+            }
+            throw new IOException(lastFailure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            // no attempt takes the result after this, and the one taken is closed unless returned
+            if (!returned && !taken.compareAndSet(null, HEDGE_ABANDONED)) {
+                closeHedgeResult(taken.get());
+            }
+        }
+    }
+
+    private <T> Callable<T> buildHedgeAttempt(final ServerCallable<T> serverCallable,
+                                              final ExecuteLanes.Lane lane,
+                                              final AtomicReference<Object> taken) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                T result = executeServerCallable(serverCallable, lane);
+                if (!taken.compareAndSet(null, result)) {
+                    closeHedgeResult(result);
+                }
+                return result;
+            }
+        };
+    }
+
+    private static void closeHedgeResult(Object result) {
+        if (result instanceof ResultScanner) {
+            ((ResultScanner) result).close();
         }
     }
 
@@ -1157,6 +2892,12 @@ public class OHTable implements HTableInterface {
     private ObTableQuery buildObTableQuery(ObHTableFilter filter, byte[] start,
                                            boolean includeStart, byte[] stop, boolean includeStop,
                                            int batchSize) {
+        return buildObTableQuery(filter, buildObNewRange(start, includeStart, stop, includeStop),
+            batchSize);
+    }
+
+    private ObNewRange buildObNewRange(byte[] start, boolean includeStart, byte[] stop,
+                                       boolean includeStop) {
         ObNewRange obNewRange = new ObNewRange();
 
         if (includeStart) {
@@ -1173,16 +2914,23 @@ public class OHTable implements HTableInterface {
         } else {
             obNewRange.setEndKey(ObRowKey.getInstance(stop, ObObj.getMin(), ObObj.getMin()));
         }
-
-        return buildObTableQuery(filter, obNewRange, batchSize);
+        return obNewRange;
     }
 
     private ObTableQuery buildObTableQuery(ObHTableFilter filter, ObNewRange obNewRange,
                                            int batchSize) {
+        return buildObTableQuery(filter, obNewRange, batchSize, false);
+    }
+
+    /**
+     * @param keysOnly select K, Q and T only, the values are read as empty
+     */
+    private ObTableQuery buildObTableQuery(ObHTableFilter filter, ObNewRange obNewRange,
+                                           int batchSize, boolean keysOnly) {
         ObTableQuery obTableQuery = new ObTableQuery();
         obTableQuery.setIndexName("PRIMARY");
         obTableQuery.sethTableFilter(filter);
-        for (String column : ALL_COLUMNS) {
+        for (String column : keysOnly ? KEY_COLUMNS : ALL_COLUMNS) {
             obTableQuery.addSelectColumn(column);
         }
         if (obNewRange != null) {
@@ -1252,7 +3000,7 @@ public class OHTable implements HTableInterface {
         request.setReturningAffectedRows(true);
         request.setEntityType(ObTableEntityType.HKV);
         request.setBatchOperation(obTableBatchOperation);
-        return request;
+        return withOperationTimeout(request);
     }
 
     private ObTableQueryAndMutateRequest buildObTableQueryAndMutateRequest(ObTableQuery obTableQuery,
@@ -1265,15 +3013,34 @@ public class OHTable implements HTableInterface {
         request.setTableName(targetTableName);
         request.setTableQueryAndMutate(queryAndMutate);
         request.setEntityType(ObTableEntityType.HKV);
+        return withOperationTimeout(request);
+    }
+
+    /**
+     * The writes are not retried by a <code>ServerCallable</code>, so each request is given
+     * the whole operation timeout.
+     */
+    private <R extends ObTableAbstractOperationRequest> R withOperationTimeout(R request) {
+        if (operationTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT) {
+            request.setTimeout(operationTimeout);
+        }
         return request;
     }
 
     private void checkFamilyViolation(Collection<byte[]> families) {
+        checkFamilyViolation(families, false);
+    }
+
+    /**
+     * @param multiFamilyAllowed whether the operation can access more than one family,
+     *                           only reads can
+     */
+    private void checkFamilyViolation(Collection<byte[]> families, boolean multiFamilyAllowed) {
         if (families == null || families.size() == 0) {
             throw new FeatureNotSupportedException("family is empty.");
         }
 
-        if (families.size() > 1) {
+        if (!multiFamilyAllowed && families.size() > 1) {
             throw new FeatureNotSupportedException("multi family is not supported yet.");
         }
 
@@ -200,7 +200,6 @@ public class OHTableClient implements HTableInterface, Lifecycle {
         return ohTable.exists(get);
     }
 
-    // Not support.
     @Override
     public void batch(List<? extends Row> actions, Object[] results) throws IOException,
                                                                     InterruptedException {
@@ -208,7 +207,6 @@ public class OHTableClient implements HTableInterface, Lifecycle {
         ohTable.batch(actions, results);
     }
 
-    // Not support.
     @Override
     public Object[] batch(List<? extends Row> actions) throws IOException, InterruptedException {
         checkStatus();
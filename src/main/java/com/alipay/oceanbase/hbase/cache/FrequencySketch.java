@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+/**
+ * A count-min sketch of 4-bit counters which estimates how often a key was accessed
+ * recently. All the counters are halved once the number of increments reaches the
+ * sample size, so the history fades out.
+ * <p>
+ * Not thread safe.
+ */
+class FrequencySketch {
+
+    private static final int   DEPTH     = 4;
+
+    private static final int   MAX_COUNT = 15;
+
+    private static final int[] SEEDS     = { 0x97cb3127, 0xb0f18d3b, 0x8e5f0b63, 0xc2b2ae35 };
+
+    /**
+     * 16 counters of 4 bits per long
+     */
+    private final long[]       table;
+
+    private final int          tableMask;
+
+    private final int          sampleSize;
+
+    private int                size;
+
+    /**
+     * @param maximumEntries the expected max number of keys
+     */
+    FrequencySketch(int maximumEntries) {
+        int counters = tableSizeFor(Math.max(maximumEntries, 16));
+        this.table = new long[Math.max(counters / 16, 1) * DEPTH];
+        this.tableMask = table.length / DEPTH - 1;
+        this.sampleSize = 10 * Math.max(maximumEntries, 16);
+    }
+
+    /**
+     * @return the estimated number of accesses of the key, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int offset = offsetOf(hash, i);
+            int count = (int) ((table[index] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int offset = offsetOf(hash, i);
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * halve all the counters
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+        }
+        size = size / 2;
+    }
+
+    /**
+     * each row of the sketch owns a quarter of the table
+     */
+    private int indexOf(int hash, int depth) {
+        int h = (hash ^ SEEDS[depth]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return depth * (tableMask + 1) + (h & tableMask);
+    }
+
+    private int offsetOf(int hash, int depth) {
+        int h = (hash + SEEDS[depth]) * 0x85ebca6b;
+        return ((h >>> 28) & 0xf) << 2;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xed5ad4bb;
+        h ^= h >>> 11;
+        h *= 0xac4c1b51;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = 1;
+        while (size < n && size < (1 << 30)) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
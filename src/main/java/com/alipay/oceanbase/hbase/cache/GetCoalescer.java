@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
+import com.alipay.oceanbase.hbase.util.GetKey;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Coalesces the identical Gets in flight at the same time, the first one reads from the
+ * server and the others wait for its <code>Result</code> or its failure.
+ * <p>
+ * Writes must invalidate the rows they touch once written. A Get does not join a read
+ * started before an invalidation of its row, since that read may miss the write.
+ */
+public class GetCoalescer {
+
+    private static final int                        STRIPES        = 64;
+
+    public interface Loader {
+        Result load() throws IOException;
+    }
+
+    private final ConcurrentHashMap<GetKey, Flight> flights        = new ConcurrentHashMap<GetKey, Flight>();
+
+    /**
+     * invalidation stamps of the row stripes
+     */
+    private final AtomicLongArray                   stamps         = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong                        coalescedCount = new AtomicLong();
+
+    /**
+     * @param key     identity of the Get
+     * @param loader  reads the Get from the server
+     * @param timeout max milliseconds to wait for the read in flight
+     * @return the Result of the read in flight, or of the loader if none
+     * @throws IOException if the read fails, or the wait times out or is interrupted
+     */
+    public Result get(GetKey key, Loader loader, long timeout) throws IOException {
+        Flight flight = new Flight(stamps.get(stripe(key.getRow())));
+        for (;;) {
+            Flight inFlight = flights.putIfAbsent(key, flight);
+            if (inFlight == null) {
+                break;
+            }
+            if (inFlight.stamp == flight.stamp) {
+                coalescedCount.incrementAndGet();
+                return inFlight.await(timeout);
+            }
+            // the read in flight may miss a write, later Gets join this one instead
+            if (flights.replace(key, inFlight, flight)) {
+                break;
+            }
+        }
+
+        try {
+            Result result = loader.load();
+            flight.complete(result, null);
+            return result;
+        } catch (IOException e) {
+            flight.complete(null, e);
+            throw e;
+        } catch (RuntimeException e) {
+            flight.complete(null, e);
+            throw e;
+        } catch (Error e) {
+            flight.complete(null, e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    public void invalidate(byte[] row) {
+        stamps.incrementAndGet(stripe(row));
+    }
+
+    /**
+     * @return the number of Gets which joined a read in flight
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private static int stripe(byte[] row) {
+        return (Bytes.hashCode(row) & 0x7fffffff) % STRIPES;
+    }
+
+    private static class Flight {
+        private final long           stamp;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Result      result;
+
+        private volatile Throwable   failure;
+
+        Flight(long stamp) {
+            this.stamp = stamp;
+        }
+
+        void complete(Result result, Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        Result await(long timeout) throws IOException {
+            try {
+                if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new OperationTimeoutException("wait for the coalesced get timeout="
+                                                        + timeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("wait for the coalesced get interrupted");
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return result;
+        }
+    }
+}
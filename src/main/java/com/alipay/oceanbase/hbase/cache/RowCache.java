@@ -0,0 +1,420 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+import com.alipay.oceanbase.hbase.util.GetKey;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * A client side cache of Get results bounded by bytes, evicting with W-TinyLFU.
+ * <p>
+ * New entries enter a small LRU window. Entries leaving the window are only admitted
+ * to the main space if they were accessed more often than the entry they would evict,
+ * the access frequencies are estimated by a <code>FrequencySketch</code>. The main space
+ * is a segmented LRU, entries hit in the probation segment are promoted to the
+ * protected segment. Entries expire after the TTL.
+ * <p>
+ * Writes must invalidate the rows they touch. A Result read before an invalidation of
+ * its row is not cached, so a reader racing with a writer does not fill a stale Result:
+ * <pre>
+ * long stamp = cache.stamp(row);
+ * Result result = readFromServer(get);
+ * cache.put(key, result, stamp);
+ * </pre>
+ */
+public class RowCache {
+
+    private static final int                   STRIPES            = 64;
+
+    /**
+     * estimated bytes of an entry besides its key values
+     */
+    private static final int                   ENTRY_OVERHEAD     = 128;
+
+    /**
+     * estimated bytes of a key value besides its buffer
+     */
+    private static final int                   KEY_VALUE_OVERHEAD = 48;
+
+    private final long                         maximumSize;
+
+    private final long                         windowMaximum;
+
+    private final long                         mainMaximum;
+
+    private final long                         protectedMaximum;
+
+    private final long                         ttlMillis;
+
+    private final ReentrantLock                lock               = new ReentrantLock();
+
+    private final Map<GetKey, Node>            data               = new HashMap<GetKey, Node>();
+
+    /**
+     * keys of each row, so that a write can invalidate all the cached Gets of its row
+     */
+    private final Map<ByteBuffer, Set<GetKey>> rowIndex           = new HashMap<ByteBuffer, Set<GetKey>>();
+
+    private final LinkedHashMap<GetKey, Node>  window             = new LinkedHashMap<GetKey, Node>();
+
+    private final LinkedHashMap<GetKey, Node>  probation          = new LinkedHashMap<GetKey, Node>();
+
+    private final LinkedHashMap<GetKey, Node>  protectedSegment   = new LinkedHashMap<GetKey, Node>();
+
+    private final FrequencySketch              sketch;
+
+    private long                               windowSize;
+
+    private long                               mainSize;
+
+    private long                               protectedSize;
+
+    /**
+     * invalidation stamps of the row stripes
+     */
+    private final AtomicLongArray              stamps             = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong                   hitCount           = new AtomicLong();
+
+    private final AtomicLong                   missCount          = new AtomicLong();
+
+    private final AtomicLong                   evictionCount      = new AtomicLong();
+
+    private final AtomicLong                   invalidationCount  = new AtomicLong();
+
+    /**
+     * @param maximumSize max bytes of the cached results
+     * @param ttlMillis   time to live of the cached results, not positive means never expire
+     */
+    public RowCache(long maximumSize, long ttlMillis) {
+        checkArgument(maximumSize > 0, "maximumSize is not positive.");
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(maximumSize / 100, 1);
+        this.mainMaximum = maximumSize - windowMaximum;
+        this.protectedMaximum = mainMaximum * 8 / 10;
+        this.ttlMillis = ttlMillis;
+        this.sketch = new FrequencySketch((int) Math.min(maximumSize / 64, 1 << 22));
+    }
+
+    /**
+     * @return the cached result, null if absent or expired
+     */
+    public Result get(GetKey key) {
+        lock.lock();
+        try {
+            Node node = data.get(key);
+            if (node == null) {
+                missCount.incrementAndGet();
+                sketch.increment(key);
+                return null;
+            }
+            if (node.isExpired(System.currentTimeMillis())) {
+                remove(node);
+                evictionCount.incrementAndGet();
+                missCount.incrementAndGet();
+                sketch.increment(key);
+                return null;
+            }
+            sketch.increment(key);
+            onAccess(node);
+            hitCount.incrementAndGet();
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the invalidation stamp of the row, must be taken before the Result is read
+     */
+    public long stamp(byte[] row) {
+        return stamps.get(stripe(row));
+    }
+
+    /**
+     * Cache the result unless its row was invalidated after the stamp was taken.
+     *
+     * @param key    the key of the Get
+     * @param result the result read from server
+     * @param stamp  the stamp of the row taken before the result was read
+     */
+    public void put(GetKey key, Result result, long stamp) {
+        long weight = weigh(key, result);
+        if (weight > mainMaximum) {
+            return;
+        }
+        lock.lock();
+        try {
+            // invalidations take the lock too, so the stamp can not change until we finish
+            if (stamps.get(stripe(key.getRow())) != stamp) {
+                return;
+            }
+            Node node = data.get(key);
+            if (node != null) {
+                remove(node);
+            }
+            node = new Node(key, result, weight, ttlMillis > 0 ? System.currentTimeMillis()
+                                                                 + ttlMillis : Long.MAX_VALUE);
+            data.put(key, node);
+            ByteBuffer row = ByteBuffer.wrap(key.getRow());
+            Set<GetKey> keys = rowIndex.get(row);
+            if (keys == null) {
+                keys = new HashSet<GetKey>();
+                rowIndex.put(row, keys);
+            }
+            keys.add(key);
+            node.segment = window;
+            window.put(key, node);
+            windowSize += weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all the cached results of the row, must be called after the row is written.
+     */
+    public void invalidate(byte[] row) {
+        lock.lock();
+        try {
+            stamps.incrementAndGet(stripe(row));
+            Set<GetKey> keys = rowIndex.get(ByteBuffer.wrap(row));
+            if (keys == null) {
+                return;
+            }
+            for (GetKey key : keys.toArray(new GetKey[keys.size()])) {
+                Node node = data.get(key);
+                if (node != null) {
+                    remove(node);
+                    invalidationCount.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                stamps.incrementAndGet(i);
+            }
+            invalidationCount.addAndGet(data.size());
+            data.clear();
+            rowIndex.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowSize = 0;
+            mainSize = 0;
+            protectedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of entries evicted by size or expiration
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return number of entries removed by writes
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public long getEntryCount() {
+        lock.lock();
+        try {
+            return data.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes of the cached results
+     */
+    public long getWeightedSize() {
+        lock.lock();
+        try {
+            return windowSize + mainSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    private void onAccess(Node node) {
+        if (node.segment == window) {
+            window.remove(node.key);
+            window.put(node.key, node);
+        } else if (node.segment == probation) {
+            probation.remove(node.key);
+            node.segment = protectedSegment;
+            protectedSegment.put(node.key, node);
+            protectedSize += node.weight;
+            while (protectedSize > protectedMaximum) {
+                Node demoted = first(protectedSegment);
+                protectedSegment.remove(demoted.key);
+                protectedSize -= demoted.weight;
+                demoted.segment = probation;
+                probation.put(demoted.key, demoted);
+            }
+        } else {
+            protectedSegment.remove(node.key);
+            protectedSegment.put(node.key, node);
+        }
+    }
+
+    /**
+     * Move the entries out of the window and let them compete with the main space victims.
+     */
+    private void evict() {
+        while (windowSize > windowMaximum) {
+            Node candidate = first(window);
+            window.remove(candidate.key);
+            windowSize -= candidate.weight;
+            admit(candidate);
+        }
+    }
+
+    private void admit(Node candidate) {
+        long now = System.currentTimeMillis();
+        while (mainSize + candidate.weight > mainMaximum) {
+            Node victim = probation.isEmpty() ? first(protectedSegment) : first(probation);
+            if (victim == null) {
+                break;
+            }
+            if (victim.isExpired(now)
+                || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+                evictionCount.incrementAndGet();
+            } else {
+                candidate.segment = null;
+                removeFromIndex(candidate);
+                evictionCount.incrementAndGet();
+                return;
+            }
+        }
+        candidate.segment = probation;
+        probation.put(candidate.key, candidate);
+        mainSize += candidate.weight;
+    }
+
+    private void remove(Node node) {
+        if (node.segment == window) {
+            window.remove(node.key);
+            windowSize -= node.weight;
+        } else if (node.segment == probation) {
+            probation.remove(node.key);
+            mainSize -= node.weight;
+        } else if (node.segment == protectedSegment) {
+            protectedSegment.remove(node.key);
+            mainSize -= node.weight;
+            protectedSize -= node.weight;
+        }
+        node.segment = null;
+        removeFromIndex(node);
+    }
+
+    private void removeFromIndex(Node node) {
+        if (data.get(node.key) == node) {
+            data.remove(node.key);
+        }
+        ByteBuffer row = ByteBuffer.wrap(node.key.getRow());
+        Set<GetKey> keys = rowIndex.get(row);
+        if (keys != null && !data.containsKey(node.key)) {
+            keys.remove(node.key);
+            if (keys.isEmpty()) {
+                rowIndex.remove(row);
+            }
+        }
+    }
+
+    private static Node first(LinkedHashMap<GetKey, Node> segment) {
+        Iterator<Node> iterator = segment.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static long weigh(GetKey key, Result result) {
+        long weight = ENTRY_OVERHEAD + key.getRow().length;
+        KeyValue[] keyValues = result.raw();
+        if (keyValues != null) {
+            for (KeyValue kv : keyValues) {
+                weight += KEY_VALUE_OVERHEAD + kv.getLength();
+            }
+        }
+        return weight;
+    }
+
+    private static int stripe(byte[] row) {
+        return (Bytes.hashCode(row) & 0x7fffffff) % STRIPES;
+    }
+
+    private static class Node {
+        private final GetKey                key;
+        private final Result                value;
+        private final long                  weight;
+        private final long                  expireTime;
+        private LinkedHashMap<GetKey, Node> segment;
+
+        Node(GetKey key, Result value, long weight, long expireTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireTime = expireTime;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireTime;
+        }
+    }
+}
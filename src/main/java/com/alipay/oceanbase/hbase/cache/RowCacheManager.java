@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+import com.alipay.oceanbase.rpc.ObTableClient;
+import com.google.common.base.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one <code>RowCache</code> and one <code>GetCoalescer</code> per table among the
+ * OHTables using the same <code>ObTableClient</code>, so that the writes of one OHTable
+ * invalidate the results cached or read in flight by the others.
+ */
+public class RowCacheManager {
+
+    public static final ConcurrentHashMap<RowCacheKey, RowCache>     ROW_CACHE_INSTANCE     = new ConcurrentHashMap<RowCacheKey, RowCache>();
+
+    public static final ConcurrentHashMap<RowCacheKey, GetCoalescer> GET_COALESCER_INSTANCE = new ConcurrentHashMap<RowCacheKey, GetCoalescer>();
+
+    /**
+     * The size and ttl only take effect when the cache is created.
+     */
+    public static RowCache getOrCreateRowCache(ObTableClient obTableClient, String tableName,
+                                               long maximumSize, long ttlMillis) {
+        RowCacheKey key = new RowCacheKey(obTableClient, tableName);
+        RowCache rowCache = ROW_CACHE_INSTANCE.get(key);
+        if (rowCache == null) {
+            RowCache tmp = new RowCache(maximumSize, ttlMillis);
+            rowCache = ROW_CACHE_INSTANCE.putIfAbsent(key, tmp);
+            rowCache = rowCache == null ? tmp : rowCache;
+        }
+        return rowCache;
+    }
+
+    public static GetCoalescer getOrCreateGetCoalescer(ObTableClient obTableClient,
+                                                       String tableName) {
+        RowCacheKey key = new RowCacheKey(obTableClient, tableName);
+        GetCoalescer coalescer = GET_COALESCER_INSTANCE.get(key);
+        if (coalescer == null) {
+            GetCoalescer tmp = new GetCoalescer();
+            coalescer = GET_COALESCER_INSTANCE.putIfAbsent(key, tmp);
+            coalescer = coalescer == null ? tmp : coalescer;
+        }
+        return coalescer;
+    }
+
+    public static class RowCacheKey {
+        private final ObTableClient obTableClient;
+        private final String        tableName;
+
+        public RowCacheKey(ObTableClient obTableClient, String tableName) {
+            this.obTableClient = obTableClient;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            RowCacheKey that = (RowCacheKey) o;
+            return obTableClient == that.obTableClient && Objects.equal(tableName, that.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(System.identityHashCode(obTableClient), tableName);
+        }
+    }
+}
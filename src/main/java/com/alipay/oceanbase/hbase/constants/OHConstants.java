@@ -25,32 +25,32 @@ public final class OHConstants {
     /**
      * ocenbase hbase root server http url
      */
-    public static final String   HBASE_OCEANBASE_PARAM_URL                   = "hbase.oceanbase.paramURL";
+    public static final String   HBASE_OCEANBASE_PARAM_URL                            = "hbase.oceanbase.paramURL";
 
     /**
      * ocenbase hbase connect server username
      */
-    public static final String   HBASE_OCEANBASE_FULL_USER_NAME              = "hbase.oceanbase.fullUserName";
+    public static final String   HBASE_OCEANBASE_FULL_USER_NAME                       = "hbase.oceanbase.fullUserName";
 
     /**
      * ocenbase hbase connect server password
      */
-    public static final String   HBASE_OCEANBASE_PASSWORD                    = "hbase.oceanbase.password";
+    public static final String   HBASE_OCEANBASE_PASSWORD                             = "hbase.oceanbase.password";
 
     /**
      * oceanbase hbase connect server system username
      */
-    public static final String   HBASE_OCEANBASE_SYS_USER_NAME               = "hbase.oceanbase.sysUserName";
+    public static final String   HBASE_OCEANBASE_SYS_USER_NAME                        = "hbase.oceanbase.sysUserName";
 
     /**
      * oceanbase hbase connect server system password
      */
-    public static final String   HBASE_OCEANBASE_SYS_PASSWORD                = "hbase.oceanbase.sysPassword";
+    public static final String   HBASE_OCEANBASE_SYS_PASSWORD                         = "hbase.oceanbase.sysPassword";
 
     /**
      * ocenbase hbase connect server password
      */
-    public static final String   HBASE_OCEANBASE_BATCH_EXECUTOR              = "hbase.oceanbase.batch.executor";
+    public static final String   HBASE_OCEANBASE_BATCH_EXECUTOR                       = "hbase.oceanbase.batch.executor";
 
     /**
      * ocenbase hbase model is consist of following columns
@@ -59,77 +59,479 @@ public final class OHConstants {
      * T hbase timeStamp
      * V hbase value
      */
-    public static final String[] ALL_COLUMNS                                 = new String[] { "K",
-            "Q", "T", "V"                                                   };
+    public static final String[] ALL_COLUMNS                                          = new String[] {
+            "K", "Q", "T", "V"                                                       };
 
     /**
      * ocenbase hbase model value column is consist of following column
      * V hbase value
      */
-    public static final String[] V_COLUMNS                                   = new String[] { "V" };
+    public static final String[] V_COLUMNS                                            = new String[] { "V" };
 
-    public static final String   HBASE_HTABLE_POOL_SEPERATOR                 = "$";
+    /**
+     * ocenbase hbase model key columns, selected when the values are not needed
+     * K hbase row key
+     * Q hbase qualifier
+     * T hbase timeStamp
+     */
+    public static final String[] KEY_COLUMNS                                          = new String[] {
+            "K", "Q", "T"                                                            };
+
+    public static final String   HBASE_HTABLE_POOL_SEPERATOR                          = "$";
 
     /**
      * internal attribute of ohtable pool to optimize auto-flush attribute for each table
      */
-    public static final String   HBASE_HTABLE_POOL_AUTO_FLUSH                = "hbase.htable.pool.auto.flush";
+    public static final String   HBASE_HTABLE_POOL_AUTO_FLUSH                         = "hbase.htable.pool.auto.flush";
 
     /**
      * internal attribute of ohtable pool to optimize clear-buffer-on-fail attribute for each table
      */
-    public static final String   HBASE_HTABLE_POOL_CLEAR_BUFFER_ON_FAIL      = "hbase.htable.pool.clear.buffer.on.fail";
+    public static final String   HBASE_HTABLE_POOL_CLEAR_BUFFER_ON_FAIL               = "hbase.htable.pool.clear.buffer.on.fail";
 
     /**
      * internal attribute of ohtable pool to optimize write-buffer-size attribute for each table
      */
-    public static final String   HBASE_HTABLE_POOL_WRITE_BUFFER_SIZE         = "hbase.htable.pool.write.buffer.size";
+    public static final String   HBASE_HTABLE_POOL_WRITE_BUFFER_SIZE                  = "hbase.htable.pool.write.buffer.size";
 
     /**
      * internal attribute of ohtable pool to optimize auto-flush attribute for each table
      */
-    public static final String   HBASE_HTABLE_POOL_OPERATION_TIMEOUT         = "hbase.htable.pool.operation.timeout";
+    public static final String   HBASE_HTABLE_POOL_OPERATION_TIMEOUT                  = "hbase.htable.pool.operation.timeout";
 
     /**
      * internal attribute of ohtable pool which enable the test load
      */
-    public static final String   HBASE_HTABLE_TEST_LOAD_ENABLE               = "hbase.htable.test.load.enable";
+    public static final String   HBASE_HTABLE_TEST_LOAD_ENABLE                        = "hbase.htable.test.load.enable";
 
     /**
      * internal attribute of ohtable pool which specify the test load suffix
      */
-    public static final String   HBASE_HTABLE_TEST_LOAD_SUFFIX               = "hbase.htable.test.load.suffix";
+    public static final String   HBASE_HTABLE_TEST_LOAD_SUFFIX                        = "hbase.htable.test.load.suffix";
 
     /**
      * the default value of internal attribute of ohtable pool which specify the test load suffix
      */
-    public static final String   DEFAULT_HBASE_HTABLE_TEST_LOAD_SUFFIX       = "_t";
+    public static final String   DEFAULT_HBASE_HTABLE_TEST_LOAD_SUFFIX                = "_t";
+
+    /**
+     * max number of results the scanner fetches ahead in background, 0 means disable prefetch.
+     * It can also be set as a scan attribute whose value is a 4-byte int to override the table setting
+     */
+    public static final String   HBASE_HTABLE_SCANNER_PREFETCH_DEPTH                  = "hbase.htable.scanner.prefetch.depth";
+
+    public static final int      DEFAULT_HBASE_HTABLE_SCANNER_PREFETCH_DEPTH          = 0;
+
+    /**
+     * max number of rows in one round trip of a scan, used if the caching of the scan is not
+     * set. 0 means not set. The server counts cells, so it only applies to the families whose
+     * qualifiers are selected by the scan
+     */
+    public static final String   HBASE_HTABLE_SCANNER_CACHING                         = "hbase.htable.scanner.caching";
+
+    public static final int      DEFAULT_HBASE_HTABLE_SCANNER_CACHING                 = 0;
+
+    /**
+     * scan attribute whose value is a 8-byte long, the max bytes the server returns in one round
+     * trip of the scan. It overrides hbase.client.scanner.max.result.size of the table
+     */
+    public static final String   HBASE_HTABLE_SCANNER_MAX_RESULT_SIZE                 = "hbase.htable.scanner.max.result.size";
+
+    /**
+     * whether scan the partitions of the table in parallel. It can also be set as a scan attribute
+     * whose value is <code>Bytes.toBytes(boolean)</code> to override the table setting
+     */
+    public static final String   HBASE_HTABLE_SCANNER_PARALLEL                        = "hbase.htable.scanner.parallel";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL                = false;
+
+    /**
+     * whether the parallel scan returns rows in row key order, otherwise rows are returned as they arrive.
+     * It can also be set as a scan attribute whose value is <code>Bytes.toBytes(boolean)</code>
+     */
+    public static final String   HBASE_HTABLE_SCANNER_PARALLEL_ORDERED                = "hbase.htable.scanner.parallel.ordered";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_ORDERED        = true;
+
+    /**
+     * max number of partitions scanned at the same time by the unordered parallel scan,
+     * the ordered one has to scan all the partitions at the same time
+     */
+    public static final String   HBASE_HTABLE_SCANNER_PARALLEL_MAX                    = "hbase.htable.scanner.parallel.max";
+
+    public static final int      DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_MAX            = 8;
+
+    /**
+     * prefetch depth of the parallel scan if the scanner prefetch depth is not set
+     */
+    public static final int      DEFAULT_HBASE_HTABLE_SCANNER_PARALLEL_PREFETCH_DEPTH = 64;
+
+    /**
+     * scan attribute whose value is <code>Bytes.toBytes(boolean)</code>, the scan only returns the
+     * keys of the cells with empty values, so that the values are not transferred
+     */
+    public static final String   HBASE_HTABLE_SCANNER_KEYS_ONLY                       = "hbase.htable.scanner.keys.only";
+
+    /**
+     * scan attribute whose value is <code>Bytes.toBytes(boolean)</code>, the scan returns the rows
+     * in descending order from its start row (inclusive) down to its stop row (exclusive)
+     */
+    public static final String   HBASE_HTABLE_SCANNER_REVERSED                        = "hbase.htable.scanner.reversed";
+
+    /**
+     * max number of flushes the buffered mutator runs at the same time, the flushes which
+     * touch the same rows still run one after another
+     */
+    public static final String   HBASE_HTABLE_MUTATOR_MAX_IN_FLIGHT                   = "hbase.htable.mutator.max.inflight";
+
+    public static final int      DEFAULT_HBASE_HTABLE_MUTATOR_MAX_IN_FLIGHT           = 4;
+
+    /**
+     * max heap size of the mutations buffered or being flushed by the buffered mutator,
+     * the writers are blocked once it is reached
+     */
+    public static final String   HBASE_HTABLE_MUTATOR_MAX_BUFFER_SIZE                 = "hbase.htable.mutator.max.buffer.size";
+
+    public static final long     DEFAULT_HBASE_HTABLE_MUTATOR_MAX_BUFFER_SIZE         = 16777216;
+
+    /**
+     * number of threads of the async table which run the operations
+     */
+    public static final String   HBASE_HTABLE_ASYNC_THREADS                           = "hbase.htable.async.threads";
+
+    public static final int      DEFAULT_HBASE_HTABLE_ASYNC_THREADS                   = 4;
+
+    /**
+     * max number of pending gets or mutations the async table sends in one batch
+     */
+    public static final String   HBASE_HTABLE_ASYNC_BATCH_SIZE                        = "hbase.htable.async.batch.size";
+
+    public static final int      DEFAULT_HBASE_HTABLE_ASYNC_BATCH_SIZE                = 256;
+
+    /**
+     * whether drop the buffered Puts which a later Put of the same cell or a later Delete in
+     * the same flush overwrites
+     */
+    public static final String   HBASE_HTABLE_WRITE_COALESCE                          = "hbase.htable.write.coalesce";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_WRITE_COALESCE                  = false;
+
+    /**
+     * times flushCommits resends the Puts which failed with a retryable error, only the
+     * failed Puts are sent again
+     */
+    public static final String   HBASE_HTABLE_FLUSH_RETRIES                           = "hbase.htable.flush.retries";
+
+    public static final int      DEFAULT_HBASE_HTABLE_FLUSH_RETRIES                   = 3;
+
+    /**
+     * base pause in milliseconds between the retries of flushCommits, backed off by the
+     * number of tries
+     */
+    public static final String   HBASE_HTABLE_FLUSH_RETRY_PAUSE                       = "hbase.htable.flush.retry.pause";
+
+    public static final long     DEFAULT_HBASE_HTABLE_FLUSH_RETRY_PAUSE               = 100;
+
+    /**
+     * target p99 latency in milliseconds of flushCommits, the write buffer is flushed at a
+     * size adapted to the latencies measured instead of the fixed write buffer size, 0
+     * disables the adaptive batch size
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_TARGET_LATENCY           = "hbase.htable.adaptive.batch.target.latency";
+
+    public static final long     DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_TARGET_LATENCY   = 0;
+
+    /**
+     * min bytes of an adaptive batch, also the step it grows by
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_MIN_SIZE                 = "hbase.htable.adaptive.batch.min.size";
+
+    public static final long     DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MIN_SIZE         = 65536;
+
+    /**
+     * max bytes of an adaptive batch
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_MAX_SIZE                 = "hbase.htable.adaptive.batch.max.size";
+
+    public static final long     DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MAX_SIZE         = 16777216;
+
+    /**
+     * min Puts of an adaptive batch, also the step it grows by
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_MIN_OPS                  = "hbase.htable.adaptive.batch.min.ops";
+
+    public static final int      DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MIN_OPS          = 16;
+
+    /**
+     * max Puts of an adaptive batch
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_MAX_OPS                  = "hbase.htable.adaptive.batch.max.ops";
+
+    public static final int      DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_MAX_OPS          = 10000;
+
+    /**
+     * number of flushes the p99 latency is taken over before the batch size is adapted
+     */
+    public static final String   HBASE_HTABLE_ADAPTIVE_BATCH_WINDOW                   = "hbase.htable.adaptive.batch.window";
+
+    public static final int      DEFAULT_HBASE_HTABLE_ADAPTIVE_BATCH_WINDOW           = 100;
+
+    /**
+     * max Gets and scans opened per second of a table, a multi get counts its rows, shared
+     * by the tables of the same client. Each throttle key suffixed by ".{table name}"
+     * overrides it for that table, not positive means unlimited
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_READ_OPS                       = "hbase.htable.throttle.read.ops";
+
+    /**
+     * max bytes per second of the results of Gets and scans
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_READ_BYTES                     = "hbase.htable.throttle.read.bytes";
+
+    /**
+     * max read requests at the same time, a multi get sends one per group of rows
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_READ_IN_FLIGHT                 = "hbase.htable.throttle.read.inflight";
+
+    /**
+     * max cells written per second
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_WRITE_OPS                      = "hbase.htable.throttle.write.ops";
+
+    /**
+     * max bytes of cells written per second
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_WRITE_BYTES                    = "hbase.htable.throttle.write.bytes";
+
+    /**
+     * max write requests at the same time, a batch of mutations sends one per family
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_WRITE_IN_FLIGHT                = "hbase.htable.throttle.write.inflight";
+
+    /**
+     * whether reject the operations over a throttle limit with RequestThrottledException
+     * instead of waiting
+     */
+    public static final String   HBASE_HTABLE_THROTTLE_FAIL_FAST                      = "hbase.htable.throttle.fail.fast";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_THROTTLE_FAIL_FAST              = false;
+
+    /**
+     * prefix of the keys of the execute lanes of a table, hbase.htable.lane.{get,scan,write}
+     * followed by ".threads" for the max threads, ".queue" for the max tasks waiting, 0
+     * means none, and ".rejection" for what a Get or scan rejected by a full lane does,
+     * "callerruns" runs it in the caller thread, "abort" fails it
+     */
+    public static final String   HBASE_HTABLE_LANE_PREFIX                             = "hbase.htable.lane.";
+
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_GET_THREADS                = 64;
+
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_GET_QUEUE                  = 1024;
+
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_SCAN_THREADS               = 64;
+
+    /**
+     * scan tasks stream results as long as the scan is open, so they are not queued
+     */
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_SCAN_QUEUE                 = 0;
+
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_WRITE_THREADS              = 32;
+
+    public static final int      DEFAULT_HBASE_HTABLE_LANE_WRITE_QUEUE                = 1024;
+
+    public static final String   LANE_REJECTION_CALLER_RUNS                           = "callerruns";
+
+    public static final String   LANE_REJECTION_ABORT                                 = "abort";
+
+    public static final String   DEFAULT_HBASE_HTABLE_LANE_REJECTION                  = LANE_REJECTION_CALLER_RUNS;
+
+    /**
+     * whether run the operations of a table on virtual threads instead of the lanes, only
+     * takes effect on JDK 21 or later
+     */
+    public static final String   HBASE_HTABLE_VIRTUAL_THREADS_ENABLE                  = "hbase.htable.virtual.threads.enable";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_VIRTUAL_THREADS_ENABLE          = false;
+
+    /**
+     * class of the retry policy of a table, an implementation of RetryPolicy
+     */
+    public static final String   HBASE_HTABLE_RETRY_POLICY_CLASS                      = "hbase.htable.retry.policy.class";
+
+    /**
+     * max pause in milliseconds between the retries of the default retry policy
+     */
+    public static final String   HBASE_HTABLE_RETRY_MAX_PAUSE                         = "hbase.htable.retry.max.pause";
+
+    public static final long     DEFAULT_HBASE_HTABLE_RETRY_MAX_PAUSE                 = 5000;
+
+    /**
+     * max retries per request of a table, not positive means unlimited
+     */
+    public static final String   HBASE_HTABLE_RETRY_BUDGET_RATIO                      = "hbase.htable.retry.budget.ratio";
+
+    public static final float    DEFAULT_HBASE_HTABLE_RETRY_BUDGET_RATIO              = 0.1f;
+
+    /**
+     * retries per second of a table allowed regardless of the budget ratio
+     */
+    public static final String   HBASE_HTABLE_RETRY_BUDGET_MIN_PER_SECOND             = "hbase.htable.retry.budget.min.per.second";
+
+    public static final long     DEFAULT_HBASE_HTABLE_RETRY_BUDGET_MIN_PER_SECOND     = 10;
+
+    /**
+     * whether fail the requests to a target table or to a server fast once they keep failing
+     */
+    public static final String   HBASE_HTABLE_CIRCUIT_BREAKER_ENABLE                  = "hbase.htable.circuit.breaker.enable";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_ENABLE          = false;
+
+    /**
+     * number of consecutive failures which opens a circuit breaker
+     */
+    public static final String   HBASE_HTABLE_CIRCUIT_BREAKER_FAILURE_THRESHOLD       = "hbase.htable.circuit.breaker.failure.threshold";
+
+    public static final int      DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+
+    /**
+     * milliseconds an open circuit breaker fails the requests before it lets probes through
+     */
+    public static final String   HBASE_HTABLE_CIRCUIT_BREAKER_OPEN_TIME               = "hbase.htable.circuit.breaker.open.time";
+
+    public static final long     DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_OPEN_TIME       = 5000;
+
+    /**
+     * max probes in flight of a half-open circuit breaker
+     */
+    public static final String   HBASE_HTABLE_CIRCUIT_BREAKER_HALF_OPEN_PROBES        = "hbase.htable.circuit.breaker.half.open.probes";
+
+    public static final int      DEFAULT_HBASE_HTABLE_CIRCUIT_BREAKER_HALF_OPEN_PROBES = 1;
+
+    /**
+     * whether send a Get or a short scan a second time if it does not answer within the
+     * hedge delay, and take whichever answers first
+     */
+    public static final String   HBASE_HTABLE_HEDGE_ENABLE                            = "hbase.htable.hedge.enable";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_HEDGE_ENABLE                    = false;
+
+    /**
+     * percentile of the read latencies the hedge delay is set to
+     */
+    public static final String   HBASE_HTABLE_HEDGE_PERCENTILE                        = "hbase.htable.hedge.percentile";
+
+    public static final float    DEFAULT_HBASE_HTABLE_HEDGE_PERCENTILE                = 0.95f;
+
+    /**
+     * min hedge delay in milliseconds
+     */
+    public static final String   HBASE_HTABLE_HEDGE_MIN_DELAY                         = "hbase.htable.hedge.min.delay";
+
+    public static final long     DEFAULT_HBASE_HTABLE_HEDGE_MIN_DELAY                 = 5;
+
+    /**
+     * number of reads the percentile is taken over before the hedge delay is updated
+     */
+    public static final String   HBASE_HTABLE_HEDGE_WINDOW                            = "hbase.htable.hedge.window";
+
+    public static final int      DEFAULT_HBASE_HTABLE_HEDGE_WINDOW                    = 200;
+
+    /**
+     * max hedged reads per read of a table
+     */
+    public static final String   HBASE_HTABLE_HEDGE_BUDGET_RATIO                      = "hbase.htable.hedge.budget.ratio";
+
+    public static final float    DEFAULT_HBASE_HTABLE_HEDGE_BUDGET_RATIO              = 0.05f;
+
+    /**
+     * whether the hedged reads may be served by a weak read replica
+     */
+    public static final String   HBASE_HTABLE_HEDGE_WEAK_READ                         = "hbase.htable.hedge.weak.read";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_HEDGE_WEAK_READ                 = false;
+
+    /**
+     * max caching of a scan to be hedged, only the scans of one family which are not
+     * parallel are hedged
+     */
+    public static final String   HBASE_HTABLE_HEDGE_SCAN_MAX_CACHING                  = "hbase.htable.hedge.scan.max.caching";
+
+    public static final int      DEFAULT_HBASE_HTABLE_HEDGE_SCAN_MAX_CACHING          = 100;
+
+    /**
+     * interval in milliseconds of the counter aggregator to flush the added deltas, 0 only
+     * flushes by size or on demand
+     */
+    public static final String   HBASE_HTABLE_COUNTER_FLUSH_INTERVAL                  = "hbase.htable.counter.flush.interval";
+
+    public static final long     DEFAULT_HBASE_HTABLE_COUNTER_FLUSH_INTERVAL          = 1000;
+
+    /**
+     * number of pending cells of the counter aggregator which starts a flush
+     */
+    public static final String   HBASE_HTABLE_COUNTER_MAX_PENDING                     = "hbase.htable.counter.max.pending";
+
+    public static final int      DEFAULT_HBASE_HTABLE_COUNTER_MAX_PENDING             = 10000;
+
+    /**
+     * number of stripes the counter aggregator spreads the deltas over to reduce contention
+     */
+    public static final String   HBASE_HTABLE_COUNTER_STRIPES                         = "hbase.htable.counter.stripes";
+
+    public static final int      DEFAULT_HBASE_HTABLE_COUNTER_STRIPES                 = 16;
+
+    /**
+     * max bytes of the results cached by <code>get(Get)</code> of a table, 0 disables the cache
+     */
+    public static final String   HBASE_HTABLE_ROW_CACHE_MAX_SIZE                      = "hbase.htable.row.cache.max.size";
+
+    public static final long     DEFAULT_HBASE_HTABLE_ROW_CACHE_MAX_SIZE              = 0;
+
+    /**
+     * time to live in milliseconds of the cached results, 0 means never expire
+     */
+    public static final String   HBASE_HTABLE_ROW_CACHE_TTL                           = "hbase.htable.row.cache.ttl";
+
+    public static final long     DEFAULT_HBASE_HTABLE_ROW_CACHE_TTL                   = 60000;
+
+    /**
+     * whether the identical Gets of a table in flight at the same time share one read
+     */
+    public static final String   HBASE_HTABLE_GET_COALESCE_ENABLE                     = "hbase.htable.get.coalesce.enable";
+
+    public static final boolean  DEFAULT_HBASE_HTABLE_GET_COALESCE_ENABLE             = false;
 
     /*-------------------------------------------------------------------------------------------------------------*/
 
     /**
      * following constants are copied from hbase for compatibility
      */
-    public static final String   HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL      = "hbase.client.operation.executeinpool";
+    public static final String   HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL               = "hbase.client.operation.executeinpool";
+
+    /**
+     * the operations with a timeout are run in the caller thread by a deadline, instead of
+     * waiting for a pool thread
+     */
+    public static final boolean  DEFAULT_HBASE_CLIENT_OPERATION_EXECUTE_IN_POOL       = false;
 
-    public static final String   HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME         = "hbase.htable.threads.keepalivetime";
+    public static final String   HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME                  = "hbase.htable.threads.keepalivetime";
 
-    public static final long     DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME = 60;
+    public static final long     DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME          = 60;
 
-    public static final String   HBASE_HTABLE_PRIVATE_THREADS_MAX            = "hbase.htable.privatethreads.max";
+    public static final String   HBASE_HTABLE_PRIVATE_THREADS_MAX                     = "hbase.htable.privatethreads.max";
 
-    public static final int      DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX    = Integer.MAX_VALUE;
+    public static final int      DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX             = Integer.MAX_VALUE;
 
-    public static final String   HBASE_CLIENT_KEYVALUE_MAXSIZE               = "hbase.client.keyvalue.maxsize";
+    public static final String   HBASE_CLIENT_KEYVALUE_MAXSIZE                        = "hbase.client.keyvalue.maxsize";
 
-    public static final int      DEFAULT_HBASE_CLIENT_KEYVALUE_MAXSIZE       = -1;
+    public static final int      DEFAULT_HBASE_CLIENT_KEYVALUE_MAXSIZE                = -1;
 
-    public static final String   HBASE_HTABLE_CLIENT_WRITE_BUFFER            = "hbase.client.write.buffer";
+    public static final String   HBASE_HTABLE_CLIENT_WRITE_BUFFER                     = "hbase.client.write.buffer";
 
-    public static final long     DEFAULT_HBASE_HTABLE_CLIENT_WRITE_BUFFER    = 2097152;
+    public static final long     DEFAULT_HBASE_HTABLE_CLIENT_WRITE_BUFFER             = 2097152;
 
-    public static final String   HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK         = "hbase.htable.put.write.buffer.check";
+    public static final String   HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK                  = "hbase.htable.put.write.buffer.check";
 
-    public static final int      DEFAULT_HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK = 10;
+    public static final int      DEFAULT_HBASE_HTABLE_PUT_WRITE_BUFFER_CHECK          = 10;
 
 }
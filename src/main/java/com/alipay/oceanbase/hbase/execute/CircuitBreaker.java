@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.CircuitBreakerOpenException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * Fails the requests to a target table or to a server fast once they keep failing, instead
+ * of letting each one wait for its timeout.
+ * <p>
+ * The breaker opens after <code>failureThreshold</code> consecutive failures and rejects
+ * every request with a <code>CircuitBreakerOpenException</code> for <code>openMillis</code>.
+ * Then it is half-open, at most <code>halfOpenProbes</code> requests are let through as
+ * probes, the first probe succeeded closes it and the first probe failed opens it again.
+ * <p>
+ * A request acquired by {@link #acquire} must be completed by {@link #onSuccess},
+ * {@link #onFailure} or {@link #onIgnored}.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface Listener {
+        void onStateChange(CircuitBreaker breaker, State from, State to);
+    }
+
+    private final String     name;
+
+    private final int        failureThreshold;
+
+    private final long       openMillis;
+
+    private final int        halfOpenProbes;
+
+    private final Listener   listener;
+
+    private State            state         = State.CLOSED;
+
+    private int              consecutiveFailures;
+
+    private long             openedAt;
+
+    private int              probesInFlight;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name             the name shown in the exceptions and the state changes
+     * @param failureThreshold consecutive failures which open the breaker
+     * @param openMillis       milliseconds the breaker stays open before probing
+     * @param halfOpenProbes   max probes in flight while half-open
+     * @param listener         notified of the state changes, may be null
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, int halfOpenProbes,
+                          Listener listener) {
+        checkArgument(failureThreshold > 0, "failureThreshold is not positive.");
+        checkArgument(openMillis >= 0, "openMillis is negative.");
+        checkArgument(halfOpenProbes > 0, "halfOpenProbes is not positive.");
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        this.listener = listener;
+    }
+
+    /**
+     * @throws CircuitBreakerOpenException if the breaker is open, or half-open with all the
+     *                                     probes in flight
+     */
+    public void acquire() throws CircuitBreakerOpenException {
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    rejectedCount.incrementAndGet();
+                    throw new CircuitBreakerOpenException("circuit breaker of " + name
+                                                          + " is half-open, waiting for "
+                                                          + probesInFlight + " probes");
+                }
+                probesInFlight++;
+            } else if (state == State.OPEN) {
+                rejectedCount.incrementAndGet();
+                throw new CircuitBreakerOpenException("circuit breaker of " + name
+                                                      + " is open after "
+                                                      + consecutiveFailures + " failures");
+            }
+            to = state;
+        }
+        notifyChange(from, to);
+    }
+
+    public void onSuccess() {
+        State from;
+        synchronized (this) {
+            from = state;
+            consecutiveFailures = 0;
+            if (state != State.HALF_OPEN) {
+                // a success finished after the breaker opened does not close it before probing
+                return;
+            }
+            state = State.CLOSED;
+            probesInFlight = 0;
+        }
+        notifyChange(from, State.CLOSED);
+    }
+
+    public void onFailure() {
+        State from;
+        synchronized (this) {
+            from = state;
+            consecutiveFailures++;
+            if (state == State.OPEN
+                || (state == State.CLOSED && consecutiveFailures < failureThreshold)) {
+                return;
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probesInFlight = 0;
+        }
+        notifyChange(from, State.OPEN);
+    }
+
+    /**
+     * Complete a request whose result tells nothing about the target, such as one rejected
+     * by the client.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    private void notifyChange(State from, State to) {
+        if (from != to && listener != null) {
+            listener.onStateChange(this, from, to);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of requests rejected by the breaker
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" + name + ", " + getState() + "}";
+    }
+}
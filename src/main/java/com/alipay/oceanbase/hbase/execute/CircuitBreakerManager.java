@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.oceanbase.rpc.ObTableClient;
+import com.google.common.base.Objects;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shares one <code>CircuitBreaker</code> per target table and per server among the OHTables
+ * using the same <code>ObTableClient</code>, and publishes the state changes of all the
+ * breakers to the registered listeners.
+ */
+public class CircuitBreakerManager {
+
+    private static final Logger                                              logger                   = TableHBaseLoggerFactory
+                                                                                                          .getLogger(CircuitBreakerManager.class);
+
+    public static final ConcurrentHashMap<CircuitBreakerKey, CircuitBreaker> CIRCUIT_BREAKER_INSTANCE = new ConcurrentHashMap<CircuitBreakerKey, CircuitBreaker>();
+
+    private static final CopyOnWriteArrayList<CircuitBreaker.Listener>       LISTENERS                = new CopyOnWriteArrayList<CircuitBreaker.Listener>();
+
+    private static final CircuitBreaker.Listener                             PUBLISHER                = new Publisher();
+
+    public static void addListener(CircuitBreaker.Listener listener) {
+        LISTENERS.addIfAbsent(listener);
+    }
+
+    public static void removeListener(CircuitBreaker.Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * The settings only take effect when the breaker is created.
+     *
+     * @param name "table " followed by the target table name, or "server " followed by the
+     *             host and port
+     */
+    public static CircuitBreaker getOrCreateCircuitBreaker(ObTableClient obTableClient,
+                                                           String name, int failureThreshold,
+                                                           long openMillis, int halfOpenProbes) {
+        CircuitBreakerKey key = new CircuitBreakerKey(obTableClient, name);
+        CircuitBreaker breaker = CIRCUIT_BREAKER_INSTANCE.get(key);
+        if (breaker == null) {
+            CircuitBreaker tmp = new CircuitBreaker(name, failureThreshold, openMillis,
+                halfOpenProbes, PUBLISHER);
+            breaker = CIRCUIT_BREAKER_INSTANCE.putIfAbsent(key, tmp);
+            breaker = breaker == null ? tmp : breaker;
+        }
+        return breaker;
+    }
+
+    private static class Publisher implements CircuitBreaker.Listener {
+        @Override
+        public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from,
+                                  CircuitBreaker.State to) {
+            if (to == CircuitBreaker.State.OPEN) {
+                logger.warn("circuit breaker of {} changed from {} to {}", breaker.getName(),
+                    from, to);
+            } else {
+                logger.info("circuit breaker of {} changed from {} to {}", breaker.getName(),
+                    from, to);
+            }
+            for (CircuitBreaker.Listener listener : LISTENERS) {
+                try {
+                    listener.onStateChange(breaker, from, to);
+                } catch (Exception e) {
+                    logger.warn("circuit breaker listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    public static class CircuitBreakerKey {
+        private final ObTableClient obTableClient;
+        private final String        name;
+
+        public CircuitBreakerKey(ObTableClient obTableClient, String name) {
+            this.obTableClient = obTableClient;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            CircuitBreakerKey that = (CircuitBreakerKey) o;
+            return obTableClient == that.obTableClient && Objects.equal(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(System.identityHashCode(obTableClient), name);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import com.alipay.sofa.common.thread.SofaThreadPoolExecutor;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.TABLE_HBASE_LOGGER_SPACE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The executors of the point reads, the scans and the writes of a table, so that slow scans
+ * can not take the threads of the Gets.
+ * <p>
+ * Each lane is bounded by its own thread cap and queue size, and rejects the tasks over
+ * them. A task submitted by a thread of the same lane and waited for by it should run in
+ * that thread instead, see {@link #inLane(ExecutorService)}, otherwise the waiting threads
+ * could fill the lane with tasks nobody runs.
+ */
+public class ExecuteLanes {
+
+    private static final Logger logger = TableHBaseLoggerFactory.getLogger(ExecuteLanes.class);
+
+    public enum Lane {
+        GET, SCAN, WRITE
+    }
+
+    /**
+     * the lane executor the current thread belongs to
+     */
+    private static final ThreadLocal<ExecutorService> CURRENT_LANE           = new ThreadLocal<ExecutorService>();
+
+    /**
+     * Thread.ofVirtual() and Executors.newThreadPerTaskExecutor(ThreadFactory) of JDK 21,
+     * null if not available
+     */
+    private static final Method[]                     VIRTUAL_THREAD_METHODS = findVirtualThreadMethods();
+
+    private final ExecutorService                     getPool;
+
+    private final ExecutorService                     scanPool;
+
+    private final ExecutorService                     writePool;
+
+    private final boolean[]                           callerRuns;
+
+    private ExecuteLanes(ExecutorService getPool, ExecutorService scanPool,
+                         ExecutorService writePool, boolean[] callerRuns) {
+        this.getPool = getPool;
+        this.scanPool = scanPool;
+        this.writePool = writePool;
+        this.callerRuns = callerRuns;
+    }
+
+    /**
+     * Creates a bounded executor for each lane, configured by
+     * <code>hbase.htable.lane.{get,scan,write}.{threads,queue,rejection}</code>. The thread
+     * cap is at most <code>hbase.htable.privatethreads.max</code>.
+     * <p>
+     * If <code>hbase.htable.virtual.threads.enable</code> is true and the JDK supports
+     * virtual threads, all the lanes share an executor starting a virtual thread per task
+     * instead, which is not bounded.
+     */
+    public static ExecuteLanes create(Configuration conf) {
+        if (conf.getBoolean(HBASE_HTABLE_VIRTUAL_THREADS_ENABLE,
+            DEFAULT_HBASE_HTABLE_VIRTUAL_THREADS_ENABLE)) {
+            if (isVirtualThreadSupported()) {
+                return of(createVirtualThreadPool());
+            }
+            logger.warn("virtual threads are not supported by JDK {}, use the platform threads",
+                System.getProperty("java.version"));
+        }
+        int maxThreads = conf.getInt(HBASE_HTABLE_PRIVATE_THREADS_MAX,
+            DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX);
+        long keepAliveTime = conf.getLong(HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME,
+            DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME);
+        boolean[] callerRuns = new boolean[Lane.values().length];
+        ExecutorService[] pools = new ExecutorService[Lane.values().length];
+        int[] defaultThreads = { DEFAULT_HBASE_HTABLE_LANE_GET_THREADS,
+                DEFAULT_HBASE_HTABLE_LANE_SCAN_THREADS, DEFAULT_HBASE_HTABLE_LANE_WRITE_THREADS };
+        int[] defaultQueues = { DEFAULT_HBASE_HTABLE_LANE_GET_QUEUE,
+                DEFAULT_HBASE_HTABLE_LANE_SCAN_QUEUE, DEFAULT_HBASE_HTABLE_LANE_WRITE_QUEUE };
+        for (Lane lane : Lane.values()) {
+            String prefix = HBASE_HTABLE_LANE_PREFIX + lane.name().toLowerCase();
+            int threads = Math.min(
+                conf.getInt(prefix + ".threads", defaultThreads[lane.ordinal()]), maxThreads);
+            int queueSize = conf.getInt(prefix + ".queue", defaultQueues[lane.ordinal()]);
+            String rejection = conf.get(prefix + ".rejection", DEFAULT_HBASE_HTABLE_LANE_REJECTION);
+            checkArgument(threads > 0, prefix + ".threads is not positive.");
+            checkArgument(queueSize >= 0, prefix + ".queue is negative.");
+            checkArgument(
+                LANE_REJECTION_CALLER_RUNS.equals(rejection)
+                        || LANE_REJECTION_ABORT.equals(rejection), prefix + ".rejection "
+                                                                   + rejection + " is illegal.");
+            callerRuns[lane.ordinal()] = LANE_REJECTION_CALLER_RUNS.equals(rejection);
+            pools[lane.ordinal()] = createLanePool(lane, threads, queueSize, keepAliveTime);
+        }
+        return new ExecuteLanes(pools[Lane.GET.ordinal()], pools[Lane.SCAN.ordinal()],
+            pools[Lane.WRITE.ordinal()], callerRuns);
+    }
+
+    /**
+     * All the lanes share the executor, whose tasks are run by the caller when rejected.
+     */
+    public static ExecuteLanes of(ExecutorService pool) {
+        return new ExecuteLanes(pool, pool, pool, new boolean[] { true, true, true });
+    }
+
+    public ExecutorService get(Lane lane) {
+        switch (lane) {
+            case GET:
+                return getPool;
+            case SCAN:
+                return scanPool;
+            default:
+                return writePool;
+        }
+    }
+
+    /**
+     * @return whether a task of the lane rejected should run in the caller thread, instead
+     * of failing
+     */
+    public boolean isCallerRuns(Lane lane) {
+        return callerRuns[lane.ordinal()];
+    }
+
+    public void shutdown() {
+        getPool.shutdown();
+        scanPool.shutdown();
+        writePool.shutdown();
+    }
+
+    /**
+     * @return whether the current thread is a thread of the lane executor
+     */
+    public static boolean inLane(ExecutorService pool) {
+        return pool != null && CURRENT_LANE.get() == pool;
+    }
+
+    /**
+     * @return whether the JDK supports virtual threads, JDK 21 or later
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_METHODS != null;
+    }
+
+    private static ExecutorService createVirtualThreadPool() {
+        try {
+            Object builder = VIRTUAL_THREAD_METHODS[0].invoke(null);
+            builder = VIRTUAL_THREAD_METHODS[1].invoke(builder, "OHTableVirtualPool-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) VIRTUAL_THREAD_METHODS[2].invoke(builder);
+            return (ExecutorService) VIRTUAL_THREAD_METHODS[3].invoke(null, threadFactory);
+        } catch (Exception e) {
+            throw new IllegalStateException("create virtual thread pool error.", e);
+        }
+    }
+
+    private static Method[] findVirtualThreadMethods() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            return new Method[] { Thread.class.getMethod("ofVirtual"),
+                    builderClass.getMethod("name", String.class, long.class),
+                    builderClass.getMethod("factory"),
+                    Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class) };
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ThreadPoolExecutor createLanePool(Lane lane, int threads, int queueSize,
+                                                     long keepAliveTime) {
+        final String name = "OHTable" + lane.name().charAt(0)
+                            + lane.name().substring(1).toLowerCase() + "LanePool";
+        final ExecutorService[] holder = new ExecutorService[1];
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        CURRENT_LANE.set(holder[0]);
+                        r.run();
+                    }
+                }, name + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        BlockingQueue<Runnable> queue = queueSize == 0 ? new SynchronousQueue<Runnable>()
+            : new LinkedBlockingQueue<Runnable>(queueSize);
+        // the threads are created before the tasks are queued and time out when idle
+        SofaThreadPoolExecutor executor = new SofaThreadPoolExecutor(threads, threads,
+            keepAliveTime, SECONDS, queue, threadFactory, new ThreadPoolExecutor.AbortPolicy(),
+            name, TABLE_HBASE_LOGGER_SPACE);
+        executor.allowCoreThreadTimeOut(true);
+        holder[0] = executor;
+        return executor;
+    }
+}
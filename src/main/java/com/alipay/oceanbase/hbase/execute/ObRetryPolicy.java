@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.CircuitBreakerOpenException;
+import com.alipay.oceanbase.hbase.exception.FeatureNotSupportedException;
+import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
+import com.alipay.oceanbase.rpc.exception.*;
+import com.alipay.oceanbase.rpc.protocol.payload.ResultCodes;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.DEFAULT_HBASE_HTABLE_RETRY_MAX_PAUSE;
+import static com.alipay.oceanbase.hbase.constants.OHConstants.HBASE_HTABLE_RETRY_MAX_PAUSE;
+
+/**
+ * The default retry policy, which classifies the failures by the OB error codes.
+ * <p>
+ * The server busy, lock conflict, timeout and transport errors are retried, the location
+ * errors refresh the routes first, and the other server errors, such as an invalid argument
+ * or a duplicated key, fail at once. A failure without an OB error is retried unless it is
+ * an <code>IOException</code> or an illegal argument.
+ * <p>
+ * The pauses are decorrelated jittered, each is random between the base pause and three
+ * times the last one, capped by <code>hbase.htable.retry.max.pause</code>, so that the
+ * clients failed together do not retry together.
+ */
+public class ObRetryPolicy extends Configured implements RetryPolicy {
+
+    private static final Set<Integer> RETRY_CODES         = codes(ResultCodes.OB_TIMEOUT,
+                                                              ResultCodes.OB_EAGAIN,
+                                                              ResultCodes.OB_TRY_LOCK_ROW_CONFLICT,
+                                                              ResultCodes.OB_TRANSACTION_SET_VIOLATION,
+                                                              ResultCodes.OB_TRANS_TIMEOUT,
+                                                              ResultCodes.OB_TRANS_STMT_TIMEOUT,
+                                                              ResultCodes.OB_TRANS_RPC_TIMEOUT,
+                                                              ResultCodes.OB_RPC_SEND_ERROR,
+                                                              ResultCodes.OB_RPC_POST_ERROR,
+                                                              ResultCodes.OB_RPC_CONNECT_ERROR);
+
+    private static final Set<Integer> REFRESH_ROUTE_CODES = codes(ResultCodes.OB_NOT_MASTER,
+                                                              ResultCodes.OB_PARTITION_NOT_EXIST,
+                                                              ResultCodes.OB_LOCATION_NOT_EXIST,
+                                                              ResultCodes.OB_LOCATION_LEADER_NOT_EXIST,
+                                                              ResultCodes.OB_TENANT_NOT_IN_SERVER,
+                                                              ResultCodes.OB_PARTITION_IS_STOPPED,
+                                                              ResultCodes.OB_PARTITION_IS_BLOCKED,
+                                                              ResultCodes.OB_NO_READABLE_REPLICA,
+                                                              ResultCodes.OB_REPLICA_NOT_READABLE,
+                                                              ResultCodes.OB_SERVER_IS_INIT,
+                                                              ResultCodes.OB_SERVER_IS_STOPPING);
+
+    /**
+     * the errors raised by the client itself, which have no error code
+     */
+    private static final Class<?>[]   RETRY_EXCEPTIONS    = { ObTableTransportException.class,
+            ObTableServerDownException.class, ObTableTimeoutExcetion.class,
+            ObTableServerTimeoutException.class, ObTableServerConnectException.class,
+            ObTableConnectionStatusException.class, ObTableConnectionUnWritableException.class,
+            ObTableServerStatusChangeException.class, ObTableTransactionRpcTimeout.class };
+
+    private static final Class<?>[]   REFRESH_ROUTE_EXCEPTIONS = {
+            ObTableRoutingWrongException.class, ObTablePartitionLocationRefreshException.class,
+            ObTablePartitionChangeException.class, ObTableMasterChangeException.class,
+            ObTableUnitMigrateException.class, ObTableReplicaNotReadableException.class,
+            ObTableNoReadableReplicaException.class, ObTableServerCacheExpiredException.class };
+
+    private long                      maxPause            = DEFAULT_HBASE_HTABLE_RETRY_MAX_PAUSE;
+
+    @Override
+    public void setConf(Configuration conf) {
+        super.setConf(conf);
+        if (conf != null) {
+            maxPause = conf.getLong(HBASE_HTABLE_RETRY_MAX_PAUSE,
+                DEFAULT_HBASE_HTABLE_RETRY_MAX_PAUSE);
+        }
+    }
+
+    @Override
+    public Action classify(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof ObTableNotExistException) {
+                return Action.FAIL;
+            }
+            if (t instanceof ObTableException) {
+                return classify((ObTableException) t);
+            }
+            if (t instanceof IllegalArgumentException
+                || t instanceof FeatureNotSupportedException
+                || t instanceof com.alipay.oceanbase.rpc.exception.FeatureNotSupportedException
+                || t instanceof InterruptedIOException
+                || t instanceof CircuitBreakerOpenException
+                || t instanceof OperationTimeoutException) {
+                return Action.FAIL;
+            }
+        }
+        return failure instanceof IOException ? Action.FAIL : Action.RETRY;
+    }
+
+    private Action classify(ObTableException e) {
+        int errorCode = e.getErrorCode();
+        if (e.isNeedRefreshTableEntry() || REFRESH_ROUTE_CODES.contains(errorCode)
+            || isInstance(e, REFRESH_ROUTE_EXCEPTIONS)) {
+            return Action.REFRESH_ROUTE;
+        }
+        if (RETRY_CODES.contains(errorCode) || isInstance(e, RETRY_EXCEPTIONS)) {
+            return Action.RETRY;
+        }
+        return Action.FAIL;
+    }
+
+    private static boolean isInstance(Throwable t, Class<?>[] classes) {
+        for (Class<?> clazz : classes) {
+            if (clazz.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getPauseTime(long basePause, int tries, long lastPause) {
+        if (lastPause <= 0) {
+            return Math.min(basePause, maxPause);
+        }
+        long upper = Math.max(lastPause * 3, basePause + 1);
+        return Math.min(ThreadLocalRandom.current().nextLong(basePause, upper), maxPause);
+    }
+
+    private static Set<Integer> codes(ResultCodes... resultCodes) {
+        Set<Integer> codes = new HashSet<Integer>();
+        for (ResultCodes resultCode : resultCodes) {
+            codes.add(resultCode.errorCode);
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.RequestThrottledException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits one type of operations of a table by operations per second, bytes per second and
+ * requests in flight, a limit not positive means unlimited.
+ * <p>
+ * An operation over a limit waits for it, or is rejected with a
+ * <code>RequestThrottledException</code> if the throttle is fail-fast.
+ */
+public class OperationThrottle {
+
+    public enum Type {
+        READ, WRITE
+    }
+
+    private final String      name;
+
+    private final TokenBucket opsBucket;
+
+    private final TokenBucket bytesBucket;
+
+    private final Semaphore   inFlight;
+
+    private final boolean     failFast;
+
+    private final AtomicLong  throttledNanos = new AtomicLong();
+
+    private final AtomicLong  throttledCount = new AtomicLong();
+
+    private final AtomicLong  rejectedCount  = new AtomicLong();
+
+    /**
+     * @param name           the name shown in the exceptions
+     * @param opsPerSecond   max operations per second
+     * @param bytesPerSecond max bytes per second
+     * @param maxInFlight    max requests in flight
+     * @param failFast       whether reject the operations over a limit instead of waiting
+     */
+    public OperationThrottle(String name, long opsPerSecond, long bytesPerSecond, int maxInFlight,
+                             boolean failFast) {
+        this.name = name;
+        this.opsBucket = opsPerSecond > 0 ? new TokenBucket(opsPerSecond) : null;
+        this.bytesBucket = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Acquire a request in flight and the rate of the operations, the request must be
+     * released by <code>release</code> once done.
+     *
+     * @param ops   operations sent by the request
+     * @param bytes bytes sent by the request
+     * @throws IOException if rejected or interrupted
+     */
+    public void acquire(long ops, long bytes) throws IOException {
+        acquireInFlight();
+        try {
+            acquireRate(ops, bytes);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Acquire the rate of the operations only, for the retries of a request in flight.
+     *
+     * @throws IOException if rejected or interrupted
+     */
+    public void acquireRate(long ops, long bytes) throws IOException {
+        if (failFast) {
+            if (opsBucket != null && !opsBucket.tryAcquire(ops)) {
+                throw reject("operations per second");
+            }
+            if (bytesBucket != null && bytes > 0 && !bytesBucket.tryAcquire(bytes)) {
+                if (opsBucket != null) {
+                    opsBucket.refund(ops);
+                }
+                throw reject("bytes per second");
+            }
+            return;
+        }
+        long waitNanos = opsBucket == null ? 0 : opsBucket.reserve(ops);
+        if (bytesBucket != null && bytes > 0) {
+            waitNanos = Math.max(waitNanos, bytesBucket.reserve(bytes));
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(name + " throttle interrupted");
+            } finally {
+                throttledNanos.addAndGet(waitNanos);
+                throttledCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Charge the bytes only known after the request, such as the bytes of the results read,
+     * the requests after it wait for them.
+     */
+    public void charge(long bytes) {
+        if (bytesBucket != null && bytes > 0) {
+            bytesBucket.reserve(bytes);
+        }
+    }
+
+    public void release() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * @return milliseconds the operations spent waiting for the limits
+     */
+    public long getThrottledTime() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    /**
+     * @return the number of times the operations waited for the limits
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return the number of operations rejected by a fail-fast throttle
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private void acquireInFlight() throws IOException {
+        if (inFlight == null || inFlight.tryAcquire()) {
+            return;
+        }
+        if (failFast) {
+            throw reject("requests in flight");
+        }
+        long startTime = System.nanoTime();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(name + " throttle interrupted");
+        } finally {
+            throttledNanos.addAndGet(System.nanoTime() - startTime);
+            throttledCount.incrementAndGet();
+        }
+    }
+
+    private RequestThrottledException reject(String limit) {
+        rejectedCount.incrementAndGet();
+        return new RequestThrottledException(name + " exceeds the limit of " + limit);
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.util.AdaptiveBatchSizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * Decides when a read is hedged, that is sent a second time because the first one is slow.
+ * <p>
+ * The latencies of the reads are collected in windows, at the end of each window the hedge
+ * delay is set to the configured percentile of the window, but not below the min delay.
+ * No read is hedged before the first window is full. The hedged reads are taken from a
+ * <code>RetryBudget</code>, so that they stay within a fraction of the reads.
+ */
+public class ReadHedger {
+
+    private final double      percentile;
+
+    private final long        minDelay;
+
+    private final long[]      latencies;
+
+    private final RetryBudget budget;
+
+    private int               count;
+
+    private volatile long     delay         = -1;
+
+    private final AtomicLong  hedgedCount   = new AtomicLong();
+
+    private final AtomicLong  hedgeWinCount = new AtomicLong();
+
+    /**
+     * @param percentile the percentile of the latencies a read is hedged after
+     * @param minDelay   the min milliseconds a read is hedged after
+     * @param window     number of reads the percentile is taken over
+     * @param budget     the budget the hedged reads are taken from
+     */
+    public ReadHedger(double percentile, long minDelay, int window, RetryBudget budget) {
+        checkArgument(percentile > 0 && percentile < 1, "percentile is not in (0, 1).");
+        checkArgument(minDelay >= 0, "minDelay is negative.");
+        checkArgument(window > 0, "window is not positive.");
+        checkArgument(budget != null, "budget is null.");
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.latencies = new long[window];
+        this.budget = budget;
+    }
+
+    /**
+     * @return milliseconds to wait for a read before hedging it, -1 if not known yet
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Called for every read, whether hedged or not, to fill the budget.
+     */
+    public void onRequest() {
+        budget.onRequest();
+    }
+
+    /**
+     * @return whether a read may be hedged, if so it is taken from the budget
+     */
+    public boolean tryHedge() {
+        if (!budget.tryRetry()) {
+            return false;
+        }
+        hedgedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Record a read.
+     *
+     * @param latency   the latency of the read in milliseconds
+     * @param hedgeWins whether the hedged read answered first
+     */
+    public synchronized void record(long latency, boolean hedgeWins) {
+        if (hedgeWins) {
+            hedgeWinCount.incrementAndGet();
+        }
+        latencies[count++] = latency;
+        if (count < latencies.length) {
+            return;
+        }
+        delay = Math.max(AdaptiveBatchSizer.percentile(latencies, percentile), minDelay);
+        count = 0;
+    }
+
+    /**
+     * @return the number of hedged reads sent
+     */
+    public long getHedgedCount() {
+        return hedgedCount.get();
+    }
+
+    /**
+     * @return the number of hedged reads which answered first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * Limits the retries of a table to a fraction of its requests, so that the clients do not
+ * multiply the load of a failing server by their retries.
+ * <p>
+ * Each request deposits <code>ratio</code> of a retry and each retry withdraws one, the
+ * balance holds at most the deposits of {@value #MAX_DEPOSIT_REQUESTS} requests. A few
+ * retries per second are allowed besides, so that the tables with little traffic can still
+ * retry.
+ */
+public class RetryBudget {
+
+    static final int          MAX_DEPOSIT_REQUESTS = 1000;
+
+    /**
+     * the balance is in thousandths of a retry
+     */
+    private static final long SCALE                = 1000;
+
+    private final long        deposit;
+
+    private final long        maxBalance;
+
+    private final TokenBucket reserve;
+
+    private final AtomicLong  balance              = new AtomicLong();
+
+    private final AtomicLong  exhaustedCount       = new AtomicLong();
+
+    /**
+     * @param ratio               max retries per request
+     * @param minRetriesPerSecond retries per second allowed regardless of the requests
+     */
+    public RetryBudget(double ratio, long minRetriesPerSecond) {
+        checkArgument(ratio > 0, "ratio is not positive.");
+        checkArgument(minRetriesPerSecond >= 0, "minRetriesPerSecond is negative.");
+        this.deposit = Math.max((long) (ratio * SCALE), 1);
+        this.maxBalance = deposit * MAX_DEPOSIT_REQUESTS;
+        this.reserve = minRetriesPerSecond > 0 ? new TokenBucket(minRetriesPerSecond) : null;
+    }
+
+    public void onRequest() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + deposit, maxBalance)));
+    }
+
+    /**
+     * @return whether a retry is allowed, if so it is taken from the budget
+     */
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                if (reserve != null && reserve.tryAcquire(1)) {
+                    return true;
+                }
+                exhaustedCount.incrementAndGet();
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return the number of retries refused by the budget
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+}
@@ -0,0 +1,56 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+/**
+ * Decides whether and when a failed request is tried again.
+ * <p>
+ * The policy of a table is configured by <code>hbase.htable.retry.policy.class</code>, an
+ * implementation which is <code>Configurable</code> gets the configuration of the table.
+ */
+public interface RetryPolicy {
+
+    enum Action {
+        /**
+         * try the request again
+         */
+        RETRY,
+        /**
+         * refresh the routes of the tables before trying the request again
+         */
+        REFRESH_ROUTE,
+        /**
+         * the request can not succeed by trying it again
+         */
+        FAIL
+    }
+
+    /**
+     * @param failure the failure of the last try
+     * @return what to do with the failed request
+     */
+    Action classify(Throwable failure);
+
+    /**
+     * @param basePause the configured pause in milliseconds
+     * @param tries     the tries made so far
+     * @param lastPause the pause before the last try, 0 if it is the first one
+     * @return milliseconds to wait before the next try
+     */
+    long getPauseTime(long basePause, int tries, long lastPause);
+}
@@ -17,7 +17,9 @@
 
 package com.alipay.oceanbase.hbase.execute;
 
+import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
 import com.alipay.oceanbase.rpc.ObTableClient;
+import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.ObTableAbstractOperationRequest;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.ConnectionUtils;
@@ -25,7 +27,6 @@ import org.apache.hadoop.hbase.client.RetriesExhaustedException;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -37,6 +38,12 @@ public abstract class ServerCallable<T> implements Callable<T> {
     protected final String        tableNameString;
     protected int                 callTimeout;
     protected long                globalStartTime, endTime;
+    /**
+     * the time the call with retries must finish by, 0 means no deadline
+     */
+    protected long                deadline;
+    protected RetryPolicy         retryPolicy;
+    protected RetryBudget         retryBudget;
     protected byte[]              startRow, endRow;
 
     /**
@@ -66,19 +73,77 @@ public abstract class ServerCallable<T> implements Callable<T> {
 
     }
 
+    /**
+     * @param retryPolicy the policy of the retries, null retries every error except the
+     *                    <code>IOException</code>
+     * @param retryBudget the budget the retries are taken from, null if unlimited
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy, RetryBudget retryBudget) {
+        this.retryPolicy = retryPolicy;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Refresh the routes of the tables accessed by this call, before it is tried again on a
+     * route error.
+     */
+    protected void refreshTableEntry() {
+
+    }
+
     public void shouldRetry(Throwable throwable) throws IOException {
-        if (throwable instanceof IOException) {
+        if (retryPolicy != null
+            && retryPolicy.classify(throwable) == RetryPolicy.Action.FAIL) {
+            if (throwable instanceof IOException) {
+                throw (IOException) throwable;
+            }
+            if (throwable instanceof RuntimeException) {
+                throw (RuntimeException) throwable;
+            }
+            throw new IOException(throwable);
+        }
+        if (retryPolicy == null && throwable instanceof IOException) {
             // Do not retry when connection is interrupted
             throw (IOException) throwable;
         }
-        if (this.callTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT)
-            if ((this.endTime - this.globalStartTime > this.callTimeout)) {
-                throw (SocketTimeoutException) new SocketTimeoutException(
-                    "Call to access row '" + Bytes.toString(startRow) + "' to '"
-                            + Bytes.toString(endRow) + "' on table '" + tableNameString
-                            + "' failed on socket timeout exception: " + throwable)
-                    .initCause(throwable);
-            }
+        // the deadline is checked by withRetries before every retry
+    }
+
+    /**
+     * @return milliseconds left before the deadline, -1 if no deadline
+     */
+    public long getRemainingTime() {
+        if (deadline == 0) {
+            return -1;
+        }
+        return Math.max(deadline - System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Pass the time left before the deadline to the request, so that the server gives it
+     * up instead of the caller waiting for it in another thread.
+     *
+     * @param request the request to send in this call
+     * @return the request
+     * @throws OperationTimeoutException if the deadline is passed
+     */
+    protected <R extends ObTableAbstractOperationRequest> R withDeadline(R request)
+                                                                                   throws OperationTimeoutException {
+        long remainingTime = getRemainingTime();
+        if (remainingTime == 0) {
+            throw timeout();
+        }
+        if (remainingTime > 0) {
+            request.setTimeout(remainingTime);
+        }
+        return request;
+    }
+
+    private OperationTimeoutException timeout() {
+        return new OperationTimeoutException("Call to access row '" + Bytes.toString(startRow)
+                                             + "' to '" + Bytes.toString(endRow) + "' on table '"
+                                             + tableNameString + "' exceeds the timeout "
+                                             + callTimeout + "ms");
     }
 
     /**
@@ -91,6 +156,12 @@ public abstract class ServerCallable<T> implements Callable<T> {
     /**
      * Run this instance with retries, timed waits,
      * and refinds of missing regions.
+     * <p>
+     * If the timeout is not the default one, the retries stop at the deadline and each
+     * request is given the time left by {@link #withDeadline}.
+     * <p>
+     * With a retry policy, the errors it fails are not retried, and each retry is taken from
+     * the retry budget.
      *
      * @return an object of type T
      * @throws IOException      if a remote or network exception occurs
@@ -102,7 +173,14 @@ public abstract class ServerCallable<T> implements Callable<T> {
         final int numRetries = conf.getInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER,
             HConstants.DEFAULT_HBASE_CLIENT_RETRIES_NUMBER);
         globalStartTime = System.currentTimeMillis();
+        deadline = callTimeout != HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT ? globalStartTime
+                                                                                      + callTimeout
+            : 0;
         List<RetriesExhaustedException.ThrowableWithExtraContext> exceptions = new ArrayList<RetriesExhaustedException.ThrowableWithExtraContext>();
+        if (retryBudget != null) {
+            retryBudget.onRequest();
+        }
+        long pauseTime = 0;
         for (int tries = 0; tries < numRetries; tries++) {
             try {
                 testConnectWhileIdle();
@@ -115,8 +193,12 @@ public abstract class ServerCallable<T> implements Callable<T> {
                 RetriesExhaustedException.ThrowableWithExtraContext qt = new RetriesExhaustedException.ThrowableWithExtraContext(
                     t, System.currentTimeMillis(), toString());
                 exceptions.add(qt);
-                if (tries == numRetries - 1) {
-                    StringBuilder buffer = new StringBuilder("Failed contacting ");
+                boolean budgetExhausted = tries < numRetries - 1 && retryBudget != null
+                                          && !retryBudget.tryRetry();
+                if (tries == numRetries - 1 || budgetExhausted) {
+                    StringBuilder buffer = new StringBuilder(
+                        budgetExhausted ? "Retry budget exhausted contacting "
+                            : "Failed contacting ");
                     buffer.append(exceptions);
                     buffer.append(" after ");
                     buffer.append(tries + 1);
@@ -127,9 +209,22 @@ public abstract class ServerCallable<T> implements Callable<T> {
                     }
                     throw new RetriesExhaustedException(buffer.toString());
                 }
+                if (retryPolicy != null
+                    && retryPolicy.classify(t) == RetryPolicy.Action.REFRESH_ROUTE) {
+                    refreshTableEntry();
+                }
+            }
+            pauseTime = retryPolicy != null ? retryPolicy.getPauseTime(pause, tries, pauseTime)
+                : ConnectionUtils.getPauseTime(pause, tries);
+            if (deadline != 0) {
+                long remainingTime = getRemainingTime();
+                if (remainingTime <= pauseTime) {
+                    // no time left for another try
+                    throw timeout();
+                }
             }
             try {
-                Thread.sleep(ConnectionUtils.getPauseTime(pause, tries));
+                Thread.sleep(pauseTime);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new IOException("Giving up after tries=" + tries, e);
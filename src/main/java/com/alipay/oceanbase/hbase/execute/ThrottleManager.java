@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.rpc.ObTableClient;
+import com.google.common.base.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one <code>OperationThrottle</code> per table and operation type, and one
+ * <code>RetryBudget</code> per table, among the OHTables using the same
+ * <code>ObTableClient</code>, so that the tables of a pool are limited together.
+ */
+public class ThrottleManager {
+
+    public static final ConcurrentHashMap<ThrottleKey, OperationThrottle> THROTTLE_INSTANCE     = new ConcurrentHashMap<ThrottleKey, OperationThrottle>();
+
+    public static final ConcurrentHashMap<ThrottleKey, RetryBudget>       RETRY_BUDGET_INSTANCE = new ConcurrentHashMap<ThrottleKey, RetryBudget>();
+
+    /**
+     * The limits only take effect when the throttle is created.
+     */
+    public static OperationThrottle getOrCreateThrottle(ObTableClient obTableClient,
+                                                        String tableName,
+                                                        OperationThrottle.Type type,
+                                                        long opsPerSecond, long bytesPerSecond,
+                                                        int maxInFlight, boolean failFast) {
+        ThrottleKey key = new ThrottleKey(obTableClient, tableName, type);
+        OperationThrottle throttle = THROTTLE_INSTANCE.get(key);
+        if (throttle == null) {
+            OperationThrottle tmp = new OperationThrottle(tableName + " "
+                                                          + type.name().toLowerCase(),
+                opsPerSecond, bytesPerSecond, maxInFlight, failFast);
+            throttle = THROTTLE_INSTANCE.putIfAbsent(key, tmp);
+            throttle = throttle == null ? tmp : throttle;
+        }
+        return throttle;
+    }
+
+    /**
+     * The limits only take effect when the budget is created.
+     */
+    public static RetryBudget getOrCreateRetryBudget(ObTableClient obTableClient,
+                                                     String tableName, double ratio,
+                                                     long minRetriesPerSecond) {
+        // a budget is shared by all the operation types
+        ThrottleKey key = new ThrottleKey(obTableClient, tableName, null);
+        RetryBudget budget = RETRY_BUDGET_INSTANCE.get(key);
+        if (budget == null) {
+            RetryBudget tmp = new RetryBudget(ratio, minRetriesPerSecond);
+            budget = RETRY_BUDGET_INSTANCE.putIfAbsent(key, tmp);
+            budget = budget == null ? tmp : budget;
+        }
+        return budget;
+    }
+
+    public static class ThrottleKey {
+        private final ObTableClient          obTableClient;
+        private final String                 tableName;
+        private final OperationThrottle.Type type;
+
+        public ThrottleKey(ObTableClient obTableClient, String tableName,
+                           OperationThrottle.Type type) {
+            this.obTableClient = obTableClient;
+            this.tableName = tableName;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            ThrottleKey that = (ThrottleKey) o;
+            return obTableClient == that.obTableClient && Objects.equal(tableName, that.tableName)
+                   && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(System.identityHashCode(obTableClient), tableName, type);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * A token bucket refilled at a fixed rate per second, holding at most one second of tokens.
+ * <p>
+ * A request for more tokens than the bucket holds is let through once the bucket is full,
+ * the tokens go below zero and the requests after it wait for the debt to be refilled.
+ */
+public class TokenBucket {
+
+    private final double rate;
+
+    private final double capacity;
+
+    private double       tokens;
+
+    private long         lastRefillTime;
+
+    /**
+     * @param rate tokens per second
+     */
+    public TokenBucket(long rate) {
+        checkArgument(rate > 0, "rate is not positive.");
+        this.rate = rate;
+        this.capacity = rate;
+        this.tokens = rate;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Take the tokens, waiting in line behind the previous reservations.
+     *
+     * @param permits the tokens to take
+     * @return the nanoseconds to wait before going on, 0 if the tokens are available now
+     */
+    public synchronized long reserve(long permits) {
+        refill();
+        double required = Math.min(permits, capacity);
+        long waitNanos = tokens >= required ? 0 : (long) ((required - tokens) / rate * 1e9);
+        tokens -= permits;
+        return waitNanos;
+    }
+
+    /**
+     * Take the tokens only if they are available now.
+     *
+     * @param permits the tokens to take
+     * @return whether the tokens are taken
+     */
+    public synchronized boolean tryAcquire(long permits) {
+        refill();
+        if (tokens < Math.min(permits, capacity)) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Put back the tokens taken by a request which is not sent.
+     */
+    public synchronized void refund(long permits) {
+        tokens = Math.min(tokens + permits, capacity);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillTime) / 1e9 * rate);
+        lastRefillTime = now;
+    }
+}
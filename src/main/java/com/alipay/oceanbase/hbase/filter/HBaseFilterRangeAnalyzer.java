@@ -0,0 +1,359 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.filter;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.BinaryPrefixComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.InclusiveStopFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.filter.WritableByteArrayComparable;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Works out the tightest row range of a scan from its start row, stop row and the row
+ * filters in its filter tree, so that the query does not read the rows the filter
+ * would drop anyway.
+ * <p>
+ * <code>PrefixFilter</code>, <code>InclusiveStopFilter</code> and <code>RowFilter</code>
+ * with a binary comparator are understood, ANDed by a MUST_PASS_ALL <code>FilterList</code>
+ * or ORed by a MUST_PASS_ONE one. The row filters of the top level which the range
+ * expresses exactly are not pushed down to the server any more.
+ */
+public class HBaseFilterRangeAnalyzer {
+
+    private final byte[]  startRow;
+
+    private final byte[]  stopRow;
+
+    private final Filter  pushDownFilter;
+
+    private final boolean empty;
+
+    private HBaseFilterRangeAnalyzer(byte[] startRow, byte[] stopRow, Filter pushDownFilter,
+                                     boolean empty) {
+        this.startRow = startRow;
+        this.stopRow = stopRow;
+        this.pushDownFilter = pushDownFilter;
+        this.empty = empty;
+    }
+
+    /**
+     * @param startRow the inclusive start row of the scan, empty if unbounded
+     * @param stopRow  the exclusive stop row of the scan, empty if unbounded
+     * @param filter   the filter of the scan, may be null
+     * @return the narrowed range
+     */
+    public static HBaseFilterRangeAnalyzer analyze(byte[] startRow, byte[] stopRow, Filter filter) {
+        return analyze(startRow, stopRow, filter, false);
+    }
+
+    /**
+     * The range returned is always in ascending order, from its start row (inclusive) to its
+     * stop row (exclusive).
+     *
+     * @param startRow the start row of the scan, empty if unbounded
+     * @param stopRow  the stop row of the scan, empty if unbounded
+     * @param filter   the filter of the scan, may be null
+     * @param reversed whether the scan is reversed, its start row is the inclusive upper bound
+     *                 and its stop row is the exclusive lower bound then
+     * @return the narrowed range
+     */
+    public static HBaseFilterRangeAnalyzer analyze(byte[] startRow, byte[] stopRow, Filter filter,
+                                                   boolean reversed) {
+        Range range;
+        if (reversed) {
+            range = new Range(stopRow == null || stopRow.length == 0 ? stopRow : nextRow(stopRow),
+                startRow == null || startRow.length == 0 ? startRow : nextRow(startRow));
+        } else {
+            range = new Range(startRow, stopRow);
+        }
+        if (filter != null) {
+            range = range.intersect(rangeOf(filter, reversed));
+        }
+
+        Filter pushDownFilter = filter;
+        List<Filter> members;
+        if (filter instanceof FilterList
+            && ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+            members = ((FilterList) filter).getFilters();
+        } else if (filter != null) {
+            members = Collections.singletonList(filter);
+        } else {
+            members = Collections.emptyList();
+        }
+        List<Filter> remains = new ArrayList<Filter>(members.size());
+        for (Filter member : members) {
+            if (!isExact(member)) {
+                remains.add(member);
+            }
+        }
+        if (remains.size() != members.size()) {
+            if (remains.isEmpty()) {
+                pushDownFilter = null;
+            } else if (remains.size() == 1) {
+                pushDownFilter = remains.get(0);
+            } else {
+                pushDownFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL, remains);
+            }
+        }
+
+        if (range.isEmpty()) {
+            // keep a well formed range which covers no row
+            return new HBaseFilterRangeAnalyzer(range.start, range.start, pushDownFilter, true);
+        }
+        return new HBaseFilterRangeAnalyzer(range.start, range.stop, pushDownFilter, false);
+    }
+
+    /**
+     * @return the inclusive start row, empty if unbounded
+     */
+    public byte[] getStartRow() {
+        return startRow;
+    }
+
+    /**
+     * @return the exclusive stop row, empty if unbounded
+     */
+    public byte[] getStopRow() {
+        return stopRow;
+    }
+
+    /**
+     * @return the filter pushed down to the server, null if none
+     */
+    public Filter getPushDownFilter() {
+        return pushDownFilter;
+    }
+
+    /**
+     * @return whether no row can match the scan
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return whether the whole table is covered
+     */
+    public boolean isUnbounded() {
+        return !empty && startRow.length == 0 && stopRow.length == 0;
+    }
+
+    /**
+     * Unknown filters do not narrow the range.
+     *
+     * @param reversed whether the scan goes from the stop of the range down to its start
+     */
+    private static Range rangeOf(Filter filter, boolean reversed) {
+        if (filter instanceof PrefixFilter) {
+            byte[] prefix = ((PrefixFilter) filter).getPrefix();
+            if (prefix == null || prefix.length == 0) {
+                return Range.ALL;
+            }
+            return new Range(prefix, nextPrefix(prefix));
+        }
+        if (filter instanceof InclusiveStopFilter) {
+            byte[] stop = ((InclusiveStopFilter) filter).getStopRowKey();
+            if (stop == null) {
+                return Range.ALL;
+            }
+            return new Range(HConstants.EMPTY_START_ROW, nextRow(stop));
+        }
+        if (filter instanceof RowFilter) {
+            return rangeOf((RowFilter) filter);
+        }
+        if (filter instanceof WhileMatchFilter) {
+            // the scan ends at the first row the wrapped filter drops, so only the side the
+            // scan goes to is narrowed, a row before the range still ends the scan
+            Range range = rangeOf(((WhileMatchFilter) filter).getFilter(), reversed);
+            if (range.isEmpty()) {
+                return range;
+            }
+            return reversed ? new Range(range.start, HConstants.EMPTY_END_ROW) : new Range(
+                HConstants.EMPTY_START_ROW, range.stop);
+        }
+        if (filter instanceof FilterList) {
+            FilterList filterList = (FilterList) filter;
+            if (filterList.getFilters().isEmpty()) {
+                return Range.ALL;
+            }
+            if (filterList.getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+                Range range = Range.ALL;
+                for (Filter f : filterList.getFilters()) {
+                    range = range.intersect(rangeOf(f, reversed));
+                }
+                return range;
+            } else {
+                Range range = null;
+                for (Filter f : filterList.getFilters()) {
+                    Range r = rangeOf(f, reversed);
+                    if (r.isEmpty()) {
+                        continue;
+                    }
+                    range = range == null ? r : range.span(r);
+                }
+                return range == null ? Range.NONE : range;
+            }
+        }
+        return Range.ALL;
+    }
+
+    private static Range rangeOf(RowFilter filter) {
+        WritableByteArrayComparable comparator = filter.getComparator();
+        if (comparator == null || comparator.getValue() == null) {
+            return Range.ALL;
+        }
+        byte[] value = comparator.getValue();
+        if (comparator instanceof BinaryPrefixComparator) {
+            if (filter.getOperator() == CompareFilter.CompareOp.EQUAL && value.length > 0) {
+                return new Range(value, nextPrefix(value));
+            }
+            return Range.ALL;
+        }
+        if (!(comparator instanceof BinaryComparator)) {
+            return Range.ALL;
+        }
+        switch (filter.getOperator()) {
+            case EQUAL:
+                return new Range(value, nextRow(value));
+            case LESS:
+                return new Range(HConstants.EMPTY_START_ROW, value);
+            case LESS_OR_EQUAL:
+                return new Range(HConstants.EMPTY_START_ROW, nextRow(value));
+            case GREATER:
+                return new Range(nextRow(value), HConstants.EMPTY_END_ROW);
+            case GREATER_OR_EQUAL:
+                return new Range(value, HConstants.EMPTY_END_ROW);
+            default:
+                return Range.ALL;
+        }
+    }
+
+    /**
+     * Whether the rows the filter passes are exactly the ones of its range.
+     */
+    private static boolean isExact(Filter filter) {
+        if (filter instanceof PrefixFilter) {
+            return ((PrefixFilter) filter).getPrefix() != null;
+        }
+        if (filter instanceof InclusiveStopFilter) {
+            return ((InclusiveStopFilter) filter).getStopRowKey() != null;
+        }
+        if (filter instanceof RowFilter) {
+            RowFilter rowFilter = (RowFilter) filter;
+            WritableByteArrayComparable comparator = rowFilter.getComparator();
+            if (comparator == null || comparator.getValue() == null) {
+                return false;
+            }
+            if (comparator instanceof BinaryPrefixComparator) {
+                return rowFilter.getOperator() == CompareFilter.CompareOp.EQUAL
+                       && comparator.getValue().length > 0;
+            }
+            return comparator instanceof BinaryComparator
+                   && rowFilter.getOperator() != CompareFilter.CompareOp.NOT_EQUAL
+                   && rowFilter.getOperator() != CompareFilter.CompareOp.NO_OP;
+        }
+        return false;
+    }
+
+    /**
+     * @return the smallest row greater than the given row
+     */
+    static byte[] nextRow(byte[] row) {
+        return Bytes.add(row, new byte[] { 0 });
+    }
+
+    /**
+     * @return the smallest row greater than every row starting with the prefix, empty if
+     * there is none
+     */
+    static byte[] nextPrefix(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] next = new byte[i + 1];
+                System.arraycopy(prefix, 0, next, 0, i + 1);
+                next[i]++;
+                return next;
+            }
+        }
+        return HConstants.EMPTY_END_ROW;
+    }
+
+    /**
+     * The rows in [start, stop), an empty stop means unbounded.
+     */
+    private static class Range {
+
+        static final Range ALL  = new Range(HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+
+        static final Range NONE = new Range(new byte[] { 0 }, new byte[] { 0 });
+
+        final byte[]       start;
+
+        final byte[]       stop;
+
+        Range(byte[] start, byte[] stop) {
+            this.start = start == null ? HConstants.EMPTY_START_ROW : start;
+            this.stop = stop == null ? HConstants.EMPTY_END_ROW : stop;
+        }
+
+        boolean isEmpty() {
+            return stop.length != 0 && Bytes.compareTo(start, stop) >= 0;
+        }
+
+        Range intersect(Range other) {
+            if (isEmpty() || other.isEmpty()) {
+                return NONE;
+            }
+            byte[] newStart = Bytes.compareTo(start, other.start) >= 0 ? start : other.start;
+            byte[] newStop;
+            if (stop.length == 0) {
+                newStop = other.stop;
+            } else if (other.stop.length == 0) {
+                newStop = stop;
+            } else {
+                newStop = Bytes.compareTo(stop, other.stop) <= 0 ? stop : other.stop;
+            }
+            return new Range(newStart, newStop);
+        }
+
+        /**
+         * @return the smallest range covering both ranges
+         */
+        Range span(Range other) {
+            byte[] newStart = Bytes.compareTo(start, other.start) <= 0 ? start : other.start;
+            byte[] newStop;
+            if (stop.length == 0 || other.stop.length == 0) {
+                newStop = HConstants.EMPTY_END_ROW;
+            } else {
+                newStop = Bytes.compareTo(stop, other.stop) >= 0 ? stop : other.stop;
+            }
+            return new Range(newStart, newStop);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.filter;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.ColumnCountGetFilter;
+import org.apache.hadoop.hbase.filter.FamilyFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.InclusiveStopFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SkipFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits the filter of a Get or Scan into the part pushed down to the server and the
+ * <code>KeyOnlyFilter</code> / <code>FirstKeyOnlyFilter</code> applied by the client,
+ * and decides whether the query only needs to select K, Q and T.
+ * <p>
+ * The key only filters are recognized alone or as members of a MUST_PASS_ALL
+ * <code>FilterList</code>. A <code>FirstKeyOnlyFilter</code> keeps the first cell which
+ * reaches it, so it is only taken out of a list if the members after it filter whole
+ * rows, otherwise it is pushed down as it is. A <code>KeyOnlyFilter</code> passes every
+ * cell and only transforms the ones the whole list passes, so it can be taken out from
+ * anywhere. The values are only left out of the query if the pushed down filter does not
+ * read them.
+ */
+public class KeyOnlyProjection {
+
+    private final Filter  pushDownFilter;
+
+    private final boolean stripValues;
+
+    private final boolean lenAsVal;
+
+    private final boolean firstKeyOnly;
+
+    private final boolean keysOnly;
+
+    private KeyOnlyProjection(Filter pushDownFilter, boolean stripValues, boolean lenAsVal,
+                              boolean firstKeyOnly, boolean keysOnly) {
+        this.pushDownFilter = pushDownFilter;
+        this.stripValues = stripValues;
+        this.lenAsVal = lenAsVal;
+        this.firstKeyOnly = firstKeyOnly;
+        this.keysOnly = keysOnly;
+    }
+
+    /**
+     * @param filter          the filter of the Scan, may be null
+     * @param keysOnlyRequest whether the caller only needs the keys of the cells
+     * @return the projection
+     */
+    public static KeyOnlyProjection of(Filter filter, boolean keysOnlyRequest) {
+        return of(filter, keysOnlyRequest, false);
+    }
+
+    /**
+     * @param filter          the filter of the Get or Scan, may be null
+     * @param keysOnlyRequest whether the caller only needs the keys of the cells
+     * @param get             whether the filter is of a Get, then a
+     *                        <code>FirstKeyOnlyFilter</code> taken out is replaced by a
+     *                        <code>ColumnCountGetFilter</code> of one column, which ends a
+     *                        scan after its first row so it does not fit a Scan
+     * @return the projection
+     */
+    public static KeyOnlyProjection of(Filter filter, boolean keysOnlyRequest, boolean get) {
+        boolean keyOnlyFilter = false;
+        boolean lenAsVal = false;
+        boolean firstKeyOnly = false;
+        Filter pushDownFilter = filter;
+
+        List<Filter> members;
+        if (filter instanceof FilterList
+            && ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+            members = ((FilterList) filter).getFilters();
+        } else if (filter != null) {
+            members = Collections.singletonList(filter);
+        } else {
+            members = Collections.emptyList();
+        }
+        // whether the members after each one only filter whole rows
+        boolean[] rowLevelAfter = new boolean[members.size()];
+        boolean rowLevel = true;
+        for (int i = members.size() - 1; i >= 0; i--) {
+            rowLevelAfter[i] = rowLevel;
+            Filter member = members.get(i);
+            rowLevel &= member instanceof KeyOnlyFilter || member instanceof FirstKeyOnlyFilter
+                        || isRowLevel(member);
+        }
+        List<Filter> remains = new ArrayList<Filter>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            Filter member = members.get(i);
+            if (member instanceof KeyOnlyFilter) {
+                keyOnlyFilter = true;
+                lenAsVal |= isLenAsVal((KeyOnlyFilter) member);
+            } else if (member instanceof FirstKeyOnlyFilter && rowLevelAfter[i]) {
+                firstKeyOnly = true;
+            } else {
+                remains.add(member);
+            }
+        }
+        if (firstKeyOnly && get) {
+            // the server keeps the first cell which passes the other members, as the
+            // FirstKeyOnlyFilter would
+            remains.add(new ColumnCountGetFilter(1));
+        }
+        if (remains.size() != members.size() || firstKeyOnly) {
+            if (remains.isEmpty()) {
+                pushDownFilter = null;
+            } else if (remains.size() == 1) {
+                pushDownFilter = remains.get(0);
+            } else {
+                pushDownFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL, remains);
+            }
+        }
+
+        boolean stripValues = keysOnlyRequest || keyOnlyFilter;
+        boolean keysOnly = stripValues && !lenAsVal
+                           && (pushDownFilter == null || !readsValue(pushDownFilter));
+        return new KeyOnlyProjection(pushDownFilter, stripValues, lenAsVal, firstKeyOnly, keysOnly);
+    }
+
+    /**
+     * @return the filter pushed down to the server, null if none
+     */
+    public Filter getPushDownFilter() {
+        return pushDownFilter;
+    }
+
+    /**
+     * @return whether the query only needs to select K, Q and T
+     */
+    public boolean isKeysOnly() {
+        return keysOnly;
+    }
+
+    /**
+     * @return whether the key values of a row are returned as they are
+     */
+    public boolean isIdentity() {
+        return !stripValues && !firstKeyOnly;
+    }
+
+    /**
+     * Apply the client side part to the key values of one row.
+     *
+     * @param keyValues the key values of one row in order
+     * @return the key values to return
+     */
+    public List<KeyValue> apply(List<KeyValue> keyValues) {
+        if (isIdentity() || keyValues.isEmpty()) {
+            return keyValues;
+        }
+        List<KeyValue> source = firstKeyOnly ? keyValues.subList(0, 1) : keyValues;
+        if (!stripValues) {
+            return new ArrayList<KeyValue>(source);
+        }
+        List<KeyValue> ret = new ArrayList<KeyValue>(source.size());
+        for (KeyValue kv : source) {
+            byte[] value = lenAsVal ? Bytes.toBytes(kv.getValueLength())
+                : HConstants.EMPTY_BYTE_ARRAY;
+            ret.add(new KeyValue(kv.getRow(), kv.getFamily(), kv.getQualifier(), kv.getTimestamp(),
+                KeyValue.Type.codeToType(kv.getType()), value));
+        }
+        return ret;
+    }
+
+    /**
+     * Whether the filter drops or keeps whole rows by their row keys only, unknown filters
+     * are assumed not to.
+     */
+    private static boolean isRowLevel(Filter filter) {
+        if (filter instanceof RowFilter || filter instanceof PrefixFilter
+            || filter instanceof InclusiveStopFilter || filter instanceof PageFilter) {
+            return true;
+        }
+        if (filter instanceof WhileMatchFilter) {
+            return isRowLevel(((WhileMatchFilter) filter).getFilter());
+        }
+        if (filter instanceof FilterList) {
+            for (Filter f : ((FilterList) filter).getFilters()) {
+                if (!isRowLevel(f)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unknown filters are assumed to read the values.
+     */
+    private static boolean readsValue(Filter filter) {
+        if (filter instanceof RowFilter || filter instanceof QualifierFilter
+            || filter instanceof FamilyFilter || filter instanceof PrefixFilter
+            || filter instanceof PageFilter || filter instanceof ColumnCountGetFilter) {
+            return false;
+        }
+        if (filter instanceof SkipFilter) {
+            return readsValue(((SkipFilter) filter).getFilter());
+        }
+        if (filter instanceof WhileMatchFilter) {
+            return readsValue(((WhileMatchFilter) filter).getFilter());
+        }
+        if (filter instanceof FilterList) {
+            for (Filter f : ((FilterList) filter).getFilters()) {
+                if (readsValue(f)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * KeyOnlyFilter of hbase 0.94 has no getter of lenAsVal, it is the only field written.
+     */
+    private static boolean isLenAsVal(KeyOnlyFilter filter) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            filter.write(out);
+            out.flush();
+            byte[] serialized = bytes.toByteArray();
+            return serialized.length > 0 && serialized[0] != 0;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid filter: " + filter, e);
+        }
+    }
+}
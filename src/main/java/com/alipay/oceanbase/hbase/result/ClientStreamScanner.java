@@ -17,9 +17,12 @@
 
 package com.alipay.oceanbase.hbase.result;
 
+import com.alipay.oceanbase.hbase.execute.OperationThrottle;
+import com.alipay.oceanbase.hbase.filter.KeyOnlyProjection;
 import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
 import com.alipay.oceanbase.rpc.protocol.payload.impl.ObObj;
 import com.alipay.oceanbase.rpc.stream.ObTableClientQueryStreamResult;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.AbstractClientScanner;
 import org.apache.hadoop.hbase.client.Result;
@@ -28,14 +31,22 @@ import org.slf4j.Logger;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.LCD;
 
 public class ClientStreamScanner extends AbstractClientScanner {
 
-    private static final Logger                  logger     = TableHBaseLoggerFactory
-                                                                .getLogger(ClientStreamScanner.class);
+    private static final Logger                  logger           = TableHBaseLoggerFactory
+                                                                      .getLogger(ClientStreamScanner.class);
 
     private final ObTableClientQueryStreamResult streamResult;
 
@@ -43,19 +54,238 @@ public class ClientStreamScanner extends AbstractClientScanner {
 
     private final byte[]                         family;
 
-    private boolean                              closed     = false;
+    /**
+     * client side part of the filter, null if the results are returned as they are
+     */
+    private final KeyOnlyProjection              projection;
 
-    private boolean                              streamNext = true;
+    /**
+     * whether the stream is in descending order of the primary key
+     */
+    private final boolean                        reversed;
+
+    private volatile boolean                     closed           = false;
+
+    private boolean                              streamNext       = true;
+
+    /**
+     * marks the end of the stream in the prefetch queue
+     */
+    private static final Object                  END_OF_STREAM    = new Object();
+
+    private static final int                     PREFETCH_NEW     = 0;
+
+    private static final int                     PREFETCH_RUNNING = 1;
+
+    private static final int                     PREFETCH_DONE    = 2;
+
+    /**
+     * decoded results or the failure fetched ahead by the prefetch task, null if prefetch is disabled
+     */
+    private BlockingQueue<Object>                prefetchQueue;
+
+    private final AtomicInteger                  prefetchState    = new AtomicInteger(PREFETCH_NEW);
+
+    private final AtomicBoolean                  streamClosed     = new AtomicBoolean(false);
+
+    private boolean                              prefetchFinished = false;
+
+    /**
+     * max bytes of the results fetched ahead, not positive means unlimited
+     */
+    private final long                           maxPrefetchSize;
+
+    /**
+     * bytes of the results in the prefetch queue, guarded by prefetchSizeLock
+     */
+    private long                                 prefetchSize     = 0;
+
+    private final Object                         prefetchSizeLock = new Object();
+
+    /**
+     * read throttle charged with the bytes of the results, null if unlimited
+     */
+    private final OperationThrottle              throttle;
 
     public ClientStreamScanner(ObTableClientQueryStreamResult streamResult, String tableName,
                                byte[] family) {
+        this(streamResult, tableName, family, null, false, null, 0, -1, null);
+    }
+
+    /**
+     * Creates a scanner which fetches at most <code>prefetchDepth</code> results ahead of
+     * the caller in background, so the next server packet is loaded while the caller is
+     * processing the current one. Prefetch is disabled if the depth is not positive or the
+     * executor rejects the prefetch task.
+     * <p>
+     * The prefetch task stops fetching ahead once the results in the queue reach
+     * <code>maxPrefetchSize</code> bytes, but at least one result is always fetched ahead.
+     *
+     * @param streamResult    stream result of the query
+     * @param tableName       table name
+     * @param family          family of the query
+     * @param projection      client side part of the filter, may be null
+     * @param reversed        whether the query is in reverse scan order
+     * @param executor        executor to run the prefetch task
+     * @param prefetchDepth   max number of results fetched ahead
+     * @param maxPrefetchSize max bytes of the results fetched ahead, not positive means unlimited
+     * @param throttle        read throttle charged with the bytes of the results, may be null
+     */
+    public ClientStreamScanner(ObTableClientQueryStreamResult streamResult, String tableName,
+                               byte[] family, KeyOnlyProjection projection, boolean reversed,
+                               ExecutorService executor, int prefetchDepth, long maxPrefetchSize,
+                               OperationThrottle throttle) {
+        this.maxPrefetchSize = maxPrefetchSize;
+        this.throttle = throttle;
         this.streamResult = streamResult;
         this.tableName = tableName;
         this.family = family;
+        this.projection = projection == null || projection.isIdentity() ? null : projection;
+        this.reversed = reversed;
+        if (executor != null && prefetchDepth > 0) {
+            this.prefetchQueue = new LinkedBlockingQueue<Object>(prefetchDepth);
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        prefetch();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("table {} family {} prefetch task is rejected, scan without prefetch",
+                    tableName, Bytes.toString(family));
+                this.prefetchQueue = null;
+                this.prefetchState.set(PREFETCH_DONE);
+            }
+        }
     }
 
     @Override
     public Result next() throws IOException {
+        if (prefetchQueue == null) {
+            return fetchNext();
+        }
+
+        Object next;
+        try {
+            checkStatus();
+            if (prefetchFinished) {
+                return null;
+            }
+            while ((next = prefetchQueue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                checkStatus();
+                if (prefetchState.compareAndSet(PREFETCH_NEW, PREFETCH_DONE)) {
+                    // the prefetch task is still queued behind busy threads, it may never
+                    // start, so the caller reads the stream itself from now on
+                    logger.warn(
+                        "table {} family {} prefetch task is not started, scan without prefetch",
+                        tableName, Bytes.toString(family));
+                    prefetchQueue = null;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("get table %s stream next result interrupted",
+                streamResult.getTableName()), e);
+        } catch (Exception e) {
+            logger.error(LCD.convert("01-00000"), streamResult.getTableName(), e);
+            throw new IOException(String.format("get table %s stream next result error ",
+                streamResult.getTableName()), e);
+        }
+        if (next == null) {
+            return fetchNext();
+        }
+        if (next == END_OF_STREAM) {
+            prefetchFinished = true;
+            return null;
+        }
+        if (next instanceof Throwable) {
+            prefetchFinished = true;
+            if (next instanceof IOException) {
+                throw (IOException) next;
+            }
+            throw new IOException(String.format("get table %s stream next result error ",
+                streamResult.getTableName()), (Throwable) next);
+        }
+        releasePrefetchSize(resultSize((Result) next));
+        return (Result) next;
+    }
+
+    /**
+     * Load results into the prefetch queue until the stream ends, fails or the scanner is closed.
+     */
+    private void prefetch() {
+        if (!prefetchState.compareAndSet(PREFETCH_NEW, PREFETCH_RUNNING)) {
+            return;
+        }
+        try {
+            Object next;
+            do {
+                try {
+                    next = fetchNext();
+                    if (next == null) {
+                        next = END_OF_STREAM;
+                    }
+                } catch (Exception e) {
+                    next = e;
+                }
+                if (next instanceof Result && !acquirePrefetchSize(resultSize((Result) next))) {
+                    break;
+                }
+                while (!closed && !prefetchQueue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+                    // wait for the caller to consume
+                }
+            } while (!closed && next instanceof Result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            prefetchQueue.clear();
+            prefetchQueue.offer(e);
+        } finally {
+            prefetchState.set(PREFETCH_DONE);
+            if (closed) {
+                closeStream();
+            }
+        }
+    }
+
+    /**
+     * Wait until the result fits in the prefetch size limit.
+     *
+     * @return false if the scanner is closed while waiting
+     */
+    private boolean acquirePrefetchSize(long size) throws InterruptedException {
+        if (maxPrefetchSize <= 0) {
+            return true;
+        }
+        synchronized (prefetchSizeLock) {
+            while (!closed && prefetchSize > 0 && prefetchSize + size > maxPrefetchSize) {
+                prefetchSizeLock.wait(100);
+            }
+            prefetchSize += size;
+            return !closed;
+        }
+    }
+
+    private void releasePrefetchSize(long size) {
+        if (maxPrefetchSize <= 0) {
+            return;
+        }
+        synchronized (prefetchSizeLock) {
+            prefetchSize -= size;
+            prefetchSizeLock.notifyAll();
+        }
+    }
+
+    private static long resultSize(Result result) {
+        long size = 0;
+        for (KeyValue kv : result.raw()) {
+            size += kv.getLength();
+        }
+        return size;
+    }
+
+    private Result fetchNext() throws IOException {
         try {
             checkStatus();
 
@@ -76,7 +306,8 @@ public class ClientStreamScanner extends AbstractClientScanner {
             byte[] sk = (byte[]) startRow.get(0).getValue();
             byte[] sq = (byte[]) startRow.get(1).getValue();
             long st = (Long) startRow.get(2).getValue();
-            byte[] sv = (byte[]) startRow.get(3).getValue();
+            byte[] sv = startRow.size() > 3 ? (byte[]) startRow.get(3).getValue()
+                : HConstants.EMPTY_BYTE_ARRAY;
 
             KeyValue startKeyValue = new KeyValue(sk, family, sq, st, sv);
             List<KeyValue> keyValues = new ArrayList<KeyValue>();
@@ -87,14 +318,24 @@ public class ClientStreamScanner extends AbstractClientScanner {
                 byte[] k = (byte[]) row.get(0).getValue();
                 byte[] q = (byte[]) row.get(1).getValue();
                 long t = (Long) row.get(2).getValue();
-                byte[] v = (byte[]) row.get(3).getValue();
+                byte[] v = row.size() > 3 ? (byte[]) row.get(3).getValue()
+                    : HConstants.EMPTY_BYTE_ARRAY;
                 if (Arrays.equals(sk, k)) {// when rowKey is equal to the previous rowKey ,merge the result into the same result
                     keyValues.add(new KeyValue(k, family, q, t, v));
                 } else {
                     break;
                 }
             }
-            return new Result(keyValues);
+            if (reversed) {
+                // the cells of a row come in reverse too, restore the order of a forward scan
+                Collections.reverse(keyValues);
+            }
+            Result result = new Result(projection == null ? keyValues
+                : projection.apply(keyValues));
+            if (throttle != null) {
+                throttle.charge(resultSize(result));
+            }
+            return result;
         } catch (Exception e) {
             logger.error(LCD.convert("01-00000"), streamResult.getTableName(), e);
             throw new IOException(String.format("get table %s stream next result error ",
@@ -125,8 +366,22 @@ public class ClientStreamScanner extends AbstractClientScanner {
 
     @Override
     public void close() {
+        closed = true;
+        // the running prefetch task closes the stream once it stops touching it
+        if (prefetchState.compareAndSet(PREFETCH_NEW, PREFETCH_DONE)
+            || prefetchState.get() == PREFETCH_DONE) {
+            closeStream();
+        }
+        if (prefetchQueue != null) {
+            prefetchQueue.clear();
+        }
+    }
+
+    private void closeStream() {
+        if (!streamClosed.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            closed = true;
             streamResult.close();
         } catch (Exception e) {
             logger.error(LCD.convert("01-00001"), streamResult.getTableName(), e);
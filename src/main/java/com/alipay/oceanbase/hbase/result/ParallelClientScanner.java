@@ -0,0 +1,420 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.result;
+
+import com.alipay.oceanbase.hbase.execute.ExecuteLanes;
+import com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.LCD;
+
+/**
+ * Scan several sources in parallel, e.g. the partitions of a table.
+ * <p>
+ * In ordered mode all the sources are opened in parallel and merged by row key,
+ * results of the same row from different sources are merged into one <code>Result</code>.
+ * The sources should fetch ahead by themselves so the merge does not wait for one
+ * source after another.
+ * <p>
+ * In unordered mode the sources are drained by at most <code>parallelism</code> workers
+ * into a bounded queue and results are returned in the order they arrive. Sources of
+ * a worker which can not be started are drained by the caller thread instead.
+ */
+public class ParallelClientScanner extends AbstractClientScanner {
+
+    private static final Logger              logger        = TableHBaseLoggerFactory
+                                                               .getLogger(ParallelClientScanner.class);
+
+    /**
+     * marks the end of a worker in the result queue
+     */
+    private static final Object              END_OF_WORKER = new Object();
+
+    private final String                     tableName;
+
+    private final boolean                    ordered;
+
+    private volatile boolean                 closed        = false;
+
+    /**
+     * sources opened by the ordered mode
+     */
+    private final List<ResultScanner>        scanners      = new ArrayList<ResultScanner>();
+
+    /**
+     * head result of each ordered source
+     */
+    private final PriorityQueue<ScannerHead> heads;
+
+    /**
+     * results or failures produced by the unordered workers
+     */
+    private final BlockingQueue<Object>      resultQueue;
+
+    private int                              runningWorkers;
+
+    /**
+     * unordered sources left to the caller thread as their worker could not be started
+     */
+    private final LinkedList<Callable<ResultScanner>> callerSources = new LinkedList<Callable<ResultScanner>>();
+
+    /**
+     * unordered source being drained by the caller thread
+     */
+    private ResultScanner                    callerScanner;
+
+    /**
+     * @param tableName   table name
+     * @param sources     openers of the sources to scan
+     * @param executor    executor to open and drain the sources
+     * @param ordered     whether return results in row key order
+     * @param parallelism max number of sources drained at the same time in unordered mode
+     * @param queueDepth  max number of results buffered in unordered mode
+     * @throws IOException if open the sources failed in ordered mode
+     */
+    public ParallelClientScanner(String tableName, List<Callable<ResultScanner>> sources,
+                                 ExecutorService executor, boolean ordered, int parallelism,
+                                 int queueDepth) throws IOException {
+        this(tableName, sources, executor, ordered, false, parallelism, queueDepth);
+    }
+
+    /**
+     * @param tableName   table name
+     * @param sources     openers of the sources to scan
+     * @param executor    executor to open and drain the sources
+     * @param ordered     whether return results in row key order
+     * @param reversed    whether the row key order is descending, the sources must be reversed too
+     * @param parallelism max number of sources drained at the same time in unordered mode
+     * @param queueDepth  max number of results buffered in unordered mode
+     * @throws IOException if open the sources failed in ordered mode
+     */
+    public ParallelClientScanner(String tableName, List<Callable<ResultScanner>> sources,
+                                 ExecutorService executor, boolean ordered, final boolean reversed,
+                                 int parallelism, int queueDepth) throws IOException {
+        this.tableName = tableName;
+        this.ordered = ordered;
+        if (ordered) {
+            this.heads = new PriorityQueue<ScannerHead>(Math.max(sources.size(), 1),
+                new Comparator<ScannerHead>() {
+                    @Override
+                    public int compare(ScannerHead o1, ScannerHead o2) {
+                        int cmp = Bytes.compareTo(o1.head.getRow(), o2.head.getRow());
+                        return reversed ? -cmp : cmp;
+                    }
+                });
+            this.resultQueue = null;
+            openOrdered(sources, executor);
+        } else {
+            this.heads = null;
+            this.resultQueue = new LinkedBlockingQueue<Object>(Math.max(queueDepth, 1));
+            startUnordered(sources, executor, Math.max(parallelism, 1));
+        }
+    }
+
+    private void openOrdered(List<Callable<ResultScanner>> sources, ExecutorService executor)
+                                                                                             throws IOException {
+        List<Future<ResultScanner>> futures = new ArrayList<Future<ResultScanner>>(sources.size());
+        for (Callable<ResultScanner> source : sources) {
+            futures.add(submit(executor, source));
+        }
+        IOException failure = null;
+        for (Future<ResultScanner> future : futures) {
+            try {
+                scanners.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("open scanners of table " + tableName + " interrupted", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("open scanners of table " + tableName + " error.",
+                            e.getCause());
+                }
+            }
+        }
+        if (failure == null) {
+            try {
+                for (ResultScanner scanner : scanners) {
+                    advance(scanner);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            close();
+            throw failure;
+        }
+    }
+
+    private void startUnordered(List<Callable<ResultScanner>> sources, ExecutorService executor,
+                                int parallelism) {
+        int workers = Math.min(parallelism, sources.size());
+        for (int i = 0; i < workers; i++) {
+            final List<Callable<ResultScanner>> assigned = new ArrayList<Callable<ResultScanner>>();
+            for (int j = i; j < sources.size(); j += workers) {
+                assigned.add(sources.get(j));
+            }
+            if (!ExecuteLanes.inLane(executor)) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain(assigned);
+                        }
+                    });
+                    runningWorkers++;
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    // drain them in the caller thread below
+                }
+            }
+            callerSources.addAll(assigned);
+        }
+    }
+
+    /**
+     * Drain the assigned sources one after another into the result queue.
+     */
+    private void drain(List<Callable<ResultScanner>> assigned) {
+        try {
+            for (Callable<ResultScanner> source : assigned) {
+                if (closed) {
+                    return;
+                }
+                ResultScanner scanner = source.call();
+                try {
+                    Result result;
+                    while (!closed && (result = scanner.next()) != null) {
+                        offer(result);
+                    }
+                } finally {
+                    scanner.close();
+                }
+            }
+        } catch (Exception e) {
+            offer(e);
+        } finally {
+            offer(END_OF_WORKER);
+        }
+    }
+
+    private void offer(Object o) {
+        try {
+            while (!closed && !resultQueue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+                // wait for the caller to consume
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        if (!ExecuteLanes.inLane(executor)) {
+            try {
+                return executor.submit(task);
+            } catch (RejectedExecutionException e) {
+                // run it in the caller thread below
+            }
+        }
+        FutureTask<T> futureTask = new FutureTask<T>(task);
+        futureTask.run();
+        return futureTask;
+    }
+
+    private void advance(ResultScanner scanner) throws IOException {
+        Result next = scanner.next();
+        if (next != null) {
+            heads.add(new ScannerHead(next, scanner));
+        }
+    }
+
+    @Override
+    public Result next() throws IOException {
+        checkStatus();
+        return ordered ? nextOrdered() : nextUnordered();
+    }
+
+    private Result nextOrdered() throws IOException {
+        ScannerHead first = heads.poll();
+        if (first == null) {
+            return null;
+        }
+        List<ScannerHead> sameRow = null;
+        while (!heads.isEmpty() && Bytes.equals(heads.peek().head.getRow(), first.head.getRow())) {
+            if (sameRow == null) {
+                sameRow = new ArrayList<ScannerHead>();
+            }
+            sameRow.add(heads.poll());
+        }
+        Result result = first.head;
+        advance(first.scanner);
+        if (sameRow != null) {
+            List<KeyValue> keyValues = new ArrayList<KeyValue>(Arrays.asList(result.raw()));
+            for (ScannerHead head : sameRow) {
+                keyValues.addAll(Arrays.asList(head.head.raw()));
+                advance(head.scanner);
+            }
+            Collections.sort(keyValues, KeyValue.COMPARATOR);
+            result = new Result(keyValues);
+        }
+        return result;
+    }
+
+    private Result nextUnordered() throws IOException {
+        while (runningWorkers > 0 || callerScanner != null || !callerSources.isEmpty()) {
+            Object next = resultQueue.poll();
+            if (next == null) {
+                if (callerScanner != null || !callerSources.isEmpty()) {
+                    // nothing from the workers yet, make progress on the caller's own sources
+                    Result result = nextFromCaller();
+                    if (result != null) {
+                        return result;
+                    }
+                    continue;
+                }
+                try {
+                    while ((next = resultQueue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                        checkStatus();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("scan table " + tableName + " interrupted", e);
+                }
+            }
+            if (next == END_OF_WORKER) {
+                runningWorkers--;
+            } else if (next instanceof Throwable) {
+                runningWorkers = 0;
+                close();
+                if (next instanceof IOException) {
+                    throw (IOException) next;
+                }
+                throw new IOException("scan table " + tableName + " error.", (Throwable) next);
+            } else {
+                return (Result) next;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the next result of the sources left to the caller thread.
+     *
+     * @return null if the current source is exhausted
+     */
+    private Result nextFromCaller() throws IOException {
+        try {
+            if (callerScanner == null) {
+                callerScanner = callerSources.removeFirst().call();
+            }
+            Result result = callerScanner.next();
+            if (result == null) {
+                ResultScanner scanner = callerScanner;
+                callerScanner = null;
+                scanner.close();
+            }
+            return result;
+        } catch (Exception e) {
+            runningWorkers = 0;
+            close();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("scan table " + tableName + " error.", e);
+        }
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+        ArrayList<Result> resultSets = new ArrayList<Result>(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            Result next = next();
+            if (next != null) {
+                resultSets.add(next);
+            } else {
+                break;
+            }
+        }
+        return resultSets.toArray(new Result[resultSets.size()]);
+    }
+
+    private void checkStatus() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("table " + tableName + " scanner is  closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // the unordered workers close their own scanners once they see the flag
+        for (ResultScanner scanner : scanners) {
+            try {
+                scanner.close();
+            } catch (Exception e) {
+                logger.error(LCD.convert("01-00001"), tableName, e);
+            }
+        }
+        if (callerScanner != null) {
+            try {
+                callerScanner.close();
+            } catch (Exception e) {
+                logger.error(LCD.convert("01-00001"), tableName, e);
+            }
+            callerScanner = null;
+        }
+        callerSources.clear();
+        if (resultQueue != null) {
+            resultQueue.clear();
+        }
+    }
+
+    private static class ScannerHead {
+        private final Result        head;
+        private final ResultScanner scanner;
+
+        ScannerHead(Result head, ResultScanner scanner) {
+            this.head = head;
+            this.scanner = scanner;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.util;
+
+import java.util.Arrays;
+
+import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
+
+/**
+ * Sizes the batches of a write buffer toward a target p99 flush latency.
+ * <p>
+ * The latencies of the flushes are collected in windows. At the end of each window the
+ * limits are halved if the p99 latency exceeds the target, or grown by one step if it is
+ * below the target and some flush of the window was filled up to half of the limits, so
+ * that small flushes do not grow the limits without telling anything about the cluster.
+ * The limits stay within their min and max.
+ */
+public class AdaptiveBatchSizer {
+
+    private final long   targetLatency;
+
+    private final long   minSize;
+
+    private final long   maxSize;
+
+    private final int    minOps;
+
+    private final int    maxOps;
+
+    private final long[] latencies;
+
+    private int          count;
+
+    private boolean      filled;
+
+    private long         batchSize;
+
+    private int          batchOps;
+
+    /**
+     * @param targetLatency the target p99 flush latency in milliseconds
+     * @param minSize       the min bytes of a batch, also the step it grows by
+     * @param maxSize       the max bytes of a batch
+     * @param minOps        the min operations of a batch, also the step it grows by
+     * @param maxOps        the max operations of a batch
+     * @param initialSize   the bytes of a batch to start with
+     * @param window        number of flushes the p99 latency is taken over
+     */
+    public AdaptiveBatchSizer(long targetLatency, long minSize, long maxSize, int minOps,
+                              int maxOps, long initialSize, int window) {
+        checkArgument(targetLatency > 0, "target latency is not positive.");
+        checkArgument(minSize > 0 && minSize <= maxSize, "illegal batch size range [" + minSize
+                                                         + ", " + maxSize + "].");
+        checkArgument(minOps > 0 && minOps <= maxOps, "illegal batch ops range [" + minOps + ", "
+                                                      + maxOps + "].");
+        checkArgument(window > 0, "window is not positive.");
+        this.targetLatency = targetLatency;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.minOps = minOps;
+        this.maxOps = maxOps;
+        this.latencies = new long[window];
+        this.batchSize = Math.min(Math.max(initialSize, minSize), maxSize);
+        this.batchOps = maxOps;
+    }
+
+    /**
+     * @return the bytes a batch is flushed at
+     */
+    public synchronized long getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of operations a batch is flushed at
+     */
+    public synchronized int getBatchOps() {
+        return batchOps;
+    }
+
+    /**
+     * Record a flush.
+     *
+     * @param latency the latency of the flush in milliseconds
+     * @param size    the bytes flushed
+     * @param ops     the operations flushed
+     */
+    public synchronized void record(long latency, long size, int ops) {
+        latencies[count++] = latency;
+        filled |= size * 2 >= batchSize || ops * 2 >= batchOps;
+        if (count < latencies.length) {
+            return;
+        }
+
+        long p99 = percentile(latencies, 0.99);
+        if (p99 > targetLatency) {
+            batchSize = Math.max(batchSize / 2, minSize);
+            batchOps = Math.max(batchOps / 2, minOps);
+        } else if (filled) {
+            batchSize = Math.min(batchSize + minSize, maxSize);
+            batchOps = Math.min(batchOps + minOps, maxOps);
+        }
+        count = 0;
+        filled = false;
+    }
+
+    public static long percentile(long[] values, double percentile) {
+        long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
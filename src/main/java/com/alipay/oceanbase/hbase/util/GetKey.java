@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.util;
+
+import com.alipay.oceanbase.hbase.filter.HBaseFilterUtils;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+
+/**
+ * Identity of a <code>Get</code>: two Gets with equal keys read the same cells.
+ * The key consists of the row, the families with their qualifiers, the filter,
+ * the time range and the max versions.
+ */
+public class GetKey {
+
+    private final byte[]        row;
+
+    /**
+     * family followed by its qualifiers, an empty list of qualifiers means the whole family
+     */
+    private final List<byte[]>  columns = new ArrayList<byte[]>();
+
+    /**
+     * number of qualifiers of each family
+     */
+    private final List<Integer> columnCounts;
+
+    private final String        filter;
+
+    private final long          minStamp;
+
+    private final long          maxStamp;
+
+    private final int           maxVersions;
+
+    private final int           hashCode;
+
+    /**
+     * @param get the Get
+     * @throws IllegalArgumentException if the filter of the Get is not supported
+     */
+    public GetKey(Get get) {
+        this.row = get.getRow();
+        this.columnCounts = new ArrayList<Integer>(get.getFamilyMap().size());
+        for (Map.Entry<byte[], NavigableSet<byte[]>> entry : get.getFamilyMap().entrySet()) {
+            columns.add(entry.getKey());
+            int count = 0;
+            if (entry.getValue() != null) {
+                for (byte[] qualifier : entry.getValue()) {
+                    columns.add(qualifier == null ? new byte[0] : qualifier);
+                    count++;
+                }
+            }
+            columnCounts.add(count);
+        }
+        this.filter = get.getFilter() == null ? null : HBaseFilterUtils.toParseableString(get
+            .getFilter());
+        this.minStamp = get.getTimeRange().getMin();
+        this.maxStamp = get.getTimeRange().getMax();
+        this.maxVersions = get.getMaxVersions();
+
+        int h = Bytes.hashCode(row);
+        for (byte[] column : columns) {
+            h = 31 * h + Bytes.hashCode(column);
+        }
+        for (Integer count : columnCounts) {
+            h = 31 * h + count;
+        }
+        h = 31 * h + (filter == null ? 0 : filter.hashCode());
+        h = 31 * h + (int) (minStamp ^ (minStamp >>> 32));
+        h = 31 * h + (int) (maxStamp ^ (maxStamp >>> 32));
+        h = 31 * h + maxVersions;
+        this.hashCode = h;
+    }
+
+    public byte[] getRow() {
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GetKey)) {
+            return false;
+        }
+        GetKey other = (GetKey) o;
+        if (hashCode != other.hashCode || minStamp != other.minStamp || maxStamp != other.maxStamp
+            || maxVersions != other.maxVersions || !Bytes.equals(row, other.row)
+            || !columnCounts.equals(other.columnCounts)) {
+            return false;
+        }
+        if (filter == null ? other.filter != null : !filter.equals(other.filter)) {
+            return false;
+        }
+        if (columns.size() != other.columns.size()) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (!Bytes.equals(columns.get(i), other.columns.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "GetKey{row=" + Bytes.toStringBinary(row) + ", filter=" + filter + ", timeRange=["
+               + minStamp + "," + maxStamp + "), maxVersions=" + maxVersions + "}";
+    }
+}
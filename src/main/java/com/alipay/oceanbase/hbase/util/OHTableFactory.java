@@ -19,6 +19,7 @@ package com.alipay.oceanbase.hbase.util;
 
 import com.alipay.oceanbase.hbase.OHTable;
 import com.alipay.oceanbase.hbase.OHTablePool;
+import com.alipay.oceanbase.hbase.execute.ExecuteLanes;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.HTableFactory;
 import org.apache.hadoop.hbase.client.HTableInterface;
@@ -26,7 +27,6 @@ import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 
 import static com.alipay.oceanbase.hbase.constants.OHConstants.*;
 import static com.alipay.oceanbase.hbase.util.Preconditions.checkArgument;
@@ -35,7 +35,7 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 /**
  * Factory for creating HTable instances.
  * <p>
- * All created HTable will share the same thread pool.
+ * All created HTable will share the same execute lanes.
  * Also support setting table attributes for the created table.
  * e.g. auto flush, write buffer size.
  * <p>
@@ -43,17 +43,17 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
  * For example, see {@link OHTablePool#setAutoFlush(String, boolean)}
  */
 public class OHTableFactory extends HTableFactory {
-    private final ExecutorService threadPool;
-    private final OHTablePool     tablePool;
-    private final int             maxThreads;
-    private final long            keepAliveTime;
+    private final ExecuteLanes lanes;
+    private final OHTablePool  tablePool;
+    private final int          maxThreads;
+    private final long         keepAliveTime;
 
     public OHTableFactory(Configuration conf, OHTablePool tablePool) {
         this.maxThreads = conf.getInt(HBASE_HTABLE_PRIVATE_THREADS_MAX,
             DEFAULT_HBASE_HTABLE_PRIVATE_THREADS_MAX);
         this.keepAliveTime = conf.getLong(HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME,
             DEFAULT_HBASE_HTABLE_THREAD_KEEP_ALIVE_TIME);
-        this.threadPool = OHTable.createDefaultThreadPoolExecutor(1, maxThreads, keepAliveTime);
+        this.lanes = ExecuteLanes.create(conf);
         this.tablePool = tablePool;
     }
 
@@ -63,7 +63,7 @@ public class OHTableFactory extends HTableFactory {
             String tableNameStr = Bytes.toString(tableName);
 
             OHTable ht = new OHTable(adjustConfiguration(copyConfiguration(config), tableNameStr),
-                tableName, this.threadPool);
+                tableName, this.lanes);
 
             if (tablePool.getTableAttribute(tableNameStr, HBASE_HTABLE_POOL_AUTO_FLUSH) != null) {
                 ht.setAutoFlush(tablePool.getAutoFlush(tableNameStr),
@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.util;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drops the buffered cells of one family whose effect a later cell of the same batch
+ * overwrites anyway:
+ * <ul>
+ * <li>a Put of a cell followed by another Put of the same row, qualifier and timestamp</li>
+ * <li>a Put followed by a Delete which covers it</li>
+ * </ul>
+ * Deletes are always kept. A Put without timestamp gets the server time when it is
+ * executed, so it is covered by a later Delete without timestamp, and only the last of
+ * several Puts without timestamp of the same cell is kept.
+ */
+public class WriteCoalescer {
+
+    /**
+     * @param keyValues the cells of one family in the order they are applied
+     * @return for each cell the index of the kept cell which supersedes it, its own index if
+     * the cell itself is kept
+     */
+    public static int[] coalesce(List<KeyValue> keyValues) {
+        int[] supersededBy = new int[keyValues.size()];
+        Map<CellKey, Integer> laterPuts = new HashMap<CellKey, Integer>();
+        Map<ByteBuffer, List<Integer>> laterDeletes = new HashMap<ByteBuffer, List<Integer>>();
+        long now = System.currentTimeMillis();
+
+        for (int i = keyValues.size() - 1; i >= 0; i--) {
+            KeyValue kv = keyValues.get(i);
+            supersededBy[i] = i;
+            ByteBuffer row = ByteBuffer.wrap(kv.getRow());
+            if (KeyValue.Type.codeToType(kv.getType()) != KeyValue.Type.Put) {
+                List<Integer> deletes = laterDeletes.get(row);
+                if (deletes == null) {
+                    deletes = new ArrayList<Integer>();
+                    laterDeletes.put(row, deletes);
+                }
+                deletes.add(i);
+                continue;
+            }
+
+            CellKey key = new CellKey(kv.getRow(), kv.getQualifier(), kv.getTimestamp());
+            Integer laterPut = laterPuts.get(key);
+            if (laterPut != null) {
+                // the later put is superseded itself if a delete covers it
+                supersededBy[i] = supersededBy[laterPut];
+                continue;
+            }
+            laterPuts.put(key, i);
+            List<Integer> deletes = laterDeletes.get(row);
+            if (deletes != null) {
+                for (Integer delete : deletes) {
+                    if (covers(keyValues.get(delete), kv, now)) {
+                        supersededBy[i] = delete;
+                        break;
+                    }
+                }
+            }
+        }
+        return supersededBy;
+    }
+
+    /**
+     * @return the number of cells kept
+     */
+    public static int keptCount(int[] supersededBy) {
+        int count = 0;
+        for (int i = 0; i < supersededBy.length; i++) {
+            if (supersededBy[i] == i) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean covers(KeyValue delete, KeyValue put, long now) {
+        KeyValue.Type type = KeyValue.Type.codeToType(delete.getType());
+        long deleteTs = delete.getTimestamp();
+        long putTs = put.getTimestamp();
+        switch (type) {
+            case DeleteFamily:
+                return coversTimestamp(deleteTs, putTs, now);
+            case DeleteColumn:
+                return Bytes.equals(delete.getQualifier(), put.getQualifier())
+                       && coversTimestamp(deleteTs, putTs, now);
+            case Delete:
+                // the latest version is only known by the server
+                return deleteTs != HConstants.LATEST_TIMESTAMP && deleteTs == putTs
+                       && Bytes.equals(delete.getQualifier(), put.getQualifier());
+            default:
+                return false;
+        }
+    }
+
+    private static boolean coversTimestamp(long deleteTs, long putTs, long now) {
+        if (deleteTs == HConstants.LATEST_TIMESTAMP) {
+            // both get the server time, the put is executed first
+            return putTs == HConstants.LATEST_TIMESTAMP || putTs <= now;
+        }
+        return putTs != HConstants.LATEST_TIMESTAMP && putTs <= deleteTs;
+    }
+
+    private static final class CellKey {
+
+        private final byte[] row;
+
+        private final byte[] qualifier;
+
+        private final long   timestamp;
+
+        private final int    hashCode;
+
+        CellKey(byte[] row, byte[] qualifier, long timestamp) {
+            this.row = row;
+            this.qualifier = qualifier;
+            this.timestamp = timestamp;
+            int h = Bytes.hashCode(row);
+            h = 31 * h + Bytes.hashCode(qualifier);
+            this.hashCode = 31 * h + (int) (timestamp ^ (timestamp >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CellKey)) {
+                return false;
+            }
+            CellKey other = (CellKey) o;
+            return timestamp == other.timestamp && Bytes.equals(row, other.row)
+                   && Bytes.equals(qualifier, other.qualifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
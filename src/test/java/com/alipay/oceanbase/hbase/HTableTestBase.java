@@ -18,6 +18,9 @@
 package com.alipay.oceanbase.hbase;
 
 import com.alipay.oceanbase.hbase.exception.FeatureNotSupportedException;
+import com.alipay.oceanbase.hbase.result.ClientStreamScanner;
+import com.alipay.oceanbase.rpc.protocol.payload.impl.ObObj;
+import com.alipay.oceanbase.rpc.stream.ObTableClientQueryStreamResult;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.filter.*;
@@ -32,6 +35,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.hadoop.hbase.filter.FilterList.Operator.MUST_PASS_ONE;
 import static org.apache.hadoop.hbase.util.Bytes.toBytes;
@@ -248,6 +257,529 @@ public abstract class HTableTestBase {
         hTable.put(puts);
     }
 
+    @Test
+    public void testMultiGet() throws IOException {
+        String column1 = "column1";
+        String column2 = "column2";
+        String value = "value";
+        String family = "family1";
+        List<Put> puts = new ArrayList<Put>();
+        for (int i = 0; i < 10; i++) {
+            Put put = new Put(toBytes("multiGetKey" + i));
+            put.add(toBytes(family), toBytes(column1), toBytes(value + i));
+            put.add(toBytes(family), toBytes(column2), toBytes(value + i));
+            puts.add(put);
+        }
+        hTable.put(puts);
+
+        List<Get> gets = new ArrayList<Get>();
+        for (int i = 9; i >= 0; i--) {
+            Get get = new Get(toBytes("multiGetKey" + i));
+            get.addColumn(toBytes(family), toBytes(column1));
+            gets.add(get);
+        }
+        Get get = new Get(toBytes("multiGetKey3"));
+        get.addFamily(toBytes(family));
+        gets.add(get);
+        gets.add(new Get(toBytes("multiGetKeyNotExist")).addFamily(toBytes(family)));
+
+        Result[] results = hTable.get(gets);
+        Assert.assertEquals(gets.size(), results.length);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(1, results[i].raw().length);
+            Assert.assertEquals("multiGetKey" + (9 - i), Bytes.toString(results[i].getRow()));
+            Assert.assertEquals(value + (9 - i), Bytes.toString(results[i].raw()[0].getValue()));
+        }
+        Assert.assertEquals(2, results[10].raw().length);
+        Assert.assertTrue(results[11].isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            Delete delete = new Delete(toBytes("multiGetKey" + i));
+            delete.deleteFamily(toBytes(family));
+            hTable.delete(delete);
+        }
+    }
+
+    @Test
+    public void testMultiDelete() throws IOException {
+        String column = "column1";
+        String family = "family1";
+        List<Put> puts = new ArrayList<Put>();
+        for (int i = 0; i < 10; i++) {
+            Put put = new Put(toBytes("multiDeleteKey" + i));
+            put.add(toBytes(family), toBytes(column), toBytes("value" + i));
+            puts.add(put);
+        }
+        hTable.put(puts);
+
+        List<Delete> deletes = new ArrayList<Delete>();
+        for (int i = 0; i < 10; i += 2) {
+            Delete delete = new Delete(toBytes("multiDeleteKey" + i));
+            delete.deleteFamily(toBytes(family));
+            deletes.add(delete);
+        }
+        Delete illegal = new Delete(toBytes("multiDeleteKey1"));
+        illegal.deleteFamily(toBytes(family));
+        illegal.deleteFamily(toBytes("family2"));
+        deletes.add(illegal);
+        try {
+            hTable.delete(deletes);
+            fail();
+        } catch (RetriesExhaustedWithDetailsException e) {
+            Assert.assertEquals(1, e.getNumExceptions());
+            Assert.assertTrue(e.getCause(0) instanceof FeatureNotSupportedException);
+        }
+        Assert.assertEquals(1, deletes.size());
+        Assert.assertSame(illegal, deletes.get(0));
+
+        for (int i = 0; i < 10; i++) {
+            Result r = hTable
+                .get(new Get(toBytes("multiDeleteKey" + i)).addFamily(toBytes(family)));
+            Assert.assertEquals(i % 2 == 0, r.isEmpty());
+        }
+
+        deletes.clear();
+        for (int i = 1; i < 10; i += 2) {
+            Delete delete = new Delete(toBytes("multiDeleteKey" + i));
+            delete.deleteFamily(toBytes(family));
+            deletes.add(delete);
+        }
+        hTable.delete(deletes);
+        for (int i = 0; i < 10; i++) {
+            Result r = hTable
+                .get(new Get(toBytes("multiDeleteKey" + i)).addFamily(toBytes(family)));
+            Assert.assertTrue(r.isEmpty());
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        String column = "column1";
+        String family = "family1";
+        Put put = new Put(toBytes("batchKey1"));
+        put.add(toBytes(family), toBytes(column), toBytes("value1"));
+        hTable.put(put);
+
+        List<Row> actions = new ArrayList<Row>();
+        put = new Put(toBytes("batchKey2"));
+        put.add(toBytes(family), toBytes(column), toBytes("value2"));
+        actions.add(put);
+        actions.add(new Get(toBytes("batchKey1")).addFamily(toBytes(family)));
+        Delete delete = new Delete(toBytes("batchKey3"));
+        delete.deleteFamily(toBytes(family));
+        actions.add(delete);
+        Increment increment = new Increment(toBytes("batchKey4"));
+        increment.addColumn(toBytes(family), toBytes(column), 1);
+        actions.add(increment);
+        actions.add(new RowMutations(toBytes("batchKey5")));
+
+        Object[] results = new Object[actions.size()];
+        try {
+            hTable.batch(actions, results);
+            fail();
+        } catch (RetriesExhaustedWithDetailsException e) {
+            Assert.assertEquals(1, e.getNumExceptions());
+            Assert.assertTrue(e.getCause(0) instanceof FeatureNotSupportedException);
+        }
+        Assert.assertTrue(((Result) results[0]).isEmpty());
+        Assert.assertEquals("value1",
+            Bytes.toString(((Result) results[1]).getValue(toBytes(family), toBytes(column))));
+        Assert.assertTrue(results[2] instanceof Result);
+        Assert.assertTrue(results[3] instanceof Result);
+        Assert.assertTrue(results[4] instanceof FeatureNotSupportedException);
+
+        Result r = hTable.get(new Get(toBytes("batchKey2")).addFamily(toBytes(family)));
+        Assert.assertEquals("value2", Bytes.toString(r.getValue(toBytes(family), toBytes(column))));
+
+        actions.clear();
+        for (int i = 1; i <= 4; i++) {
+            delete = new Delete(toBytes("batchKey" + i));
+            delete.deleteFamily(toBytes(family));
+            actions.add(delete);
+        }
+        Assert.assertEquals(4, hTable.batch(actions).length);
+    }
+
+    @Test
+    public void testKeyOnly() throws IOException {
+        String family = "family1";
+        String key = "keyOnlyKey";
+        Put put = new Put(toBytes(key));
+        put.add(toBytes(family), toBytes("column1"), toBytes("value1"));
+        put.add(toBytes(family), toBytes("column2"), toBytes("value22"));
+        hTable.put(put);
+
+        Assert.assertTrue(hTable.exists(new Get(toBytes(key)).addFamily(toBytes(family))));
+        Assert.assertFalse(hTable.exists(new Get(toBytes("keyOnlyKeyNotExist"))
+            .addFamily(toBytes(family))));
+
+        Get get = new Get(toBytes(key));
+        get.addFamily(toBytes(family));
+        get.setFilter(new KeyOnlyFilter());
+        Result result = hTable.get(get);
+        Assert.assertEquals(2, result.raw().length);
+        for (KeyValue kv : result.raw()) {
+            Assert.assertEquals(0, kv.getValueLength());
+        }
+
+        get.setFilter(new KeyOnlyFilter(true));
+        result = hTable.get(get);
+        Assert.assertEquals(6, Bytes.toInt(result.getValue(toBytes(family), toBytes("column1"))));
+        Assert.assertEquals(7, Bytes.toInt(result.getValue(toBytes(family), toBytes("column2"))));
+
+        get.setFilter(new FirstKeyOnlyFilter());
+        result = hTable.get(get);
+        Assert.assertEquals(1, result.raw().length);
+        Assert.assertEquals("value1", Bytes.toString(result.raw()[0].getValue()));
+
+        Scan scan = new Scan(toBytes(key), toBytes(key + "~"));
+        scan.addFamily(toBytes(family));
+        scan.setAttribute("hbase.htable.scanner.keys.only", Bytes.toBytes(true));
+        ResultScanner scanner = hTable.getScanner(scan);
+        result = scanner.next();
+        Assert.assertEquals(2, result.raw().length);
+        Assert.assertEquals(0, result.raw()[0].getValueLength());
+        Assert.assertNull(scanner.next());
+        scanner.close();
+
+        Delete delete = new Delete(toBytes(key));
+        delete.deleteFamily(toBytes(family));
+        hTable.delete(delete);
+    }
+
+    @Test
+    public void testReverseScan() throws IOException {
+        String family = "family1";
+        for (int i = 0; i < 10; i++) {
+            Put put = new Put(toBytes("reverseKey" + i));
+            put.add(toBytes(family), toBytes("column1"), toBytes("value" + i));
+            put.add(toBytes(family), toBytes("column2"), toBytes("value" + i));
+            hTable.put(put);
+        }
+
+        // from reverseKey8 (inclusive) down to reverseKey2 (exclusive)
+        Scan scan = new Scan(toBytes("reverseKey8"), toBytes("reverseKey2"));
+        scan.addFamily(toBytes(family));
+        scan.setAttribute("hbase.htable.scanner.reversed", Bytes.toBytes(true));
+        ResultScanner scanner = hTable.getScanner(scan);
+        for (int i = 8; i > 2; i--) {
+            Result result = scanner.next();
+            Assert.assertEquals("reverseKey" + i, Bytes.toString(result.getRow()));
+            Assert.assertEquals(2, result.raw().length);
+            Assert.assertEquals("column1", Bytes.toString(result.raw()[0].getQualifier()));
+            Assert.assertEquals("value" + i,
+                Bytes.toString(result.getValue(toBytes(family), toBytes("column2"))));
+        }
+        Assert.assertNull(scanner.next());
+        scanner.close();
+
+        // latest N rows of a prefix
+        scan = new Scan();
+        scan.addFamily(toBytes(family));
+        scan.setFilter(new PrefixFilter(toBytes("reverseKey")));
+        scan.setAttribute("hbase.htable.scanner.reversed", Bytes.toBytes(true));
+        scanner = hTable.getScanner(scan);
+        Result[] results = scanner.next(3);
+        Assert.assertEquals(3, results.length);
+        Assert.assertEquals("reverseKey9", Bytes.toString(results[0].getRow()));
+        Assert.assertEquals("reverseKey7", Bytes.toString(results[2].getRow()));
+        scanner.close();
+
+        for (int i = 0; i < 10; i++) {
+            Delete delete = new Delete(toBytes("reverseKey" + i));
+            delete.deleteFamily(toBytes(family));
+            hTable.delete(delete);
+        }
+    }
+
+    @Test
+    public void testScanCaching() throws IOException {
+        String family = "family1";
+        for (int i = 0; i < 10; i++) {
+            Put put = new Put(toBytes("cachingKey" + i));
+            for (int j = 0; j < 10; j++) {
+                put.add(toBytes(family), toBytes("column" + j), new byte[1024]);
+            }
+            hTable.put(put);
+        }
+
+        Scan scan = new Scan(toBytes("cachingKey"), toBytes("cachingKey~"));
+        scan.addFamily(toBytes(family));
+        scan.setCaching(3);
+        scan.setAttribute("hbase.htable.scanner.max.result.size", Bytes.toBytes(4096L));
+        scan.setAttribute("hbase.htable.scanner.prefetch.depth", Bytes.toBytes(4));
+        ResultScanner scanner = hTable.getScanner(scan);
+        int count = 0;
+        for (Result result : scanner) {
+            Assert.assertEquals("cachingKey" + count, Bytes.toString(result.getRow()));
+            Assert.assertEquals(10, result.raw().length);
+            count++;
+        }
+        Assert.assertEquals(10, count);
+        scanner.close();
+
+        // the caching is turned into cells as the scan selects its qualifiers
+        scan = new Scan(toBytes("cachingKey"), toBytes("cachingKey~"));
+        scan.addColumn(toBytes(family), toBytes("column1"));
+        scan.addColumn(toBytes(family), toBytes("column2"));
+        scan.setCaching(3);
+        scanner = hTable.getScanner(scan);
+        count = 0;
+        for (Result result : scanner) {
+            Assert.assertEquals("cachingKey" + count, Bytes.toString(result.getRow()));
+            Assert.assertEquals(2, result.raw().length);
+            count++;
+        }
+        Assert.assertEquals(10, count);
+        scanner.close();
+
+        for (int i = 0; i < 10; i++) {
+            Delete delete = new Delete(toBytes("cachingKey" + i));
+            delete.deleteFamily(toBytes(family));
+            hTable.delete(delete);
+        }
+    }
+
+    @Test
+    public void testScanPrefetch() throws IOException {
+        String family = "family1";
+        for (int i = 0; i < 20; i++) {
+            Put put = new Put(toBytes("prefetchKey" + (char) ('a' + i)));
+            for (int j = 0; j < 3; j++) {
+                put.add(toBytes(family), toBytes("column" + j), toBytes("value" + i + "_" + j));
+            }
+            hTable.put(put);
+        }
+
+        // the results are the same with prefetch on and off
+        List<List<String>> scanned = new ArrayList<List<String>>();
+        for (int depth : new int[] { 0, 4 }) {
+            Scan scan = new Scan(toBytes("prefetchKey"), toBytes("prefetchKey~"));
+            scan.addFamily(toBytes(family));
+            scan.setCaching(2);
+            scan.setAttribute("hbase.htable.scanner.prefetch.depth", Bytes.toBytes(depth));
+            ResultScanner scanner = hTable.getScanner(scan);
+            List<String> cells = new ArrayList<String>();
+            for (Result result : scanner) {
+                for (KeyValue kv : result.raw()) {
+                    cells.add(Bytes.toString(kv.getRow()) + "/" + Bytes.toString(kv.getQualifier())
+                              + "/" + Bytes.toString(kv.getValue()));
+                }
+            }
+            scanner.close();
+            scanned.add(cells);
+        }
+        Assert.assertEquals(60, scanned.get(0).size());
+        Assert.assertEquals(scanned.get(0), scanned.get(1));
+
+        for (int i = 0; i < 20; i++) {
+            Delete delete = new Delete(toBytes("prefetchKey" + (char) ('a' + i)));
+            delete.deleteFamily(toBytes(family));
+            hTable.delete(delete);
+        }
+    }
+
+    @Test
+    public void testScanPrefetchClose() throws Exception {
+        ExecutorService scanLane = Executors.newSingleThreadExecutor();
+        try {
+            FakeStreamResult stream = new FakeStreamResult(-1);
+            ClientStreamScanner scanner = new ClientStreamScanner(stream, "test",
+                toBytes("family1"), null, false, scanLane, 2, -1, null);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals("row" + i, Bytes.toString(scanner.next().getRow()));
+            }
+            scanner.close();
+
+            // the prefetch task stops and gives the lane thread back
+            Future<Boolean> next = scanLane.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return true;
+                }
+            });
+            Assert.assertTrue(next.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(stream.closed);
+            try {
+                scanner.next();
+                fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            scanLane.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScanPrefetchError() throws Exception {
+        ExecutorService scanLane = Executors.newSingleThreadExecutor();
+        try {
+            ClientStreamScanner scanner = new ClientStreamScanner(new FakeStreamResult(3),
+                "test", toBytes("family1"), null, false, scanLane, 2, -1, null);
+            // the scanner reads one row ahead, so the third row fails
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals("row" + i, Bytes.toString(scanner.next().getRow()));
+            }
+            try {
+                scanner.next();
+                fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("stream next result error"));
+            }
+            scanner.close();
+        } finally {
+            scanLane.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScanPrefetchNotStarted() throws Exception {
+        // the only lane thread is busy, the prefetch task waits in the queue
+        ExecutorService scanLane = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            scanLane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            FakeStreamResult stream = new FakeStreamResult(-1);
+            ClientStreamScanner scanner = new ClientStreamScanner(stream, "test",
+                toBytes("family1"), null, false, scanLane, 2, -1, null);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals("row" + i, Bytes.toString(scanner.next().getRow()));
+            }
+            release.countDown();
+            Assert.assertEquals("row5", Bytes.toString(scanner.next().getRow()));
+            scanner.close();
+            Assert.assertTrue(stream.closed);
+        } finally {
+            release.countDown();
+            scanLane.shutdownNow();
+        }
+    }
+
+    /**
+     * A stream of one cell per row, which fails on reading the row after index
+     * <code>failAfter - 1</code>, or never ends if negative.
+     */
+    private static class FakeStreamResult extends ObTableClientQueryStreamResult {
+        private final int        failAfter;
+
+        private int              rowIndex = -1;
+
+        private volatile boolean closed   = false;
+
+        FakeStreamResult(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public boolean next() {
+            if (failAfter >= 0 && rowIndex + 1 >= failAfter) {
+                throw new IllegalStateException("server is down");
+            }
+            rowIndex++;
+            return true;
+        }
+
+        @Override
+        public List<ObObj> getRow() {
+            return Arrays.asList(ObObj.getInstance(toBytes("row" + rowIndex)),
+                ObObj.getInstance(toBytes("column")), ObObj.getInstance(1L),
+                ObObj.getInstance(toBytes("value")));
+        }
+
+        @Override
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        @Override
+        public String getTableName() {
+            return "test";
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testMultiFamilyRead() throws IOException {
+        String family1 = "family1";
+        String family2 = "family2";
+        for (int i = 0; i < 5; i++) {
+            Put put = new Put(toBytes("multiFamilyKey" + i));
+            put.add(toBytes(family1), toBytes("column"), toBytes("value1_" + i));
+            hTable.put(put);
+            if (i % 2 == 0) {
+                put = new Put(toBytes("multiFamilyKey" + i));
+                put.add(toBytes(family2), toBytes("column"), toBytes("value2_" + i));
+                hTable.put(put);
+            }
+        }
+
+        Get get = new Get(toBytes("multiFamilyKey0"));
+        get.addFamily(toBytes(family1));
+        get.addFamily(toBytes(family2));
+        Result result = hTable.get(get);
+        Assert.assertEquals(2, result.raw().length);
+        Assert.assertEquals("value1_0",
+            Bytes.toString(result.getValue(toBytes(family1), toBytes("column"))));
+        Assert.assertEquals("value2_0",
+            Bytes.toString(result.getValue(toBytes(family2), toBytes("column"))));
+        Assert.assertTrue(hTable.exists(get));
+
+        // the family2 group comes first, the cells of the second Get are still in order
+        List<Get> gets = new ArrayList<Get>();
+        gets.add(new Get(toBytes("multiFamilyKey2")).addFamily(toBytes(family2)));
+        gets.add(new Get(toBytes("multiFamilyKey0")).addFamily(toBytes(family1))
+            .addFamily(toBytes(family2)));
+        Result[] results = hTable.get(gets);
+        Assert.assertEquals("value2_2",
+            Bytes.toString(results[0].getValue(toBytes(family2), toBytes("column"))));
+        KeyValue[] kvs = results[1].raw();
+        Assert.assertEquals(2, kvs.length);
+        Assert.assertEquals(family1, Bytes.toString(kvs[0].getFamily()));
+        Assert.assertEquals(family2, Bytes.toString(kvs[1].getFamily()));
+        Assert.assertEquals("value1_0",
+            Bytes.toString(results[1].getValue(toBytes(family1), toBytes("column"))));
+        Assert.assertEquals("value2_0",
+            Bytes.toString(results[1].getValue(toBytes(family2), toBytes("column"))));
+
+        Scan scan = new Scan(toBytes("multiFamilyKey"), toBytes("multiFamilyKey~"));
+        scan.addFamily(toBytes(family1));
+        scan.addFamily(toBytes(family2));
+        ResultScanner scanner = hTable.getScanner(scan);
+        int count = 0;
+        for (Result r : scanner) {
+            Assert.assertEquals("multiFamilyKey" + count, Bytes.toString(r.getRow()));
+            Assert.assertEquals(count % 2 == 0 ? 2 : 1, r.raw().length);
+            Assert.assertEquals("value1_" + count,
+                Bytes.toString(r.getValue(toBytes(family1), toBytes("column"))));
+            count++;
+        }
+        Assert.assertEquals(5, count);
+        scanner.close();
+
+        for (int i = 0; i < 5; i++) {
+            Delete delete = new Delete(toBytes("multiFamilyKey" + i));
+            delete.deleteFamily(toBytes(family1));
+            hTable.delete(delete);
+            delete = new Delete(toBytes("multiFamilyKey" + i));
+            delete.deleteFamily(toBytes(family2));
+            hTable.delete(delete);
+        }
+    }
+
     @Test
     public void testGetFilter() throws IOException {
         String key1 = "getKey1";
@@ -17,21 +17,38 @@
 
 package com.alipay.oceanbase.hbase;
 
+import com.alipay.oceanbase.hbase.cache.RowCache;
+import com.alipay.oceanbase.hbase.execute.OperationThrottle;
+import com.alipay.oceanbase.hbase.execute.ReadHedger;
 import com.alipay.oceanbase.rpc.ObTableClient;
 import com.alipay.oceanbase.rpc.exception.ObTableNotExistException;
 import com.alipay.sofa.common.thread.SofaThreadPoolExecutor;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alipay.oceanbase.hbase.util.TableHBaseLoggerFactory.TABLE_HBASE_LOGGER_SPACE;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -94,4 +111,350 @@ public class OHTableTest extends HTableTestBase {
 
     }
 
+    @Test
+    public void testBufferedMutator() throws Exception {
+        String family = "family1";
+        final AtomicInteger failed = new AtomicInteger();
+        OHBufferedMutator mutator = new OHBufferedMutator((OHTable) hTable,
+            new OHBufferedMutator.ExceptionListener() {
+                @Override
+                public void onException(RetriesExhaustedWithDetailsException exception,
+                                        OHBufferedMutator mutator) {
+                    failed.addAndGet(exception.getNumExceptions());
+                }
+            });
+        for (int i = 0; i < 1000; i++) {
+            Put put = new Put(toBytes("mutatorKey" + i));
+            put.add(toBytes(family), toBytes("column"), toBytes("value" + i));
+            mutator.mutate(put);
+        }
+        mutator.flush();
+        assertEquals(0, failed.get());
+
+        for (int i = 0; i < 1000; i += 100) {
+            Result result = hTable.get(new Get(toBytes("mutatorKey" + i))
+                .addFamily(toBytes(family)));
+            assertEquals("value" + i,
+                Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Delete delete = new Delete(toBytes("mutatorKey" + i));
+            delete.deleteFamily(toBytes(family));
+            mutator.mutate(delete);
+        }
+        mutator.close();
+        assertEquals(0, failed.get());
+        assertTrue(hTable.get(new Get(toBytes("mutatorKey0")).addFamily(toBytes(family))).isEmpty());
+    }
+
+    @Test
+    public void testBufferedMutatorOrder() throws Exception {
+        String family = "family1";
+        // every mutation is flushed by itself, and the flushes run at the same time
+        ((OHTable) hTable).setWriteBufferSize(1);
+        OHBufferedMutator mutator = new OHBufferedMutator((OHTable) hTable);
+        for (int i = 0; i < 100; i++) {
+            Put put = new Put(toBytes("mutatorOrderKey" + i));
+            put.add(toBytes(family), toBytes("column"), toBytes("value1"));
+            mutator.mutate(put);
+            Delete delete = new Delete(toBytes("mutatorOrderKey" + i));
+            delete.deleteFamily(toBytes(family));
+            mutator.mutate(delete);
+            if (i % 2 == 0) {
+                put = new Put(toBytes("mutatorOrderKey" + i));
+                put.add(toBytes(family), toBytes("column"), toBytes("value2"));
+                mutator.mutate(put);
+            }
+        }
+        mutator.close();
+
+        for (int i = 0; i < 100; i++) {
+            Result result = hTable.get(new Get(toBytes("mutatorOrderKey" + i))
+                .addFamily(toBytes(family)));
+            if (i % 2 == 0) {
+                assertEquals("value2",
+                    Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+            } else {
+                assertTrue(result.isEmpty());
+            }
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Delete delete = new Delete(toBytes("mutatorOrderKey" + i));
+            delete.deleteFamily(toBytes(family));
+            hTable.delete(delete);
+        }
+    }
+
+    @Test
+    public void testRowCache() throws Exception {
+        Configuration c = ObHTableTestUtil.newConfiguration();
+        c.set("rs.list.acquire.read.timeout", "10000");
+        c.setLong("hbase.htable.row.cache.max.size", 1 << 20);
+        OHTable cachedTable = new OHTable(c, "test");
+        RowCache rowCache = cachedTable.getRowCache();
+        Assert.assertNotNull(rowCache);
+
+        String family = "family1";
+        String key = "rowCacheKey";
+        Put put = new Put(toBytes(key));
+        put.add(toBytes(family), toBytes("column"), toBytes("value1"));
+        cachedTable.put(put);
+
+        Get get = new Get(toBytes(key));
+        get.addColumn(toBytes(family), toBytes("column"));
+        long hits = rowCache.getHitCount();
+        Result result = cachedTable.get(get);
+        assertEquals("value1", Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+        result = cachedTable.get(get);
+        assertEquals("value1", Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+        assertEquals(hits + 1, rowCache.getHitCount());
+
+        put = new Put(toBytes(key));
+        put.add(toBytes(family), toBytes("column"), toBytes("value2"));
+        cachedTable.put(put);
+        result = cachedTable.get(get);
+        assertEquals("value2", Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+
+        cachedTable.incrementColumnValue(toBytes(key), toBytes(family), toBytes("counter"), 1);
+        Delete delete = new Delete(toBytes(key));
+        delete.deleteFamily(toBytes(family));
+        cachedTable.delete(delete);
+        assertTrue(cachedTable.get(get).isEmpty());
+    }
+
+    @Test
+    public void testAsyncTable() throws Exception {
+        String family = "family1";
+        OHAsyncTable asyncTable = new OHAsyncTableImpl((OHTable) hTable);
+        List<Put> puts = new ArrayList<Put>();
+        for (int i = 0; i < 100; i++) {
+            Put put = new Put(toBytes("asyncKey" + i));
+            put.add(toBytes(family), toBytes("column"), toBytes("value" + i));
+            puts.add(put);
+        }
+        for (CompletableFuture<Void> future : asyncTable.put(puts)) {
+            future.get();
+        }
+
+        List<Get> gets = new ArrayList<Get>();
+        for (int i = 0; i < 100; i++) {
+            gets.add(new Get(toBytes("asyncKey" + i)).addFamily(toBytes(family)));
+        }
+        List<CompletableFuture<Result>> futures = asyncTable.get(gets);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value" + i,
+                Bytes.toString(futures.get(i).get().getValue(toBytes(family), toBytes("column"))));
+        }
+        assertTrue(asyncTable.exists(gets.get(0)).get());
+
+        Put put = new Put(toBytes("asyncKey0"));
+        put.add(toBytes(family), toBytes("column"), toBytes("value"));
+        assertTrue(asyncTable.checkAndPut(toBytes("asyncKey0"), toBytes(family), toBytes("column"),
+            toBytes("value0"), put).get());
+        Increment increment = new Increment(toBytes("asyncKey0"));
+        increment.addColumn(toBytes(family), toBytes("counter"), 3);
+        assertEquals(
+            3L,
+            Bytes.toLong(asyncTable.increment(increment).get()
+                .getValue(toBytes(family), toBytes("counter"))));
+
+        // the failure of the illegal get does not affect the others
+        Get illegal = new Get(toBytes("asyncKey1")).addFamily(toBytes("family_not_exists"));
+        CompletableFuture<Result> illegalFuture = asyncTable.get(illegal);
+        CompletableFuture<Result> legalFuture = asyncTable.get(gets.get(1));
+        try {
+            illegalFuture.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(true);
+        }
+        assertEquals("value1",
+            Bytes.toString(legalFuture.get().getValue(toBytes(family), toBytes("column"))));
+
+        List<Delete> deletes = new ArrayList<Delete>();
+        for (int i = 0; i < 100; i++) {
+            Delete delete = new Delete(toBytes("asyncKey" + i));
+            delete.deleteFamily(toBytes(family));
+            deletes.add(delete);
+        }
+        for (CompletableFuture<Void> future : asyncTable.delete(deletes)) {
+            future.get();
+        }
+        assertFalse(asyncTable.exists(gets.get(0)).get());
+        asyncTable.close();
+
+        try {
+            asyncTable.get(gets.get(0)).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testFlushCommitsPartialFailure() throws Exception {
+        String family = "family1";
+        String key = "flushFailKey";
+        OHTable table = (OHTable) hTable;
+        table.setAutoFlush(false, false);
+        Put good = new Put(toBytes(key + 1));
+        good.add(toBytes(family), toBytes("column"), toBytes("value"));
+        Put bad = new Put(toBytes(key + 2));
+        bad.add(toBytes("family_not_exists"), toBytes("column"), toBytes("value"));
+        table.put(good);
+        table.put(bad);
+        try {
+            table.flushCommits();
+            fail();
+        } catch (RetriesExhaustedWithDetailsException e) {
+            // only the Put of the missing family fails
+            assertEquals(1, e.getNumExceptions());
+            assertEquals(key + 2, Bytes.toString(e.getRow(0).getRow()));
+        }
+        assertEquals("value", Bytes.toString(table.get(
+            new Get(toBytes(key + 1)).addFamily(toBytes(family))).getValue(toBytes(family),
+            toBytes("column"))));
+
+        // the failed Put is kept in the buffer and sent alone
+        try {
+            table.flushCommits();
+            fail();
+        } catch (RetriesExhaustedWithDetailsException e) {
+            assertEquals(1, e.getNumExceptions());
+        }
+        table.setAutoFlush(true);
+        Delete delete = new Delete(toBytes(key + 1));
+        delete.deleteFamily(toBytes(family));
+        table.delete(delete);
+    }
+
+    @Test
+    public void testCounterAggregator() throws Exception {
+        String family = "family1";
+        String key = "counterKey";
+        Delete delete = new Delete(toBytes(key));
+        delete.deleteFamily(toBytes(family));
+        hTable.delete(delete);
+
+        final AtomicInteger failed = new AtomicInteger();
+        OHCounterAggregator aggregator = new OHCounterAggregator((OHTable) hTable,
+            new OHCounterAggregator.ExceptionListener() {
+                @Override
+                public void onException(RetriesExhaustedWithDetailsException exception,
+                                        OHCounterAggregator aggregator) {
+                    failed.addAndGet(exception.getNumExceptions());
+                }
+            });
+        for (int i = 0; i < 1000; i++) {
+            aggregator.increment(toBytes(key), toBytes(family), toBytes("counter" + (i % 2)), 1);
+        }
+        aggregator.flush();
+        assertEquals(0, aggregator.getPendingCount());
+        assertEquals(0, failed.get());
+
+        Result result = hTable.get(new Get(toBytes(key)).addFamily(toBytes(family)));
+        assertEquals(500L, Bytes.toLong(result.getValue(toBytes(family), toBytes("counter0"))));
+        assertEquals(500L, Bytes.toLong(result.getValue(toBytes(family), toBytes("counter1"))));
+
+        aggregator.increment(toBytes(key), toBytes(family), toBytes("counter0"), 10);
+        aggregator.close();
+        result = hTable.get(new Get(toBytes(key)).addFamily(toBytes(family)));
+        assertEquals(510L, Bytes.toLong(result.getValue(toBytes(family), toBytes("counter0"))));
+        try {
+            aggregator.increment(toBytes(key), toBytes(family), toBytes("counter0"), 1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(true);
+        }
+        hTable.delete(delete);
+    }
+
+    @Test
+    public void testThrottleBulk() throws Exception {
+        Configuration c = ObHTableTestUtil.newConfiguration();
+        c.set("rs.list.acquire.read.timeout", "10000");
+        c.setLong("hbase.htable.throttle.read.ops", 10);
+        c.setLong("hbase.htable.throttle.write.ops", 10);
+        OHTable throttledTable = new OHTable(c, "test");
+        OperationThrottle readThrottle = throttledTable.getReadThrottle();
+        OperationThrottle writeThrottle = throttledTable.getWriteThrottle();
+        Assert.assertNotNull(readThrottle);
+        Assert.assertNotNull(writeThrottle);
+
+        String family = "family1";
+        List<Get> gets = new ArrayList<Get>();
+        for (int i = 0; i < 20; i++) {
+            Put put = new Put(toBytes("throttleKey" + i));
+            put.add(toBytes(family), toBytes("column"), toBytes("value" + i));
+            hTable.put(put);
+            gets.add(new Get(toBytes("throttleKey" + i)).addFamily(toBytes(family)));
+        }
+
+        // the first multi get drains the bucket, the second one waits for the rows it reads
+        long throttledCount = readThrottle.getThrottledCount();
+        throttledTable.get(gets);
+        long startTime = System.currentTimeMillis();
+        Result[] results = throttledTable.get(gets);
+        assertTrue(readThrottle.getThrottledCount() > throttledCount);
+        assertTrue(System.currentTimeMillis() - startTime >= 500);
+        assertEquals("value0",
+            Bytes.toString(results[0].getValue(toBytes(family), toBytes("column"))));
+
+        List<Delete> deletes = new ArrayList<Delete>();
+        for (int i = 0; i < 20; i++) {
+            Delete delete = new Delete(toBytes("throttleKey" + i));
+            delete.deleteFamily(toBytes(family));
+            deletes.add(delete);
+        }
+        throttledCount = writeThrottle.getThrottledCount();
+        throttledTable.delete(new ArrayList<Delete>(deletes));
+        startTime = System.currentTimeMillis();
+        throttledTable.delete(new ArrayList<Delete>(deletes));
+        assertTrue(writeThrottle.getThrottledCount() > throttledCount);
+        assertTrue(System.currentTimeMillis() - startTime >= 500);
+        assertTrue(hTable.get(gets.get(0)).isEmpty());
+        throttledTable.close();
+    }
+
+    @Test
+    public void testHedgeGet() throws Exception {
+        // a default configuration, the Gets are not executed in the pool
+        Configuration c = ObHTableTestUtil.newConfiguration();
+        c.set("rs.list.acquire.read.timeout", "10000");
+        c.setBoolean("hbase.htable.hedge.enable", true);
+        // hedge a Get once it is slower than the fastest one of the last 10
+        c.setFloat("hbase.htable.hedge.percentile", 0.01f);
+        c.setLong("hbase.htable.hedge.min.delay", 0);
+        c.setInt("hbase.htable.hedge.window", 10);
+        c.setFloat("hbase.htable.hedge.budget.ratio", 1.0f);
+        OHTable hedgedTable = new OHTable(c, "test");
+        ReadHedger hedger = hedgedTable.getGetHedger();
+        Assert.assertNotNull(hedger);
+
+        String family = "family1";
+        String key = "hedgeKey";
+        Put put = new Put(toBytes(key));
+        put.add(toBytes(family), toBytes("column"), toBytes("value"));
+        hTable.put(put);
+
+        Get get = new Get(toBytes(key));
+        get.addColumn(toBytes(family), toBytes("column"));
+        for (int i = 0; i < 10; i++) {
+            hedgedTable.get(get);
+        }
+        Assert.assertTrue(hedger.getDelay() >= 0);
+        for (int i = 0; i < 100 && hedger.getHedgedCount() == 0; i++) {
+            Result result = hedgedTable.get(get);
+            assertEquals("value",
+                Bytes.toString(result.getValue(toBytes(family), toBytes("column"))));
+        }
+        assertTrue(hedger.getHedgedCount() > 0);
+
+        Delete delete = new Delete(toBytes(key));
+        delete.deleteFamily(toBytes(family));
+        hTable.delete(delete);
+        hedgedTable.close();
+    }
+
 }
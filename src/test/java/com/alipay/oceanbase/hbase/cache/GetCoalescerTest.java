@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+import com.alipay.oceanbase.hbase.util.GetKey;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GetCoalescerTest {
+
+    @Test
+    public void testCoalesce() throws Exception {
+        final GetCoalescer coalescer = new GetCoalescer();
+        Get get = new Get(Bytes.toBytes("row"));
+        get.addColumn(Bytes.toBytes("family"), Bytes.toBytes("a"));
+        final GetKey key = new GetKey(get);
+        final Result result = new Result(new KeyValue[] { new KeyValue(Bytes.toBytes("row"),
+            Bytes.toBytes("family"), Bytes.toBytes("a"), Bytes.toBytes("v")) });
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final GetCoalescer.Loader loader = new GetCoalescer.Loader() {
+            @Override
+            public Result load() throws IOException {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return result;
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            futures.add(pool.submit(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return coalescer.get(key, loader, 10000);
+                }
+            }));
+            Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return coalescer.get(key, loader, 10000);
+                    }
+                }));
+            }
+            while (coalescer.getCoalescedCount() < 7) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<Result> future : futures) {
+                Assert.assertSame(result, future.get());
+            }
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        final GetCoalescer coalescer = new GetCoalescer();
+        final GetKey key = new GetKey(new Get(Bytes.toBytes("row")));
+        final Result stale = new Result();
+        final Result fresh = new Result();
+        // a write during the read, the Gets after it do not join the read
+        Result result = coalescer.get(key, new GetCoalescer.Loader() {
+            @Override
+            public Result load() throws IOException {
+                coalescer.invalidate(Bytes.toBytes("row"));
+                Result joined = coalescer.get(key, new GetCoalescer.Loader() {
+                    @Override
+                    public Result load() {
+                        return fresh;
+                    }
+                }, 1000);
+                Assert.assertSame(fresh, joined);
+                return stale;
+            }
+        }, 1000);
+        Assert.assertSame(stale, result);
+        Assert.assertEquals(0, coalescer.getCoalescedCount());
+
+        // the failure of the read is thrown
+        try {
+            coalescer.get(key, new GetCoalescer.Loader() {
+                @Override
+                public Result load() throws IOException {
+                    throw new IOException("server busy");
+                }
+            }, 1000);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("server busy", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.cache;
+
+import com.alipay.oceanbase.hbase.util.GetKey;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class RowCacheTest {
+
+    @Test
+    public void testGetKey() throws IOException {
+        Get get1 = new Get(Bytes.toBytes("row"));
+        get1.addColumn(Bytes.toBytes("family"), Bytes.toBytes("a"));
+        get1.addColumn(Bytes.toBytes("family"), Bytes.toBytes("b"));
+        Get get2 = new Get(Bytes.toBytes("row"));
+        get2.addColumn(Bytes.toBytes("family"), Bytes.toBytes("b"));
+        get2.addColumn(Bytes.toBytes("family"), Bytes.toBytes("a"));
+        Assert.assertEquals(new GetKey(get1), new GetKey(get2));
+        Assert.assertEquals(new GetKey(get1).hashCode(), new GetKey(get2).hashCode());
+
+        get2.setMaxVersions(2);
+        Assert.assertNotEquals(new GetKey(get1), new GetKey(get2));
+        get2.setMaxVersions(1);
+        get2.setTimeRange(0, 100);
+        Assert.assertNotEquals(new GetKey(get1), new GetKey(get2));
+
+        Get get3 = new Get(Bytes.toBytes("row"));
+        get3.addColumn(Bytes.toBytes("family"), Bytes.toBytes("a"));
+        Assert.assertNotEquals(new GetKey(get1), new GetKey(get3));
+        get3.addColumn(Bytes.toBytes("family"), Bytes.toBytes("b"));
+        get3.setFilter(new PrefixFilter(Bytes.toBytes("r")));
+        Assert.assertNotEquals(new GetKey(get1), new GetKey(get3));
+
+        Get get4 = new Get(Bytes.toBytes("row"));
+        get4.addFamily(Bytes.toBytes("family"));
+        Assert.assertNotEquals(new GetKey(get1), new GetKey(get4));
+    }
+
+    @Test
+    public void testHitMissAndInvalidate() {
+        RowCache cache = new RowCache(1 << 20, 0);
+        GetKey key = key("row1", "a");
+        Assert.assertNull(cache.get(key));
+        cache.put(key, result("row1", "a", "v1"), cache.stamp(key.getRow()));
+        Result result = cache.get(key);
+        Assert.assertNotNull(result);
+        Assert.assertEquals("v1", Bytes.toString(result.raw()[0].getValue()));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        GetKey other = key("row1", "b");
+        cache.put(other, result("row1", "b", "v2"), cache.stamp(other.getRow()));
+        GetKey otherRow = key("row2", "a");
+        cache.put(otherRow, result("row2", "a", "v3"), cache.stamp(otherRow.getRow()));
+        Assert.assertEquals(3, cache.getEntryCount());
+
+        cache.invalidate(Bytes.toBytes("row1"));
+        Assert.assertNull(cache.get(key));
+        Assert.assertNull(cache.get(other));
+        Assert.assertNotNull(cache.get(otherRow));
+        Assert.assertEquals(2, cache.getInvalidationCount());
+        Assert.assertEquals(1, cache.getEntryCount());
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testStaleStamp() {
+        RowCache cache = new RowCache(1 << 20, 0);
+        GetKey key = key("row1", "a");
+        long stamp = cache.stamp(key.getRow());
+        // the row is written while the result is being read
+        cache.invalidate(key.getRow());
+        cache.put(key, result("row1", "a", "old"), stamp);
+        Assert.assertNull(cache.get(key));
+
+        cache.put(key, result("row1", "a", "new"), cache.stamp(key.getRow()));
+        Assert.assertNotNull(cache.get(key));
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        RowCache cache = new RowCache(1 << 20, 50);
+        GetKey key = key("row1", "a");
+        cache.put(key, result("row1", "a", "v1"), cache.stamp(key.getRow()));
+        Assert.assertNotNull(cache.get(key));
+        Thread.sleep(100);
+        Assert.assertNull(cache.get(key));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        long maximumSize = 64 * 1024;
+        RowCache cache = new RowCache(maximumSize, 0);
+        for (int i = 0; i < 2000; i++) {
+            GetKey key = key("row" + i, "a");
+            cache.put(key, result("row" + i, "a", "value" + i), cache.stamp(key.getRow()));
+            Assert.assertTrue(cache.getWeightedSize() <= maximumSize);
+        }
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertTrue(cache.getEntryCount() < 2000);
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() {
+        RowCache cache = new RowCache(64 * 1024, 0);
+        GetKey[] hotKeys = new GetKey[20];
+        for (int i = 0; i < hotKeys.length; i++) {
+            hotKeys[i] = key("hot" + i, "a");
+            cache.put(hotKeys[i], result("hot" + i, "a", "v"), cache.stamp(hotKeys[i].getRow()));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (GetKey hotKey : hotKeys) {
+                if (cache.get(hotKey) == null) {
+                    cache.put(hotKey, result(Bytes.toString(hotKey.getRow()), "a", "v"),
+                        cache.stamp(hotKey.getRow()));
+                }
+            }
+        }
+        // a scan over more cold keys than the cache can hold, each read only once
+        for (int i = 0; i < 1000; i++) {
+            GetKey key = key("cold" + i, "a");
+            if (cache.get(key) == null) {
+                cache.put(key, result("cold" + i, "a", "v"), cache.stamp(key.getRow()));
+            }
+        }
+        int hits = 0;
+        for (GetKey hotKey : hotKeys) {
+            if (cache.get(hotKey) != null) {
+                hits++;
+            }
+        }
+        Assert.assertEquals(hotKeys.length, hits);
+    }
+
+    private static GetKey key(String row, String qualifier) {
+        Get get = new Get(Bytes.toBytes(row));
+        get.addColumn(Bytes.toBytes("family"), Bytes.toBytes(qualifier));
+        return new GetKey(get);
+    }
+
+    private static Result result(String row, String qualifier, String value) {
+        return new Result(new KeyValue[] { new KeyValue(Bytes.toBytes(row),
+            Bytes.toBytes("family"), Bytes.toBytes(qualifier), 1L, Bytes.toBytes(value)) });
+    }
+}
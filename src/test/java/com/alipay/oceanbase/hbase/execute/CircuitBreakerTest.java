@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.CircuitBreakerOpenException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testStateChange() throws Exception {
+        final List<CircuitBreaker.State> changes = new ArrayList<CircuitBreaker.State>();
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 100, 1,
+            new CircuitBreaker.Listener() {
+                @Override
+                public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from,
+                                          CircuitBreaker.State to) {
+                    changes.add(to);
+                }
+            });
+        // a success resets the consecutive failures
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            breaker.acquire();
+            Assert.fail();
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertTrue(e.getMessage().contains("is open"));
+        }
+
+        // only one probe is let through while half-open
+        Thread.sleep(150);
+        breaker.acquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        try {
+            breaker.acquire();
+            Assert.fail();
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertTrue(e.getMessage().contains("half-open"));
+        }
+        breaker.onIgnored();
+        breaker.acquire();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(150);
+        breaker.acquire();
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquire();
+        breaker.onSuccess();
+
+        Assert.assertEquals(2, breaker.getRejectedCount());
+        Assert.assertEquals(5, changes.size());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, changes.get(0));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, changes.get(1));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, changes.get(2));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, changes.get(3));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, changes.get(4));
+    }
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.HBASE_HTABLE_LANE_PREFIX;
+import static com.alipay.oceanbase.hbase.constants.OHConstants.HBASE_HTABLE_VIRTUAL_THREADS_ENABLE;
+
+public class ExecuteLanesTest {
+
+    @Test
+    public void testBounded() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(HBASE_HTABLE_LANE_PREFIX + "scan.threads", 1);
+        conf.setInt(HBASE_HTABLE_LANE_PREFIX + "scan.queue", 1);
+        conf.set(HBASE_HTABLE_LANE_PREFIX + "scan.rejection", "abort");
+        ExecuteLanes lanes = ExecuteLanes.create(conf);
+        try {
+            Assert.assertFalse(lanes.isCallerRuns(ExecuteLanes.Lane.SCAN));
+            Assert.assertTrue(lanes.isCallerRuns(ExecuteLanes.Lane.GET));
+
+            final ExecutorService scanPool = lanes.get(ExecuteLanes.Lane.SCAN);
+            final CountDownLatch blocked = new CountDownLatch(1);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            Future<?> running = scanPool.submit(task);
+            Future<?> queued = scanPool.submit(task);
+            try {
+                scanPool.submit(task);
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                // the thread and the queue are full
+            }
+            // a slow scan lane does not take the threads of the gets
+            Assert.assertTrue(lanes.get(ExecuteLanes.Lane.GET).submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return ExecuteLanes.inLane(scanPool);
+                }
+            }).get(5, TimeUnit.SECONDS) == Boolean.FALSE);
+            blocked.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+
+            Assert.assertFalse(ExecuteLanes.inLane(scanPool));
+            Assert.assertTrue(scanPool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return ExecuteLanes.inLane(scanPool);
+                }
+            }).get(5, TimeUnit.SECONDS));
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setBoolean(HBASE_HTABLE_VIRTUAL_THREADS_ENABLE, true);
+        ExecuteLanes lanes = ExecuteLanes.create(conf);
+        try {
+            ExecutorService getPool = lanes.get(ExecuteLanes.Lane.GET);
+            // falls back to the bounded lanes on the JDKs without virtual threads
+            Assert.assertEquals(ExecuteLanes.isVirtualThreadSupported(),
+                getPool == lanes.get(ExecuteLanes.Lane.SCAN));
+            String threadName = getPool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return Thread.currentThread().getName();
+                }
+            }).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(threadName, threadName.startsWith(ExecuteLanes
+                .isVirtualThreadSupported() ? "OHTableVirtualPool" : "OHTableGetLanePool"));
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    @Test
+    public void testIllegalConfig() {
+        Configuration conf = new Configuration();
+        conf.set(HBASE_HTABLE_LANE_PREFIX + "write.rejection", "discard");
+        try {
+            ExecuteLanes.create(conf);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("write.rejection"));
+        }
+
+        conf = new Configuration();
+        conf.setInt(HBASE_HTABLE_LANE_PREFIX + "get.queue", -1);
+        try {
+            ExecuteLanes.create(conf);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("get.queue"));
+        }
+    }
+}
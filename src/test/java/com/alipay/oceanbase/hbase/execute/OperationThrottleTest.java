@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.RequestThrottledException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class OperationThrottleTest {
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(10);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(bucket.tryAcquire(1));
+        }
+        Assert.assertFalse(bucket.tryAcquire(1));
+        bucket.refund(5);
+        Assert.assertTrue(bucket.tryAcquire(5));
+
+        // the debt of a large request is paid by the requests after it
+        bucket = new TokenBucket(10);
+        Assert.assertEquals(0, bucket.reserve(30));
+        long waitNanos = bucket.reserve(1);
+        Assert.assertTrue(waitNanos > 1900000000L && waitNanos <= 2100000000L);
+        Assert.assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        OperationThrottle throttle = new OperationThrottle("test write", 2, 100, 0, true);
+        throttle.acquire(1, 50);
+        throttle.release();
+        try {
+            throttle.acquire(1, 60);
+            Assert.fail();
+        } catch (RequestThrottledException e) {
+            Assert.assertTrue(e.getMessage().contains("bytes per second"));
+        }
+        // the ops of the rejected request are given back
+        throttle.acquire(1, 0);
+        throttle.release();
+        try {
+            throttle.acquire(1, 0);
+            Assert.fail();
+        } catch (RequestThrottledException e) {
+            Assert.assertTrue(e.getMessage().contains("operations per second"));
+        }
+        Assert.assertEquals(2, throttle.getRejectedCount());
+        Assert.assertEquals(0, throttle.getThrottledCount());
+
+        throttle = new OperationThrottle("test read", 0, 0, 1, true);
+        throttle.acquire(1, 0);
+        try {
+            throttle.acquire(1, 0);
+            Assert.fail();
+        } catch (RequestThrottledException e) {
+            Assert.assertTrue(e.getMessage().contains("requests in flight"));
+        }
+        throttle.release();
+        throttle.acquire(1, 0);
+        throttle.release();
+    }
+
+    @Test
+    public void testBlocking() throws Exception {
+        OperationThrottle throttle = new OperationThrottle("test write", 20, 0, 0, false);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < 25; i++) {
+            throttle.acquire(1, 0);
+            throttle.release();
+        }
+        // the 5 operations over the burst wait for 250ms
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 150);
+        Assert.assertTrue(throttle.getThrottledCount() > 0);
+        Assert.assertTrue(throttle.getThrottledTime() >= 150);
+        Assert.assertEquals(0, throttle.getRejectedCount());
+
+        final OperationThrottle inFlight = new OperationThrottle("test read", 0, 0, 1, false);
+        inFlight.acquire(1, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean acquired = new AtomicBoolean();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    inFlight.acquire(1, 0);
+                    acquired.set(true);
+                    inFlight.release();
+                } catch (Exception e) {
+                    // checked below
+                }
+            }
+        });
+        thread.start();
+        started.await();
+        Thread.sleep(100);
+        Assert.assertFalse(acquired.get());
+        inFlight.release();
+        thread.join(5000);
+        Assert.assertTrue(acquired.get());
+        Assert.assertEquals(1, inFlight.getThrottledCount());
+    }
+}
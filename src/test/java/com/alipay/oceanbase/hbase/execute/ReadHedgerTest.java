@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadHedgerTest {
+
+    @Test
+    public void testDelay() {
+        ReadHedger hedger = new ReadHedger(0.9, 5, 10, new RetryBudget(0.5, 0));
+        // no delay before the first window is full
+        for (int i = 1; i < 10; i++) {
+            hedger.record(i, false);
+        }
+        Assert.assertEquals(-1, hedger.getDelay());
+        hedger.record(100, false);
+        Assert.assertEquals(9, hedger.getDelay());
+
+        // the delay is not below the min delay
+        for (int i = 0; i < 10; i++) {
+            hedger.record(1, i == 0);
+        }
+        Assert.assertEquals(5, hedger.getDelay());
+        Assert.assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    public void testBudget() {
+        ReadHedger hedger = new ReadHedger(0.9, 5, 10, new RetryBudget(0.05, 0));
+        for (int i = 0; i < 40; i++) {
+            hedger.onRequest();
+        }
+        Assert.assertTrue(hedger.tryHedge());
+        Assert.assertTrue(hedger.tryHedge());
+        Assert.assertFalse(hedger.tryHedge());
+        Assert.assertEquals(2, hedger.getHedgedCount());
+    }
+}
@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.RetriesExhaustedException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.alipay.oceanbase.hbase.constants.OHConstants.HBASE_HTABLE_RETRY_MAX_PAUSE;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testClassify() {
+        ObRetryPolicy policy = new ObRetryPolicy();
+        Assert.assertEquals(RetryPolicy.Action.RETRY,
+            policy.classify(new IllegalStateException("server busy")));
+        Assert.assertEquals(RetryPolicy.Action.FAIL,
+            policy.classify(new RuntimeException(new IllegalArgumentException("bad row"))));
+        Assert.assertEquals(RetryPolicy.Action.FAIL, policy.classify(new IOException("closed")));
+        Assert.assertEquals(RetryPolicy.Action.FAIL,
+            policy.classify(new OperationTimeoutException("timeout")));
+    }
+
+    @Test
+    public void testPauseTime() {
+        Configuration conf = new Configuration();
+        conf.setLong(HBASE_HTABLE_RETRY_MAX_PAUSE, 1000);
+        ObRetryPolicy policy = new ObRetryPolicy();
+        policy.setConf(conf);
+        long pauseTime = policy.getPauseTime(100, 0, 0);
+        Assert.assertEquals(100, pauseTime);
+        for (int tries = 1; tries < 20; tries++) {
+            long lastPause = pauseTime;
+            pauseTime = policy.getPauseTime(100, tries, lastPause);
+            Assert.assertTrue(pauseTime >= 100);
+            Assert.assertTrue(pauseTime <= Math.min(lastPause * 3, 1000));
+        }
+    }
+
+    @Test
+    public void testRetryBudget() {
+        RetryBudget budget = new RetryBudget(0.1, 0);
+        for (int i = 0; i < 20; i++) {
+            budget.onRequest();
+        }
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertFalse(budget.tryRetry());
+        Assert.assertEquals(1, budget.getExhaustedCount());
+
+        // the balance is capped
+        for (int i = 0; i < RetryBudget.MAX_DEPOSIT_REQUESTS * 2; i++) {
+            budget.onRequest();
+        }
+        for (int i = 0; i < RetryBudget.MAX_DEPOSIT_REQUESTS / 10; i++) {
+            Assert.assertTrue(budget.tryRetry());
+        }
+        Assert.assertFalse(budget.tryRetry());
+
+        // a few retries per second are allowed without requests
+        budget = new RetryBudget(0.1, 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(budget.tryRetry());
+        }
+        Assert.assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testWithRetries() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setLong(HConstants.HBASE_CLIENT_PAUSE, 1);
+        conf.setInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER, 10);
+        final AtomicInteger tries = new AtomicInteger();
+        ServerCallable<Long> callable = new ServerCallable<Long>(conf, null, "test",
+            Bytes.toBytes("a"), Bytes.toBytes("a"), HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT) {
+            @Override
+            public Long call() throws Exception {
+                tries.incrementAndGet();
+                throw new IllegalArgumentException("bad row");
+            }
+        };
+        callable.setRetryPolicy(new ObRetryPolicy(), null);
+        try {
+            callable.withRetries();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // the fatal error is not retried
+        }
+        Assert.assertEquals(1, tries.get());
+
+        tries.set(0);
+        callable = new ServerCallable<Long>(conf, null, "test", Bytes.toBytes("a"),
+            Bytes.toBytes("a"), HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT) {
+            @Override
+            public Long call() throws Exception {
+                tries.incrementAndGet();
+                throw new IllegalStateException("server busy");
+            }
+        };
+        callable.setRetryPolicy(new ObRetryPolicy(), new RetryBudget(0.1, 2));
+        try {
+            callable.withRetries();
+            Assert.fail();
+        } catch (RetriesExhaustedException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Retry budget exhausted"));
+        }
+        Assert.assertEquals(3, tries.get());
+    }
+}
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.execute;
+
+import com.alipay.oceanbase.hbase.exception.OperationTimeoutException;
+import com.alipay.oceanbase.rpc.protocol.payload.impl.execute.query.ObTableQueryRequest;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServerCallableTest {
+
+    @Test
+    public void testDeadline() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setLong(HConstants.HBASE_CLIENT_PAUSE, 100);
+        conf.setInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER, 100);
+        final AtomicInteger tries = new AtomicInteger();
+        ServerCallable<Long> callable = new ServerCallable<Long>(conf, null, "test",
+            Bytes.toBytes("a"), Bytes.toBytes("a"), 500) {
+            @Override
+            public Long call() throws Exception {
+                tries.incrementAndGet();
+                throw new IllegalStateException("server busy");
+            }
+        };
+        long startTime = System.currentTimeMillis();
+        try {
+            callable.withRetries();
+            Assert.fail();
+        } catch (OperationTimeoutException e) {
+            // the retries stop before the deadline instead of sleeping past it
+            Assert.assertTrue(System.currentTimeMillis() - startTime < 500);
+        }
+        Assert.assertTrue(tries.get() > 1 && tries.get() < 100);
+
+        // a try which fails after the deadline ends the call by the deadline too
+        callable = new ServerCallable<Long>(conf, null, "test", Bytes.toBytes("a"),
+            Bytes.toBytes("a"), 100) {
+            @Override
+            public Long call() throws Exception {
+                Thread.sleep(200);
+                throw new IllegalStateException("server busy");
+            }
+        };
+        try {
+            callable.withRetries();
+            Assert.fail();
+        } catch (OperationTimeoutException e) {
+            Assert.assertTrue(e.getMessage().contains("exceeds the timeout"));
+        }
+
+        // the request is given the time left
+        callable = new ServerCallable<Long>(conf, null, "test", null, null, 500) {
+            @Override
+            public Long call() throws Exception {
+                return withDeadline(new ObTableQueryRequest()).getTimeout();
+            }
+        };
+        long timeout = callable.withRetries();
+        Assert.assertTrue(timeout > 0 && timeout <= 500);
+
+        // the default timeout has no deadline
+        callable = new ServerCallable<Long>(conf, null, "test", null, null,
+            HConstants.DEFAULT_HBASE_CLIENT_OPERATION_TIMEOUT) {
+            @Override
+            public Long call() throws Exception {
+                return getRemainingTime();
+            }
+        };
+        Assert.assertEquals(-1L, (long) callable.withRetries());
+    }
+}
@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.filter;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.BinaryPrefixComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.InclusiveStopFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HBaseFilterRangeAnalyzerTest {
+
+    private static final byte[] EMPTY = HConstants.EMPTY_BYTE_ARRAY;
+
+    @Test
+    public void testNoFilter() {
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, null);
+        Assert.assertTrue(range.isUnbounded());
+        Assert.assertNull(range.getPushDownFilter());
+
+        range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("a"), Bytes.toBytes("c"), null);
+        assertRange("a", "c", range);
+
+        ValueFilter valueFilter = new ValueFilter(CompareFilter.CompareOp.EQUAL,
+            new BinaryComparator(Bytes.toBytes("v")));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, valueFilter);
+        Assert.assertTrue(range.isUnbounded());
+        Assert.assertSame(valueFilter, range.getPushDownFilter());
+    }
+
+    @Test
+    public void testPrefixFilter() {
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY,
+            new PrefixFilter(Bytes.toBytes("row1")));
+        assertRange("row1", "row2", range);
+        Assert.assertNull(range.getPushDownFilter());
+
+        range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("row15"), EMPTY, new PrefixFilter(
+            Bytes.toBytes("row1")));
+        assertRange("row15", "row2", range);
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new PrefixFilter(new byte[] { 1,
+                (byte) 0xFF }));
+        Assert.assertArrayEquals(new byte[] { 1, (byte) 0xFF }, range.getStartRow());
+        Assert.assertArrayEquals(new byte[] { 2 }, range.getStopRow());
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new PrefixFilter(
+            new byte[] { (byte) 0xFF }));
+        Assert.assertArrayEquals(new byte[] { (byte) 0xFF }, range.getStartRow());
+        Assert.assertEquals(0, range.getStopRow().length);
+
+        range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("row3"), EMPTY, new PrefixFilter(
+            Bytes.toBytes("row1")));
+        Assert.assertTrue(range.isEmpty());
+    }
+
+    @Test
+    public void testRowFilter() {
+        byte[] value = Bytes.toBytes("row1");
+        byte[] next = Bytes.add(value, new byte[] { 0 });
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY,
+            new RowFilter(CompareFilter.CompareOp.EQUAL, new BinaryComparator(value)));
+        Assert.assertArrayEquals(value, range.getStartRow());
+        Assert.assertArrayEquals(next, range.getStopRow());
+        Assert.assertNull(range.getPushDownFilter());
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new RowFilter(
+            CompareFilter.CompareOp.LESS, new BinaryComparator(value)));
+        assertRange("", "row1", range);
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new RowFilter(
+            CompareFilter.CompareOp.LESS_OR_EQUAL, new BinaryComparator(value)));
+        Assert.assertArrayEquals(next, range.getStopRow());
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new RowFilter(
+            CompareFilter.CompareOp.GREATER, new BinaryComparator(value)));
+        Assert.assertArrayEquals(next, range.getStartRow());
+        Assert.assertEquals(0, range.getStopRow().length);
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new RowFilter(
+            CompareFilter.CompareOp.GREATER_OR_EQUAL, new BinaryComparator(value)));
+        assertRange("row1", "", range);
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, new RowFilter(
+            CompareFilter.CompareOp.EQUAL, new BinaryPrefixComparator(value)));
+        assertRange("row1", "row2", range);
+
+        // these can not narrow the range and stay on the server
+        RowFilter notEqual = new RowFilter(CompareFilter.CompareOp.NOT_EQUAL, new BinaryComparator(
+            value));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, notEqual);
+        Assert.assertTrue(range.isUnbounded());
+        Assert.assertSame(notEqual, range.getPushDownFilter());
+        RowFilter regex = new RowFilter(CompareFilter.CompareOp.EQUAL, new RegexStringComparator(
+            "row.*"));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, regex);
+        Assert.assertTrue(range.isUnbounded());
+        Assert.assertSame(regex, range.getPushDownFilter());
+    }
+
+    @Test
+    public void testInclusiveStopFilter() {
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("row0"),
+            EMPTY, new InclusiveStopFilter(Bytes.toBytes("row5")));
+        Assert.assertArrayEquals(Bytes.toBytes("row0"), range.getStartRow());
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("row5"), new byte[] { 0 }),
+            range.getStopRow());
+        Assert.assertNull(range.getPushDownFilter());
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, Bytes.toBytes("row3"),
+            new InclusiveStopFilter(Bytes.toBytes("row5")));
+        assertRange("", "row3", range);
+    }
+
+    @Test
+    public void testFilterList() {
+        ValueFilter valueFilter = new ValueFilter(CompareFilter.CompareOp.EQUAL,
+            new BinaryComparator(Bytes.toBytes("v")));
+        FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new PrefixFilter(Bytes.toBytes("row")));
+        filterList.addFilter(new RowFilter(CompareFilter.CompareOp.GREATER_OR_EQUAL,
+            new BinaryComparator(Bytes.toBytes("row3"))));
+        filterList.addFilter(valueFilter);
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, filterList);
+        assertRange("row3", "rox", range);
+        Assert.assertSame(valueFilter, range.getPushDownFilter());
+
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ONE);
+        filterList.addFilter(new PrefixFilter(Bytes.toBytes("a1")));
+        filterList.addFilter(new PrefixFilter(Bytes.toBytes("b1")));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, filterList);
+        assertRange("a1", "b2", range);
+        Assert.assertSame(filterList, range.getPushDownFilter());
+
+        filterList.addFilter(valueFilter);
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, filterList);
+        Assert.assertTrue(range.isUnbounded());
+
+        // the wrapped filters only narrow the side the scan goes to
+        WhileMatchFilter whileMatchFilter = new WhileMatchFilter(new PrefixFilter(
+            Bytes.toBytes("row")));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, whileMatchFilter);
+        assertRange("", "rox", range);
+        Assert.assertSame(whileMatchFilter, range.getPushDownFilter());
+
+        // a start row before the range keeps it, the first row read ends the scan
+        whileMatchFilter = new WhileMatchFilter(new PrefixFilter(Bytes.toBytes("b")));
+        range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("a"), EMPTY, whileMatchFilter);
+        assertRange("a", "c", range);
+        Assert.assertSame(whileMatchFilter, range.getPushDownFilter());
+
+        range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("c"), EMPTY, whileMatchFilter,
+            true);
+        Assert.assertEquals("b", Bytes.toString(range.getStartRow()));
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("c"), new byte[] { 0 }),
+            range.getStopRow());
+
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new PrefixFilter(Bytes.toBytes("a")));
+        filterList.addFilter(new PrefixFilter(Bytes.toBytes("b")));
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, filterList);
+        Assert.assertTrue(range.isEmpty());
+        Assert.assertFalse(range.isUnbounded());
+    }
+
+    @Test
+    public void testReversed() {
+        // rows from row8 (inclusive) down to row2 (exclusive)
+        HBaseFilterRangeAnalyzer range = HBaseFilterRangeAnalyzer.analyze(Bytes.toBytes("row8"),
+            Bytes.toBytes("row2"), null, true);
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("row2"), new byte[] { 0 }),
+            range.getStartRow());
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("row8"), new byte[] { 0 }),
+            range.getStopRow());
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY,
+            new PrefixFilter(Bytes.toBytes("row")), true);
+        assertRange("row", "rox", range);
+
+        range = HBaseFilterRangeAnalyzer.analyze(EMPTY, EMPTY, null, true);
+        Assert.assertTrue(range.isUnbounded());
+    }
+
+    private static void assertRange(String start, String stop, HBaseFilterRangeAnalyzer range) {
+        Assert.assertFalse(range.isEmpty());
+        Assert.assertEquals(start, Bytes.toString(range.getStartRow()));
+        Assert.assertEquals(stop, Bytes.toString(range.getStopRow()));
+    }
+}
@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.filter;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.ColumnCountGetFilter;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeyOnlyProjectionTest {
+
+    @Test
+    public void testNoFilter() {
+        KeyOnlyProjection projection = KeyOnlyProjection.of(null, false);
+        Assert.assertTrue(projection.isIdentity());
+        Assert.assertFalse(projection.isKeysOnly());
+        Assert.assertNull(projection.getPushDownFilter());
+
+        projection = KeyOnlyProjection.of(null, true);
+        Assert.assertFalse(projection.isIdentity());
+        Assert.assertTrue(projection.isKeysOnly());
+        List<KeyValue> keyValues = projection.apply(row());
+        Assert.assertEquals(2, keyValues.size());
+        Assert.assertEquals(0, keyValues.get(0).getValueLength());
+        Assert.assertEquals("q1", Bytes.toString(keyValues.get(0).getQualifier()));
+
+        PrefixFilter prefixFilter = new PrefixFilter(Bytes.toBytes("r"));
+        projection = KeyOnlyProjection.of(prefixFilter, false);
+        Assert.assertTrue(projection.isIdentity());
+        Assert.assertSame(prefixFilter, projection.getPushDownFilter());
+    }
+
+    @Test
+    public void testKeyOnlyFilter() {
+        KeyOnlyProjection projection = KeyOnlyProjection.of(new KeyOnlyFilter(), false);
+        Assert.assertTrue(projection.isKeysOnly());
+        Assert.assertNull(projection.getPushDownFilter());
+        List<KeyValue> keyValues = projection.apply(row());
+        Assert.assertEquals(2, keyValues.size());
+        Assert.assertEquals(0, keyValues.get(1).getValueLength());
+
+        // the length of the values are needed
+        projection = KeyOnlyProjection.of(new KeyOnlyFilter(true), false);
+        Assert.assertFalse(projection.isKeysOnly());
+        keyValues = projection.apply(row());
+        Assert.assertEquals(6, Bytes.toInt(keyValues.get(0).getValue()));
+        Assert.assertEquals(7, Bytes.toInt(keyValues.get(1).getValue()));
+    }
+
+    @Test
+    public void testFirstKeyOnlyFilter() {
+        KeyOnlyProjection projection = KeyOnlyProjection.of(new FirstKeyOnlyFilter(), false);
+        Assert.assertFalse(projection.isKeysOnly());
+        Assert.assertNull(projection.getPushDownFilter());
+        List<KeyValue> keyValues = projection.apply(row());
+        Assert.assertEquals(1, keyValues.size());
+        Assert.assertEquals("value1", Bytes.toString(keyValues.get(0).getValue()));
+
+        FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new FirstKeyOnlyFilter());
+        filterList.addFilter(new KeyOnlyFilter());
+        projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertTrue(projection.isKeysOnly());
+        Assert.assertNull(projection.getPushDownFilter());
+        keyValues = projection.apply(row());
+        Assert.assertEquals(1, keyValues.size());
+        Assert.assertEquals(0, keyValues.get(0).getValueLength());
+
+        // a Get only fetches the first cell
+        projection = KeyOnlyProjection.of(new FirstKeyOnlyFilter(), false, true);
+        Assert.assertTrue(projection.getPushDownFilter() instanceof ColumnCountGetFilter);
+        Assert.assertEquals(1,
+            ((ColumnCountGetFilter) projection.getPushDownFilter()).getLimit());
+        Assert.assertEquals(1, projection.apply(row()).size());
+    }
+
+    @Test
+    public void testFirstKeyOnlyFilterPosition() {
+        QualifierFilter qualifierFilter = new QualifierFilter(CompareFilter.CompareOp.EQUAL,
+            new BinaryComparator(Bytes.toBytes("q2")));
+
+        // the first cell is not the first one which passes the qualifier filter
+        FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new FirstKeyOnlyFilter());
+        filterList.addFilter(qualifierFilter);
+        KeyOnlyProjection projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertTrue(projection.isIdentity());
+        Assert.assertSame(filterList, projection.getPushDownFilter());
+
+        // the members after it only filter whole rows
+        PrefixFilter prefixFilter = new PrefixFilter(Bytes.toBytes("r"));
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new FirstKeyOnlyFilter());
+        filterList.addFilter(prefixFilter);
+        projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertSame(prefixFilter, projection.getPushDownFilter());
+        Assert.assertEquals(1, projection.apply(row()).size());
+
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(qualifierFilter);
+        filterList.addFilter(new FirstKeyOnlyFilter());
+        projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertSame(qualifierFilter, projection.getPushDownFilter());
+
+        projection = KeyOnlyProjection.of(filterList, false, true);
+        List<Filter> pushDown = ((FilterList) projection.getPushDownFilter()).getFilters();
+        Assert.assertEquals(2, pushDown.size());
+        Assert.assertSame(qualifierFilter, pushDown.get(0));
+        Assert.assertTrue(pushDown.get(1) instanceof ColumnCountGetFilter);
+    }
+
+    @Test
+    public void testPushDownFilter() {
+        PrefixFilter prefixFilter = new PrefixFilter(Bytes.toBytes("r"));
+        FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new KeyOnlyFilter());
+        filterList.addFilter(prefixFilter);
+        KeyOnlyProjection projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertTrue(projection.isKeysOnly());
+        Assert.assertSame(prefixFilter, projection.getPushDownFilter());
+
+        // the server needs the values to evaluate the value filter
+        ValueFilter valueFilter = new ValueFilter(CompareFilter.CompareOp.EQUAL,
+            new BinaryComparator(Bytes.toBytes("value1")));
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        filterList.addFilter(new KeyOnlyFilter());
+        filterList.addFilter(prefixFilter);
+        filterList.addFilter(valueFilter);
+        projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertFalse(projection.isKeysOnly());
+        Assert.assertTrue(projection.getPushDownFilter() instanceof FilterList);
+        Assert.assertEquals(2, ((FilterList) projection.getPushDownFilter()).getFilters().size());
+        Assert.assertEquals(0, projection.apply(row()).get(0).getValueLength());
+
+        projection = KeyOnlyProjection.of(valueFilter, true);
+        Assert.assertFalse(projection.isKeysOnly());
+        Assert.assertSame(valueFilter, projection.getPushDownFilter());
+
+        // the key only filters of a MUST_PASS_ONE list are not extracted
+        filterList = new FilterList(FilterList.Operator.MUST_PASS_ONE);
+        filterList.addFilter(new KeyOnlyFilter());
+        projection = KeyOnlyProjection.of(filterList, false);
+        Assert.assertTrue(projection.isIdentity());
+        Assert.assertSame(filterList, projection.getPushDownFilter());
+    }
+
+    private static List<KeyValue> row() {
+        List<KeyValue> keyValues = new ArrayList<KeyValue>();
+        keyValues.add(new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("family"), Bytes
+            .toBytes("q1"), 1L, Bytes.toBytes("value1")));
+        keyValues.add(new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("family"), Bytes
+            .toBytes("q2"), 1L, Bytes.toBytes("value22")));
+        return keyValues;
+    }
+}
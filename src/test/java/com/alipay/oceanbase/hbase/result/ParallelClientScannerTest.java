@@ -0,0 +1,234 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.result;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelClientScannerTest {
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterClass
+    public static void afterClass() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrdered() throws IOException {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        sources.add(source("family1", "a", "d", "e"));
+        sources.add(source("family1", "b", "c", "f"));
+        sources.add(source("family2", "a", "f"));
+        sources.add(source("family1"));
+
+        ResultScanner scanner = new ParallelClientScanner("test", sources, executor, true, 1, 1);
+        String[] expectRows = { "a", "b", "c", "d", "e", "f" };
+        int[] expectSizes = { 2, 1, 1, 1, 1, 2 };
+        for (int i = 0; i < expectRows.length; i++) {
+            Result result = scanner.next();
+            Assert.assertEquals(expectRows[i], Bytes.toString(result.getRow()));
+            Assert.assertEquals(expectSizes[i], result.raw().length);
+            if (expectSizes[i] > 1) {
+                Assert.assertEquals("family1", Bytes.toString(result.raw()[0].getFamily()));
+                Assert.assertEquals("family2", Bytes.toString(result.raw()[1].getFamily()));
+            }
+        }
+        Assert.assertNull(scanner.next());
+        scanner.close();
+    }
+
+    @Test
+    public void testOrderedReversed() throws IOException {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        sources.add(source("family1", "e", "d", "a"));
+        sources.add(source("family1", "f", "c", "b"));
+        sources.add(source("family2", "f", "a"));
+
+        ResultScanner scanner = new ParallelClientScanner("test", sources, executor, true, true, 1,
+            1);
+        String[] expectRows = { "f", "e", "d", "c", "b", "a" };
+        int[] expectSizes = { 2, 1, 1, 1, 1, 2 };
+        for (int i = 0; i < expectRows.length; i++) {
+            Result result = scanner.next();
+            Assert.assertEquals(expectRows[i], Bytes.toString(result.getRow()));
+            Assert.assertEquals(expectSizes[i], result.raw().length);
+        }
+        Assert.assertNull(scanner.next());
+        scanner.close();
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        Set<String> expectRows = new HashSet<String>();
+        for (int i = 0; i < 10; i++) {
+            String[] rows = new String[100];
+            for (int j = 0; j < rows.length; j++) {
+                rows[j] = "row_" + i + "_" + j;
+                expectRows.add(rows[j]);
+            }
+            sources.add(source("family1", rows));
+        }
+
+        ResultScanner scanner = new ParallelClientScanner("test", sources, executor, false, 3, 4);
+        Set<String> rows = new HashSet<String>();
+        for (Result result : scanner) {
+            Assert.assertTrue(rows.add(Bytes.toString(result.getRow())));
+        }
+        Assert.assertEquals(expectRows, rows);
+        scanner.close();
+    }
+
+    @Test
+    public void testUnorderedError() throws IOException {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        sources.add(source("family1", "a", "b"));
+        sources.add(new Callable<ResultScanner>() {
+            @Override
+            public ResultScanner call() throws Exception {
+                throw new IOException("open failed");
+            }
+        });
+
+        ResultScanner scanner = new ParallelClientScanner("test", sources, executor, false, 2, 4);
+        try {
+            while (scanner.next() != null) {
+                // consume until the failure
+            }
+            Assert.fail("expect failure");
+        } catch (IOException e) {
+            Assert.assertEquals("open failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnorderedBusyLane() throws Exception {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        Set<String> expectRows = new HashSet<String>();
+        for (int i = 0; i < 4; i++) {
+            String[] rows = new String[10];
+            for (int j = 0; j < rows.length; j++) {
+                rows[j] = "row_" + i + "_" + j;
+                expectRows.add(rows[j]);
+            }
+            sources.add(source("family1", rows));
+        }
+
+        // a lane with its only thread and queue slot taken rejects every worker
+        final CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor busyLane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(1));
+        try {
+            for (int i = 0; i < 2; i++) {
+                busyLane.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+
+            ResultScanner scanner = new ParallelClientScanner("test", sources, busyLane, false,
+                2, 4);
+            Set<String> rows = new HashSet<String>();
+            for (Result result : scanner) {
+                Assert.assertTrue(rows.add(Bytes.toString(result.getRow())));
+            }
+            Assert.assertEquals(expectRows, rows);
+            scanner.close();
+        } finally {
+            release.countDown();
+            busyLane.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseUnordered() throws IOException {
+        List<Callable<ResultScanner>> sources = new ArrayList<Callable<ResultScanner>>();
+        String[] rows = new String[1000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = "row" + i;
+        }
+        sources.add(source("family1", rows));
+
+        ResultScanner scanner = new ParallelClientScanner("test", sources, executor, false, 1, 1);
+        Assert.assertNotNull(scanner.next());
+        scanner.close();
+        try {
+            scanner.next();
+            Assert.fail("expect closed");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    private static Callable<ResultScanner> source(final String family, final String... rows) {
+        return new Callable<ResultScanner>() {
+            @Override
+            public ResultScanner call() {
+                final Iterator<String> iterator = Arrays.asList(rows).iterator();
+                return new AbstractClientScanner() {
+                    @Override
+                    public Result next() {
+                        if (!iterator.hasNext()) {
+                            return null;
+                        }
+                        String row = iterator.next();
+                        return new Result(new KeyValue[] { new KeyValue(Bytes.toBytes(row),
+                            Bytes.toBytes(family), Bytes.toBytes("q"), Bytes.toBytes("v")) });
+                    }
+
+                    @Override
+                    public Result[] next(int nbRows) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+}
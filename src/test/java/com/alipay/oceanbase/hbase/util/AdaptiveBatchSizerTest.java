@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void testGrowAndShrink() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 1000, 8000, 10, 80, 2000, 4);
+        Assert.assertEquals(2000, sizer.getBatchSize());
+        Assert.assertEquals(80, sizer.getBatchOps());
+
+        // full batches under the target grow the limits once per window
+        for (int i = 0; i < 3; i++) {
+            sizer.record(50, 2000, 10);
+        }
+        Assert.assertEquals(2000, sizer.getBatchSize());
+        sizer.record(50, 2000, 10);
+        Assert.assertEquals(3000, sizer.getBatchSize());
+        Assert.assertEquals(80, sizer.getBatchOps());
+        for (int i = 0; i < 40; i++) {
+            sizer.record(50, 8000, 10);
+        }
+        Assert.assertEquals(8000, sizer.getBatchSize());
+
+        // one slow flush of the window is above the p99
+        sizer.record(50, 8000, 10);
+        sizer.record(50, 8000, 10);
+        sizer.record(500, 8000, 10);
+        sizer.record(50, 8000, 10);
+        Assert.assertEquals(4000, sizer.getBatchSize());
+        Assert.assertEquals(40, sizer.getBatchOps());
+        for (int i = 0; i < 40; i++) {
+            sizer.record(500, 100, 1);
+        }
+        Assert.assertEquals(1000, sizer.getBatchSize());
+        Assert.assertEquals(10, sizer.getBatchOps());
+    }
+
+    @Test
+    public void testSmallBatchesDoNotGrow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 1000, 8000, 10, 80, 2000, 4);
+        for (int i = 0; i < 40; i++) {
+            sizer.record(1, 100, 1);
+        }
+        Assert.assertEquals(2000, sizer.getBatchSize());
+
+        // the operation limit is reached by many small Puts
+        for (int i = 0; i < 4; i++) {
+            sizer.record(1, 100, 40);
+        }
+        Assert.assertEquals(3000, sizer.getBatchSize());
+        Assert.assertEquals(80, sizer.getBatchOps());
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] values = new long[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values.length - i;
+        }
+        Assert.assertEquals(99, AdaptiveBatchSizer.percentile(values, 0.99));
+        Assert.assertEquals(50, AdaptiveBatchSizer.percentile(values, 0.5));
+        Assert.assertEquals(7, AdaptiveBatchSizer.percentile(new long[] { 7 }, 0.99));
+    }
+}
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * OBKV HBase Client Framework
+ * %%
+ * Copyright (C) 2022 OceanBase Group
+ * %%
+ * OBKV HBase Client Framework  is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ * #L%
+ */
+
+package com.alipay.oceanbase.hbase.util;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WriteCoalescerTest {
+
+    @Test
+    public void testDuplicatePuts() {
+        List<KeyValue> keyValues = new ArrayList<KeyValue>();
+        keyValues.add(put("row1", "q1", 1L, "v1"));
+        keyValues.add(put("row1", "q1", 1L, "v2"));
+        keyValues.add(put("row1", "q1", 2L, "v3"));
+        keyValues.add(put("row2", "q1", 1L, "v4"));
+        keyValues.add(put("row1", "q1", 1L, "v5"));
+        int[] supersededBy = WriteCoalescer.coalesce(keyValues);
+        Assert.assertArrayEquals(new int[] { 4, 4, 2, 3, 4 }, supersededBy);
+        Assert.assertEquals(3, WriteCoalescer.keptCount(supersededBy));
+
+        keyValues.clear();
+        keyValues.add(put("row1", "q1", HConstants.LATEST_TIMESTAMP, "v1"));
+        keyValues.add(put("row1", "q2", HConstants.LATEST_TIMESTAMP, "v2"));
+        keyValues.add(put("row1", "q1", HConstants.LATEST_TIMESTAMP, "v3"));
+        Assert.assertArrayEquals(new int[] { 2, 1, 2 }, WriteCoalescer.coalesce(keyValues));
+    }
+
+    @Test
+    public void testDeleteShadowsPuts() {
+        List<KeyValue> keyValues = new ArrayList<KeyValue>();
+        keyValues.add(put("row1", "q1", 1L, "v1"));
+        keyValues.add(put("row1", "q1", 3L, "v2"));
+        keyValues.add(put("row1", "q2", 1L, "v3"));
+        keyValues.add(delete("row1", "q1", 2L, KeyValue.Type.DeleteColumn));
+        keyValues.add(put("row1", "q1", 1L, "v4"));
+        // the put after the delete is kept, the one before is superseded by it
+        Assert.assertArrayEquals(new int[] { 4, 1, 2, 3, 4 }, WriteCoalescer.coalesce(keyValues));
+
+        keyValues.clear();
+        keyValues.add(put("row1", "q1", 1L, "v1"));
+        keyValues.add(put("row1", "q2", 5L, "v2"));
+        keyValues.add(put("row2", "q1", 1L, "v3"));
+        keyValues.add(delete("row1", "", 4L, KeyValue.Type.DeleteFamily));
+        Assert.assertArrayEquals(new int[] { 3, 1, 2, 3 }, WriteCoalescer.coalesce(keyValues));
+
+        keyValues.clear();
+        keyValues.add(put("row1", "q1", 1L, "v1"));
+        keyValues.add(put("row1", "q1", 2L, "v2"));
+        keyValues.add(delete("row1", "q1", 2L, KeyValue.Type.Delete));
+        Assert.assertArrayEquals(new int[] { 0, 2, 2 }, WriteCoalescer.coalesce(keyValues));
+
+        // the version deleted without timestamp is only known by the server
+        keyValues.clear();
+        keyValues.add(put("row1", "q1", 1L, "v1"));
+        keyValues.add(delete("row1", "q1", HConstants.LATEST_TIMESTAMP, KeyValue.Type.Delete));
+        Assert.assertArrayEquals(new int[] { 0, 1 }, WriteCoalescer.coalesce(keyValues));
+    }
+
+    @Test
+    public void testLatestTimestamp() {
+        long future = System.currentTimeMillis() + 3600 * 1000L;
+        List<KeyValue> keyValues = new ArrayList<KeyValue>();
+        keyValues.add(put("row1", "q1", HConstants.LATEST_TIMESTAMP, "v1"));
+        keyValues.add(put("row1", "q2", 1L, "v2"));
+        keyValues.add(put("row1", "q3", future, "v3"));
+        keyValues.add(delete("row1", "", HConstants.LATEST_TIMESTAMP, KeyValue.Type.DeleteFamily));
+        Assert.assertArrayEquals(new int[] { 3, 3, 2, 3 }, WriteCoalescer.coalesce(keyValues));
+
+        // the put gets the server time, which may be after the delete
+        keyValues.clear();
+        keyValues.add(put("row1", "q1", HConstants.LATEST_TIMESTAMP, "v1"));
+        keyValues.add(delete("row1", "q1", 100L, KeyValue.Type.DeleteColumn));
+        Assert.assertArrayEquals(new int[] { 0, 1 }, WriteCoalescer.coalesce(keyValues));
+    }
+
+    private static KeyValue put(String row, String qualifier, long ts, String value) {
+        return new KeyValue(Bytes.toBytes(row), Bytes.toBytes("family"), Bytes.toBytes(qualifier),
+            ts, Bytes.toBytes(value));
+    }
+
+    private static KeyValue delete(String row, String qualifier, long ts, KeyValue.Type type) {
+        return new KeyValue(Bytes.toBytes(row), Bytes.toBytes("family"), Bytes.toBytes(qualifier),
+            ts, type);
+    }
+}